@@ -0,0 +1,67 @@
+package com.demshape.factorization.kernel;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Uses the incubating vector API to compute several lanes per instruction. This class is only compiled on JDK 17 or
+ * later (see the simd profile of the pom) and requires the JVM to be started with
+ * --add-modules jdk.incubator.vector. {@link VectorKernelFactory} falls back to another kernel if it is not available.
+ */
+public class SimdKernel implements VectorKernelInterface {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    public float dot(float[] x, int xIndex, float[] y, int yIndex, int length) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector a = FloatVector.fromArray(SPECIES, x, xIndex + i);
+            FloatVector b = FloatVector.fromArray(SPECIES, y, yIndex + i);
+            sum = a.fma(b, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; ++i)
+            result += x[xIndex + i] * y[yIndex + i];
+        return result;
+    }
+
+    public void axpy(float alpha, float[] x, int xIndex, float[] y, int yIndex, int length) {
+        final FloatVector scale = FloatVector.broadcast(SPECIES, alpha);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector a = FloatVector.fromArray(SPECIES, x, xIndex + i);
+            FloatVector b = FloatVector.fromArray(SPECIES, y, yIndex + i);
+            a.fma(scale, b).intoArray(y, yIndex + i);
+        }
+        for (; i < length; ++i)
+            y[yIndex + i] += alpha * x[xIndex + i];
+    }
+
+    public void scaledSubtract(float alpha, float[] x, int xIndex, float[] y, int yIndex, int length) {
+        axpy(-alpha, x, xIndex, y, yIndex, length);
+    }
+
+    public float gradient(float error, float value, float lambda, float[] sum, float[] row, int rowIndex, float[] gradient, int length) {
+        final float scaledValue = error * value;
+        final float rowFactor = lambda - error * value * value;
+        FloatVector squaredSum = FloatVector.zero(SPECIES);
+        int i = 0;
+        for (int bound = SPECIES.loopBound(length); i < bound; i += SPECIES.length()) {
+            FloatVector s = FloatVector.fromArray(SPECIES, sum, i);
+            FloatVector r = FloatVector.fromArray(SPECIES, row, rowIndex + i);
+            FloatVector g = s.mul(scaledValue).add(r.mul(rowFactor));
+            g.intoArray(gradient, i);
+            squaredSum = g.fma(g, squaredSum);
+        }
+        float result = squaredSum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; ++i) {
+            final float g = scaledValue * sum[i] + rowFactor * row[rowIndex + i];
+            gradient[i] = g;
+            result += g * g;
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,145 @@
+package com.demshape.factorization.application;
+
+import com.demshape.factorization.dataset.DatasetInterface;
+import com.demshape.factorization.dataset.LowMemoryDataset;
+import com.demshape.factorization.datastructure.DataPoint;
+import com.demshape.factorization.datastructure.SparseVector;
+import com.demshape.factorization.kernel.VectorKernelFactory;
+import com.demshape.factorization.lossfunction.LossFunctionFactory;
+import com.demshape.factorization.model.Factorization;
+import com.demshape.factorization.sampler.AliasSampler;
+import com.demshape.factorization.sampler.SamplerInterface;
+import com.demshape.factorization.tools.Options;
+import com.demshape.factorization.tools.RandomStreams;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Compares variants of the training on a synthetic data set (see README.md). Item popularity follows a power law
+ * like in most real world data sets, the data points are in random order.
+ * <p>
+ * options.benchmark Name of the benchmark, all model parameters are taken from the options as in {@link Train}
+ */
+public class Benchmark {
+
+    private static final Logger logger = LogManager.getLogger(Benchmark.class);
+
+    private static final int ORIGINAL_IDS = 200_000;
+    private static final int DATA_POINTS = 5_000_000;
+    private static final long SEED = 42L;
+
+    public static void main(String[] args) {
+        Locale.setDefault(Locale.ENGLISH);
+        Options options = new Options();
+        CmdLineParser parser = new CmdLineParser(options);
+        try {
+            // ********************************************************************************
+            // read parameters
+            parser.parseArgument(args);
+            if (options.help || args.length == 0 || options.benchmark == null)
+                throw new CmdLineException(parser, new Throwable("Please set parameters"));
+            logger.info(options);
+
+            // ********************************************************************************
+            // run benchmark
+            switch (options.benchmark.toLowerCase().trim()) {
+                case "trainorder":
+                    trainOrder(options);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid benchmark parameter: " + options.benchmark);
+            }
+
+        } catch (CmdLineException e) {
+            parser.printUsage(System.out);
+            logger.error("Please check your parameters:", e);
+        } catch (Exception e) {
+            logger.error("Error:", e);
+        } finally {
+            logger.info("Program finished.");
+        }
+    }
+
+    /**
+     * Trains the same model with train order file and item, reports the time and the loss of the trained model on the
+     * train set.
+     */
+    private static void trainOrder(Options options) throws Exception {
+        final DatasetInterface trainset = syntheticDataset();
+        final SparseVector[] features = new SparseVector[2 * ORIGINAL_IDS];
+        for (String trainOrder : new String[]{"file", "item"}) {
+            Factorization factorization = model(options);
+            factorization.trainOrder = trainOrder;
+            factorization.groupSize = options.groupSize;
+            final long start = System.nanoTime();
+            factorization.train(trainset, features, 2 * ORIGINAL_IDS);
+            final double nanos = System.nanoTime() - start;
+            final double loss = factorization.predict(trainset, features).average();
+            logger.info(String.format("train order %s: %.1f ns per data point and iteration, loss %.4f", trainOrder,
+                    nanos / trainset.size() / Math.max(1, factorization.iterations), loss));
+        }
+    }
+
+    /**
+     * @return a model configured like in {@link Train}
+     */
+    private static Factorization model(Options options) {
+        Factorization factorization = new Factorization(
+                options.dimensions,
+                options.learnRate,
+                options.lambda1,
+                options.lambda2,
+                options.iterations,
+                options.negatives,
+                LossFunctionFactory.get(options.lossFunction),
+                options.regression,
+                options.tableSize,
+                options.minCount,
+                options.alpha,
+                // the most popular synthetic items occur more often than the default bins allow
+                new int[]{10, 100, 1000, 10_000, DATA_POINTS}
+        );
+        factorization.kernel = VectorKernelFactory.get(options.kernel, options.dimensions);
+        factorization.threads = options.threads;
+        factorization.affinity = options.affinity;
+        factorization.samplerType = options.sampler;
+        factorization.trainingMode = options.trainingMode;
+        factorization.featureCache = options.featureCache;
+        factorization.seed = SEED;
+        return factorization;
+    }
+
+    /**
+     * @return dense mapped data points whose items are drawn with probability proportional to 1 / rank and whose
+     * contexts are drawn uniformly
+     */
+    private static DatasetInterface syntheticDataset() {
+        logger.info(String.format("generating %d data points over %d ids...", DATA_POINTS, ORIGINAL_IDS));
+        final Random random = RandomStreams.create(SEED);
+        final int[] popularity = new int[2 * ORIGINAL_IDS];
+        // ranks are scattered over the ids
+        final int[] ranks = new int[ORIGINAL_IDS];
+        for (int i = 0; i < ORIGINAL_IDS; ++i)
+            ranks[i] = i;
+        for (int i = ORIGINAL_IDS - 1; i > 0; --i) {
+            final int j = random.nextInt(i + 1);
+            final int swap = ranks[i];
+            ranks[i] = ranks[j];
+            ranks[j] = swap;
+        }
+        for (int i = 0; i < ORIGINAL_IDS; ++i)
+            popularity[2 * i] = Math.max(1, 1_000_000 / (ranks[i] + 1));
+        final SamplerInterface items = new AliasSampler(popularity, 1.0);
+
+        final DatasetInterface dataset = new LowMemoryDataset(DATA_POINTS);
+        for (int i = 0; i < DATA_POINTS; ++i)
+            dataset.addDatapoint(new DataPoint(2 * random.nextInt(ORIGINAL_IDS) + 1, items.sample(random), 1.0f));
+        return dataset;
+    }
+
+}
@@ -1,6 +1,9 @@
 package com.demshape.factorization.application;
 
 import com.demshape.factorization.datastructure.DatasetIO;
+import com.demshape.factorization.kernel.UnrolledKernel;
+import com.demshape.factorization.kernel.VectorKernelFactory;
+import com.demshape.factorization.kernel.VectorKernelInterface;
 import com.demshape.factorization.tools.Options;
 import com.google.common.base.Splitter;
 import org.apache.commons.lang3.ArrayUtils;
@@ -15,6 +18,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.stream.Collectors;
 
@@ -26,6 +30,7 @@ public class Mpr {
     private static final Logger logger = LogManager.getLogger(Mpr.class);
 
     private static int numSamples = 50;
+    private static VectorKernelInterface kernel = new UnrolledKernel();
 
     public static void main(String[] args) {
         Locale.setDefault(Locale.ENGLISH);
@@ -40,7 +45,7 @@ public class Mpr {
                 throw new CmdLineException(parser, new Throwable("Please set parameters"));
             logger.info(options);
 
-            System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", Integer.toString(options.threads));
+            kernel = VectorKernelFactory.get(options.kernel, options.dimensions);
             // ********************************************************************************
             // read embeddings
             logger.info("Reading embeddings...");
@@ -55,7 +60,10 @@ public class Mpr {
 
             // compute mpr using embeddings
             logger.info("Predicting mpr using embeddings");
-            List<MprEntry> mprPredictionList = mprEntryList.stream().parallel().map(mprEntry -> {
+            // run on a dedicated pool such that the number of threads is honored
+            int threads = options.threads > 0 ? options.threads : Runtime.getRuntime().availableProcessors();
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            List<MprEntry> mprPredictionList = pool.submit(() -> mprEntryList.stream().parallel().map(mprEntry -> {
                 FloatMatrix seedVector = itemFeatureVectors.get(mprEntry.seedId);
                 FloatMatrix interactionVector = itemFeatureVectors.get(mprEntry.interactionId);
 
@@ -72,7 +80,8 @@ public class Mpr {
                     mprEntry.score = sampleIsBetter / (double) numSamples;
                 }
                 return mprEntry;
-            }).filter(m -> m.score >= 0).collect(Collectors.toList());
+            }).filter(m -> m.score >= 0).collect(Collectors.toList())).get();
+            pool.shutdown();
 
             double percentage = 100.0 * mprPredictionList.size() / (double) mprEntryList.size();
             logger.info(String.format("%d out of %d (%.2f%%) predictable", mprPredictionList.size(), mprEntryList.size(), percentage));
@@ -129,9 +138,9 @@ public class Mpr {
     }
 
     public static double cosine(FloatMatrix a, FloatMatrix b) {
-        double normA = Math.pow(a.norm2(), 2);
-        double normB = Math.pow(b.norm2(), 2);
-        return a.dot(b) / (Math.sqrt(normA) * Math.sqrt(normB));
+        double normA = kernel.dot(a.data, 0, a.data, 0, a.length);
+        double normB = kernel.dot(b.data, 0, b.data, 0, b.length);
+        return kernel.dot(a.data, 0, b.data, 0, a.length) / (Math.sqrt(normA) * Math.sqrt(normB));
     }
 
 }
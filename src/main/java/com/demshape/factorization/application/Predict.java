@@ -1,6 +1,9 @@
 package com.demshape.factorization.application;
 
 import com.demshape.factorization.datastructure.DatasetIO;
+import com.demshape.factorization.kernel.UnrolledKernel;
+import com.demshape.factorization.kernel.VectorKernelFactory;
+import com.demshape.factorization.kernel.VectorKernelInterface;
 import com.demshape.factorization.tools.Options;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -21,6 +24,7 @@ public class Predict {
 
     private static final Logger logger = LogManager.getLogger(Predict.class);
     private static final int topK = 10;
+    private static VectorKernelInterface kernel = new UnrolledKernel();
 
     public static void main(String[] args) {
         Locale.setDefault(Locale.ENGLISH);
@@ -34,6 +38,7 @@ public class Predict {
             if (options.help || args.length == 0)
                 throw new CmdLineException(parser, new Throwable("Please set parameters"));
             logger.info(options);
+            kernel = VectorKernelFactory.get(options.kernel, options.dimensions);
 
             // ********************************************************************************
             // read embeddings
@@ -91,9 +96,9 @@ public class Predict {
      * @return cosine similarity metric between a and b
      */
     public static double cosine(FloatMatrix a, FloatMatrix b) {
-        double normA = Math.pow(a.norm2(), 2);
-        double normB = Math.pow(b.norm2(), 2);
-        return a.dot(b) / (Math.sqrt(normA) * Math.sqrt(normB));
+        double normA = kernel.dot(a.data, 0, a.data, 0, a.length);
+        double normB = kernel.dot(b.data, 0, b.data, 0, b.length);
+        return kernel.dot(a.data, 0, b.data, 0, a.length) / (Math.sqrt(normA) * Math.sqrt(normB));
     }
 
 }
@@ -0,0 +1,49 @@
+package com.demshape.factorization.application;
+
+import com.demshape.factorization.distributed.ParameterServer;
+import com.demshape.factorization.tools.Options;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+
+import java.util.Locale;
+
+/**
+ * Runs a parameter server which holds one shard of the model for distributed training (see README.md). The server
+ * runs until the process is stopped.
+ * <p>
+ * options.port Port to listen on options.shard Index of the shard options.shards Total number of shards
+ */
+public class Serve {
+
+    private static final Logger logger = LogManager.getLogger(Serve.class);
+
+    public static void main(String[] args) {
+        Locale.setDefault(Locale.ENGLISH);
+        Options options = new Options();
+        CmdLineParser parser = new CmdLineParser(options);
+        try {
+            // ********************************************************************************
+            // read parameters
+            parser.parseArgument(args);
+            if (options.help || args.length == 0)
+                throw new CmdLineException(parser, new Throwable("Please set parameters"));
+            logger.info(options);
+
+            // ********************************************************************************
+            // serve until stopped
+            try (ParameterServer server = new ParameterServer(options.port, options.shard, options.shards)) {
+                server.start().awaitClose();
+            }
+
+        } catch (CmdLineException e) {
+            parser.printUsage(System.out);
+            logger.error("Please check your parameters:", e);
+        } catch (Exception e) {
+            logger.error("Error:", e);
+        } finally {
+            logger.info("Program finished.");
+        }
+    }
+}
@@ -3,9 +3,14 @@ package com.demshape.factorization.application;
 import com.demshape.factorization.dataset.*;
 import com.demshape.factorization.datastructure.DatasetIO;
 import com.demshape.factorization.datastructure.SparseVector;
+import com.demshape.factorization.kernel.VectorKernelFactory;
 import com.demshape.factorization.lossfunction.LossFunctionFactory;
+import com.demshape.factorization.distributed.ParameterClient;
+import com.demshape.factorization.model.Checkpoint;
+import com.demshape.factorization.model.DistributedTraining;
 import com.demshape.factorization.model.Factorization;
 import com.demshape.factorization.metric.LossAverager;
+import com.demshape.factorization.tools.Fingerprint;
 import com.demshape.factorization.tools.Options;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -15,6 +20,9 @@ import org.kohsuke.args4j.CmdLineParser;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
@@ -41,6 +49,10 @@ public class Train {
 
     private static final Logger logger = LogManager.getLogger(Train.class);
     private static final String MAPPED_SUFFIX = ".mapped";
+    private static final String CHECKPOINT_FILE = "checkpoint.bin";
+    private static final String MODEL_FILE = "model.bin";
+    private static final String MAPPING_FILE = "mapping.tsv";
+    private static final String MAPPING_CACHE_SUFFIX = ".mapping.bin";
 
     public static void main(String[] args) {
         Locale.setDefault(Locale.ENGLISH);
@@ -53,15 +65,29 @@ public class Train {
             parser.parseArgument(args);
             if (options.help || args.length == 0)
                 throw new CmdLineException(parser, new Throwable("Please set parameters"));
+            // grouping by item copies the whole train set into memory
+            if (options.stream && !options.trainOrder.trim().equalsIgnoreCase("file"))
+                throw new CmdLineException(parser, new Throwable("train order " + options.trainOrder + " can not be used with stream"));
+            // dsgd copies the train set into blocks in memory, deterministic training with several threads uses dsgd
+            if (options.stream && options.servers == null) {
+                if (options.trainingMode.trim().equalsIgnoreCase("dsgd"))
+                    throw new CmdLineException(parser, new Throwable("training mode dsgd can not be used with stream"));
+                if (options.deterministic && (options.threads > 1 || options.threads <= 0 && Runtime.getRuntime().availableProcessors() > 1))
+                    throw new CmdLineException(parser, new Throwable("deterministic training with several threads can not be used with stream"));
+            }
+            // every worker must initialize the servers with the same seed
+            if (options.servers != null && options.seed == null)
+                throw new CmdLineException(parser, new Throwable("seed must be set in distributed training"));
             logger.info(options);
+            final long seed = options.seed != null ? options.seed : new Random().nextLong();
+            logger.info("seed: " + seed);
 
-            System.setProperty("java.util.concurrent.ForkJoinPool.common.parallelism", Integer.toString(options.threads));
             // ********************************************************************************
             // read optional features
             Map<Integer, SparseVector> unmappedFeatures = new HashMap<>();
             if (options.features != null) {
                 logger.info("Reading optional features...");
-                unmappedFeatures = DatasetIO.readFeatures(new FileReader(options.features));
+                unmappedFeatures = DatasetIO.readFeatures(options.features);
                 logger.info(String.format("read features for %d items", unmappedFeatures.size()));
             }
 
@@ -71,17 +97,44 @@ public class Train {
             DatasetInterface trainset;
             String mappedTrainsetPath = options.trainset + MAPPED_SUFFIX;
             DenseMapper denseMapper = new DenseMapper();
+            denseMapper.frequencyOrder = options.frequencyOrder;
+            Checkpoint previousModel = null;
+            if (options.warmStart != null) {
+                // known ids keep their dense ids, new ones are appended
+                denseMapper.readMapping(new FileReader(options.warmStart + MAPPING_FILE));
+                previousModel = Checkpoint.read(Paths.get(options.warmStart + MODEL_FILE));
+            }
             if (options.rowBased) {
                 int[][] lines = DatasetIO.readRowBased(options.trainset);
                 denseMapper.learn(lines, unmappedFeatures);
                 denseMapper.map(lines);
-                trainset = new RowBasedDataset(lines, options.window, new Random().nextLong());
+                trainset = new RowBasedDataset(lines, options.window, seed);
             } else {
-                trainset = getDataset(options.trainset, options.stream);
-                denseMapper.learn(trainset, unmappedFeatures);
-                // write dense data set to disk
-                denseMapper.write(trainset, new FileWriter(mappedTrainsetPath));
-                trainset = getDataset(mappedTrainsetPath, options.stream);
+                // the dense data set is written in binary columnar format, it is memory mapped in stream mode
+                // skip detection and mapping if the dense data set of a previous run on the same input exists
+                Path mappingCachePath = Paths.get(mappedTrainsetPath + MAPPING_CACHE_SUFFIX);
+                if (options.mappingCache && Files.exists(Paths.get(mappedTrainsetPath))
+                        && denseMapper.readBinary(mappingCachePath, mappingFingerprint(options, mappedTrainsetPath))) {
+                    logger.info("Reusing dense data set " + mappedTrainsetPath);
+                    trainset = options.stream ? new MappedDataset(Paths.get(mappedTrainsetPath)) : DatasetIO.readColumnar(mappedTrainsetPath);
+                } else if (options.stream) {
+                    trainset = getDataset(options.trainset, true);
+                    denseMapper.learn(trainset, unmappedFeatures);
+                    denseMapper.writeColumnar(trainset, Paths.get(mappedTrainsetPath));
+                    trainset = new MappedDataset(Paths.get(mappedTrainsetPath));
+                    if (options.mappingCache)
+                        denseMapper.writeBinary(mappingCachePath, mappingFingerprint(options, mappedTrainsetPath));
+                } else {
+                    // parse the train set once and map it in memory
+                    LowMemoryDataset dataset = DatasetIO.readColumnBased(options.trainset);
+                    denseMapper.learn(dataset, unmappedFeatures);
+                    denseMapper.mapInPlace(dataset);
+                    trainset = dataset;
+                    if (options.mappingCache) {
+                        DatasetIO.writeColumnar(dataset, mappedTrainsetPath);
+                        denseMapper.writeBinary(mappingCachePath, mappingFingerprint(options, mappedTrainsetPath));
+                    }
+                }
             }
             SparseVector[] features = denseMapper.map(unmappedFeatures);
 
@@ -101,13 +154,48 @@ public class Train {
                     options.alpha,
                     options.bins
             );
-            factorization.train(trainset, features, denseMapper.numFeatures);
+            // the automatic kernel choice depends on timings and kernels differ in rounding
+            String kernel = options.deterministic && options.kernel.equals("auto") ? "unrolled" : options.kernel;
+            factorization.kernel = VectorKernelFactory.get(kernel, options.dimensions);
+            factorization.threads = options.threads;
+            factorization.affinity = options.affinity;
+            factorization.samplerType = options.sampler;
+            factorization.trainingMode = options.trainingMode;
+            factorization.blocks = options.blocks;
+            factorization.featureCache = options.featureCache;
+            factorization.trainOrder = options.trainOrder;
+            factorization.groupSize = options.groupSize;
+            factorization.readers = options.readers;
+            factorization.readAhead = options.readAhead;
+            factorization.seed = seed;
+            factorization.deterministic = options.deterministic;
+            factorization.checkpointInterval = options.checkpointInterval;
+            factorization.checkpointPath = options.output + CHECKPOINT_FILE;
+            factorization.warmStart = previousModel;
+            if (options.resume) {
+                Path checkpointPath = Paths.get(factorization.checkpointPath);
+                if (Files.exists(checkpointPath))
+                    factorization.resume = Checkpoint.read(checkpointPath);
+                else
+                    logger.warn("no checkpoint found at " + checkpointPath + ", starting from scratch");
+            }
+            if (options.servers != null) {
+                DistributedTraining distributedTraining = new DistributedTraining(factorization,
+                        ParameterClient.parse(options.servers), options.worker, options.workers, options.batchSize);
+                distributedTraining.train(trainset, features, denseMapper.numFeatures);
+                // the first worker evaluates and writes the model
+                if (options.worker != 0)
+                    return;
+                distributedTraining.pullAll(denseMapper.numFeatures);
+            } else {
+                factorization.train(trainset, features, denseMapper.numFeatures);
+            }
 
             // ********************************************************************************
             // predict performance on test set
             if (options.testset != null) {
                 logger.info("Reading test set");
-                int testsetSize = DatasetIO.numberOfLines(new FileReader(options.testset));
+                long testsetSize = DatasetIO.numberOfLines(options.testset);
                 if (testsetSize > 0) {
                     DatasetInterface unmappedTestset = new DiskBasedDataset(options.testset, testsetSize);
                     DatasetInterface testset = denseMapper.map(unmappedTestset);
@@ -120,13 +208,21 @@ public class Train {
             // ********************************************************************************
             // write latent factors to file
             logger.info("Writing biases to file...");
-            DatasetIO.write(factorization.biases, new FileWriter(options.output + "biases.tsv"));
+            DatasetIO.write(factorization.parameters.biases(), new FileWriter(options.output + "biases.tsv"));
             logger.info("Writing latent features to file...");
-            DatasetIO.write(factorization.vectors(denseMapper.contextMap), new FileWriter(options.output + "context_embeddings.tsv"));
-            DatasetIO.write(factorization.vectors(denseMapper.itemMap), new FileWriter(options.output + "item_embeddings.tsv"));
-            DatasetIO.write(factorization.featureVectors(denseMapper.featureMap, unmappedFeatures), new FileWriter(options.output + "feature_embeddings.tsv"));
-            DatasetIO.write(factorization.featureVectors(denseMapper.contextMap, denseMapper.featureMap, unmappedFeatures), new FileWriter(options.output + "context_feature_embeddings.tsv"));
-            DatasetIO.write(factorization.featureVectors(denseMapper.itemMap, denseMapper.featureMap, unmappedFeatures), new FileWriter(options.output + "item_feature_embeddings.tsv"));
+            DatasetIO.write(factorization.vectors(denseMapper.contextMap), new FileWriter(options.output + "context_embeddings.tsv"), options.deterministic);
+            DatasetIO.write(factorization.vectors(denseMapper.itemMap), new FileWriter(options.output + "item_embeddings.tsv"), options.deterministic);
+            DatasetIO.write(factorization.featureVectors(denseMapper.featureMap, unmappedFeatures), new FileWriter(options.output + "feature_embeddings.tsv"), options.deterministic);
+            DatasetIO.write(factorization.featureVectors(denseMapper.contextMap, denseMapper.featureMap, unmappedFeatures), new FileWriter(options.output + "context_feature_embeddings.tsv"), options.deterministic);
+            DatasetIO.write(factorization.featureVectors(denseMapper.itemMap, denseMapper.featureMap, unmappedFeatures), new FileWriter(options.output + "item_feature_embeddings.tsv"), options.deterministic);
+
+            // ********************************************************************************
+            // write final state and mapping such that a later run can warm start from this model
+            new Checkpoint(factorization, options.iterations).write(Paths.get(options.output + MODEL_FILE));
+            denseMapper.writeMapping(new FileWriter(options.output + MAPPING_FILE));
+            // the run is complete, a later run with resume must not continue from its last checkpoint
+            if (options.checkpointInterval > 0 || options.resume)
+                Files.deleteIfExists(Paths.get(factorization.checkpointPath));
 
         } catch (CmdLineException e) {
             parser.printUsage(System.out);
@@ -138,6 +234,19 @@ public class Train {
         }
     }
 
+    /**
+     * Fingerprint of everything the dense mapping of a column based train set depends on: the train set, the dense
+     * data set written from it, the optional features, the mapping of a warm start and the order of the dense ids.
+     */
+    private static long mappingFingerprint(Options options, String mappedTrainsetPath) throws IOException {
+        return Fingerprint.combine(
+                Fingerprint.of(Paths.get(options.trainset)),
+                Fingerprint.of(Paths.get(mappedTrainsetPath)),
+                options.features != null ? Fingerprint.of(Paths.get(options.features)) : 0L,
+                options.warmStart != null ? Fingerprint.of(Paths.get(options.warmStart + MAPPING_FILE)) : 0L,
+                options.frequencyOrder ? 1L : 0L);
+    }
+
     /**
      * Reads in a data set from a given path. If stream is true the data set will be streamed entry by entry instead
      * of reading it into memory at once. Reading into memory enables faster repeated processing during training.
@@ -149,15 +258,14 @@ public class Train {
      * @throws IOException if path can not be read
      */
     public static DatasetInterface getDataset(String path, boolean stream) throws IOException {
-        logger.info("Counting data set lines");
-        int numLines = DatasetIO.numberOfLines(new FileReader(path));
         if (stream) {
+            logger.info("Counting data set lines");
+            long numLines = DatasetIO.numberOfLines(path);
             logger.info("Streaming train set from disk");
             return new DiskBasedDataset(path, numLines);
         } else {
             logger.info("Reading train set");
-            DatasetInterface dataset = new LowMemoryDataset(numLines);
-            DatasetIO.readColumnBased(path, dataset);
+            DatasetInterface dataset = DatasetIO.readColumnBased(path);
             logger.info(String.format("Finished reading train set: %d data points detected.", dataset.size()));
             return dataset;
         }
@@ -0,0 +1,39 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.DataBatch;
+
+/**
+ * Reads a data set, or a part of it, batch by batch into a reusable {@link DataBatch}.
+ */
+@FunctionalInterface
+public interface BatchCursor {
+
+    /**
+     * Replaces the content of a batch by the next data points.
+     * @param batch batch to fill with up to batch.capacity() data points
+     * @return false if there are no more data points, the batch is empty then
+     */
+    boolean next(DataBatch batch);
+
+    /**
+     * @param source a batch
+     * @return a cursor over the data points of the batch, the batch must not be changed while the cursor is used
+     */
+    static BatchCursor of(DataBatch source) {
+        return new BatchCursor() {
+            private int position;
+
+            @Override
+            public boolean next(DataBatch batch) {
+                final int count = Math.min(batch.capacity(), source.size - position);
+                System.arraycopy(source.contextIds, position, batch.contextIds, 0, count);
+                System.arraycopy(source.itemIds, position, batch.itemIds, 0, count);
+                System.arraycopy(source.ratings, position, batch.ratings, 0, count);
+                batch.size = count;
+                position += count;
+                return count > 0;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.BatchRing;
+import com.demshape.factorization.datastructure.DataBatch;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads a data set ahead of its consumers: dedicated reader threads read (and for {@link DiskBasedDataset} parse) the
+ * partitions of the data set into batches and publish them in a {@link BatchRing}, consumers take them from the ring
+ * through {@link #cursor()}. Reading and training thus overlap instead of alternating on the same threads.
+ * <p>
+ * The number of batches is fixed: a batch returns to a ring of free batches once its data points were copied by a
+ * consumer. Readers which find no free batch wait, hence they are never more than the capacity of the ring ahead of
+ * the consumers (back pressure). Consumers which find no filled batch wait for the readers. Both kinds of waiting as
+ * well as the number of filled batches seen by the consumers are counted, see {@link #toString()}.
+ * <p>
+ * Batches are handed out in no particular order.
+ */
+public class BatchPipeline implements AutoCloseable {
+
+    private static final long WAIT_NANOS = 50_000;
+
+    private final BatchRing filled;
+    private final BatchRing free;
+    private final Thread[] readers;
+    private final AtomicInteger running;
+    private volatile Throwable failure;
+    private volatile boolean closed;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder depths = new LongAdder();
+    private final LongAdder consumerWaits = new LongAdder();
+    private final LongAdder readerWaits = new LongAdder();
+
+    /**
+     * Starts reading.
+     * @param dataset  data set to read, partition i of readers is read by reader i
+     * @param readers  number of reader threads
+     * @param capacity number of batches, rounded up to a power of two
+     */
+    public BatchPipeline(DatasetInterface dataset, int readers, int capacity) {
+        if (readers <= 0)
+            throw new IllegalArgumentException("Invalid readers parameter: " + readers);
+        filled = new BatchRing(capacity);
+        free = new BatchRing(capacity);
+        // as many batches as slots: publishing a filled batch never fails
+        for (int i = 0; i < filled.capacity(); ++i)
+            free.offer(new DataBatch());
+        running = new AtomicInteger(readers);
+        this.readers = new Thread[readers];
+        for (int i = 0; i < readers; ++i) {
+            final int partition = i;
+            this.readers[i] = new Thread(() -> read(dataset, partition, readers), "factorization-reader-" + i);
+            this.readers[i].setDaemon(true);
+            this.readers[i].start();
+        }
+    }
+
+    private void read(DatasetInterface dataset, int partition, int partitions) {
+        try {
+            final BatchCursor cursor = dataset.cursor(partition, partitions);
+            DataBatch batch;
+            while ((batch = takeFree()) != null) {
+                if (!cursor.next(batch)) {
+                    free.offer(batch);
+                    return;
+                }
+                filled.offer(batch);
+            }
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            running.decrementAndGet();
+        }
+    }
+
+    /**
+     * @return a free batch or null if the pipeline was closed while waiting
+     */
+    private DataBatch takeFree() {
+        DataBatch batch;
+        while ((batch = free.poll()) == null) {
+            if (closed)
+                return null;
+            readerWaits.increment();
+            LockSupport.parkNanos(WAIT_NANOS);
+        }
+        return batch;
+    }
+
+    /**
+     * Returns a cursor which copies filled batches until all readers are done. Several consumers may use their own
+     * cursors concurrently, each batch is seen by exactly one of them.
+     * @return cursor over the batches of all readers
+     * @throws IllegalStateException from next if a reader failed
+     */
+    public BatchCursor cursor() {
+        return batch -> {
+            DataBatch next;
+            while ((next = filled.poll()) == null) {
+                checkFailure();
+                // a reader publishes its last batch before it finishes
+                if (running.get() == 0 && (next = filled.poll()) == null)
+                    return false;
+                if (next != null)
+                    break;
+                consumerWaits.increment();
+                LockSupport.parkNanos(WAIT_NANOS);
+            }
+            depths.add(filled.size());
+            batches.increment();
+            if (batch.capacity() < next.size)
+                throw new IllegalArgumentException(String.format("batch of capacity %d can not hold %d data points", batch.capacity(), next.size));
+            System.arraycopy(next.contextIds, 0, batch.contextIds, 0, next.size);
+            System.arraycopy(next.itemIds, 0, batch.itemIds, 0, next.size);
+            System.arraycopy(next.ratings, 0, batch.ratings, 0, next.size);
+            batch.size = next.size;
+            free.offer(next);
+            return true;
+        };
+    }
+
+    private void checkFailure() {
+        final Throwable cause = failure;
+        if (cause != null)
+            throw new IllegalStateException("reading the data set failed", cause);
+    }
+
+    /**
+     * @return number of batches taken by consumers
+     */
+    public long batches() {
+        return batches.sum();
+    }
+
+    /**
+     * @return mean number of filled batches left in the ring when a consumer took one, close to the capacity if the
+     * readers are faster than the consumers
+     */
+    public double meanDepth() {
+        final long count = batches.sum();
+        return count == 0 ? 0.0 : depths.sum() / (double) count;
+    }
+
+    /**
+     * @return number of times a consumer found no filled batch
+     */
+    public long consumerWaits() {
+        return consumerWaits.sum();
+    }
+
+    /**
+     * @return number of times a reader found no free batch
+     */
+    public long readerWaits() {
+        return readerWaits.sum();
+    }
+
+    /**
+     * Stops the readers and waits for them.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closed = true;
+        for (Thread reader : readers)
+            reader.join();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("read ahead: %d batches, mean queue depth %.1f of %d, consumers waited %d times, readers waited %d times",
+                batches(), meanDepth(), filled.capacity(), consumerWaits(), readerWaits());
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.DataPoint;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Splits a dense mapped data set into blocks x blocks parts by context and item id. Every id is assigned to one of
+ * the blocks by {@link #block(int, int)}; a data point belongs to part (block(contextId), block(itemId)).
+ * <p>
+ * A stratum is a set of parts which do not share a block in either dimension, e.g. {(b, (b + s) % blocks)} for all
+ * b. The parts of a stratum do not touch the same context or item vectors and can therefore be trained in parallel
+ * without conflicting writes. See 'Large-Scale Matrix Factorization with Distributed Stochastic Gradient Descent'.
+ */
+public class BlockedDataset {
+
+    private static final Logger logger = LogManager.getLogger(BlockedDataset.class);
+
+    /**
+     * Number of blocks in each dimension
+     */
+    public final int blocks;
+
+    private final LowMemoryDataset[][] parts;
+
+    /**
+     * Copies a data set into blocks x blocks parts. The order of the data points within a part is the order of the
+     * input data set.
+     * @param dataset a dense mapped data set
+     * @param blocks number of blocks in each dimension
+     */
+    public BlockedDataset(DatasetInterface dataset, int blocks) {
+        logger.info(String.format("splitting data set into %d x %d blocks...", blocks, blocks));
+        this.blocks = blocks;
+        final long[][] sizes = new long[blocks][blocks];
+        for (DataPoint dataPoint : dataset)
+            sizes[block(dataPoint.contextId, blocks)][block(dataPoint.itemId, blocks)]++;
+        parts = new LowMemoryDataset[blocks][blocks];
+        for (int contextBlock = 0; contextBlock < blocks; ++contextBlock)
+            for (int itemBlock = 0; itemBlock < blocks; ++itemBlock)
+                parts[contextBlock][itemBlock] = new LowMemoryDataset(sizes[contextBlock][itemBlock]);
+        for (DataPoint dataPoint : dataset)
+            parts[block(dataPoint.contextId, blocks)][block(dataPoint.itemId, blocks)].addDatapoint(dataPoint);
+    }
+
+    /**
+     * Assigns an id to a block. Item and context of the same original id (2i and 2i + 1, see {@link DenseMapper})
+     * share a block.
+     * @param id dense id
+     * @param blocks number of blocks
+     * @return block of the id
+     */
+    public static int block(int id, int blocks) {
+        return (id >>> 1) % blocks;
+    }
+
+    /**
+     * @param contextBlock block of the context ids
+     * @param itemBlock block of the item ids
+     * @return all data points with a context in contextBlock and an item in itemBlock
+     */
+    public DatasetInterface part(int contextBlock, int itemBlock) {
+        return parts[contextBlock][itemBlock];
+    }
+
+    /**
+     * @param stratum stratum index
+     * @param contextBlock block of the context ids
+     * @return the item block paired with contextBlock in the given stratum
+     */
+    public int itemBlock(int stratum, int contextBlock) {
+        return (contextBlock + stratum) % blocks;
+    }
+
+}
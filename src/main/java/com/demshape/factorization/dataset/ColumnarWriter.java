@@ -0,0 +1,95 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.DataPoint;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a data set in the binary columnar format read by {@link MappedDataset}. The number of data points has to be
+ * known up front such that all three columns can be written in a single pass: each column is buffered separately and
+ * written to its own region of the file.
+ */
+public class ColumnarWriter implements AutoCloseable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final long size;
+    private final ByteBuffer contexts;
+    private final ByteBuffer items;
+    private final ByteBuffer ratings;
+    private long written;
+    private long flushed;
+
+    /**
+     * @param path output path
+     * @param size number of data points which will be added
+     * @throws IOException if the file can not be created
+     */
+    public ColumnarWriter(Path path, long size) throws IOException {
+        this.size = size;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        final ByteBuffer header = ByteBuffer.allocate(MappedDataset.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MappedDataset.MAGIC).putInt(MappedDataset.VERSION).putLong(size).flip();
+        write(header, 0);
+        contexts = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        items = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        ratings = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    public void add(DataPoint dataPoint) throws IOException {
+        add(dataPoint.contextId, dataPoint.itemId, dataPoint.rating);
+    }
+
+    public void add(int contextId, int itemId, float rating) throws IOException {
+        if (written == size)
+            throw new IOException(String.format("more than %d data points written", size));
+        contexts.putInt(contextId);
+        items.putInt(itemId);
+        ratings.putFloat(rating);
+        ++written;
+        if (!contexts.hasRemaining())
+            flush();
+    }
+
+    private void flush() throws IOException {
+        // all three buffers hold the same number of values
+        final long offset = MappedDataset.HEADER_SIZE + (long) Integer.BYTES * flushed;
+        final long column = (long) Integer.BYTES * size;
+        contexts.flip();
+        items.flip();
+        ratings.flip();
+        write(contexts, offset);
+        write(items, offset + column);
+        write(ratings, offset + 2 * column);
+        contexts.clear();
+        items.clear();
+        ratings.clear();
+        flushed = written;
+    }
+
+    private void write(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    /**
+     * @throws IOException if less data points than announced were added
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            if (written != size)
+                throw new IOException(String.format("%d data points announced but %d written", size, written));
+        } finally {
+            channel.close();
+        }
+    }
+
+}
@@ -5,6 +5,7 @@ import com.demshape.factorization.datastructure.DataPoint;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * A {@link DatasetInterface} implementation were all data points are hold as a list of objects in memory.
@@ -32,6 +33,18 @@ public class Dataset implements DatasetInterface {
         return dataPoints.iterator();
     }
 
+    @Override
+    public Iterator<DataPoint> partition(int index, int partitions) {
+        final int from = (int) DatasetInterface.partitionStart(dataPoints.size(), index, partitions);
+        final int to = (int) DatasetInterface.partitionStart(dataPoints.size(), index + 1, partitions);
+        return dataPoints.subList(from, to).iterator();
+    }
+
+    @Override
+    public Stream<DataPoint> parallelStream() {
+        return dataPoints.parallelStream();
+    }
+
     @Override
     public long size() {
         return dataPoints.size();
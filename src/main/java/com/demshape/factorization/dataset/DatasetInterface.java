@@ -2,6 +2,7 @@ package com.demshape.factorization.dataset;
 
 import com.demshape.factorization.datastructure.DataPoint;
 
+import java.util.Iterator;
 import java.util.Spliterator;
 import java.util.Spliterators;
 import java.util.stream.Stream;
@@ -35,6 +36,72 @@ public interface DatasetInterface extends Iterable<DataPoint> {
         return StreamSupport.stream(spliterator, parallel);
     }
 
+    /**
+     * Returns an iterator over one of several contiguous parts of this data set. Each data point belongs to exactly
+     * one part. This can be used by workers which each own a part of the data set.
+     * The default implementation skips to the start of the part using {@link #iterator()}. Implementations which
+     * support random access should override it.
+     * @param index index of the part starting at 0
+     * @param partitions total number of parts
+     * @return An iterator over the data points of the given part.
+     */
+    default Iterator<DataPoint> partition(int index, int partitions) {
+        final long from = partitionStart(size(), index, partitions);
+        final long to = partitionStart(size(), index + 1, partitions);
+        final Iterator<DataPoint> iterator = iterator();
+        for (long i = 0; i < from && iterator.hasNext(); ++i)
+            iterator.next();
+        return new Iterator<DataPoint>() {
+            private long remaining = to - from;
+
+            @Override
+            public boolean hasNext() {
+                return remaining > 0 && iterator.hasNext();
+            }
+
+            @Override
+            public DataPoint next() {
+                --remaining;
+                return iterator.next();
+            }
+        };
+    }
+
+    /**
+     * Returns a cursor over one of several contiguous parts of this data set, the parts are the same as by
+     * {@link #partition(int, int)}. The default implementation copies the data points of the partition iterator.
+     * Implementations which hold primitive arrays should override it such that no object is created per data point.
+     * @param index index of the part starting at 0
+     * @param partitions total number of parts
+     * @return A cursor over the data points of the given part.
+     */
+    default BatchCursor cursor(int index, int partitions) {
+        final Iterator<DataPoint> iterator = partition(index, partitions);
+        return batch -> {
+            batch.clear();
+            while (!batch.isFull() && iterator.hasNext())
+                batch.add(iterator.next());
+            return batch.size > 0;
+        };
+    }
+
+    /**
+     * @return A cursor over all data points.
+     */
+    default BatchCursor cursor() {
+        return cursor(0, 1);
+    }
+
+    /**
+     * @param size total number of elements
+     * @param index index of the part
+     * @param partitions total number of parts
+     * @return index of the first element of a part when splitting size elements into evenly sized parts
+     */
+    static long partitionStart(long size, int index, int partitions) {
+        return size * index / partitions;
+    }
+
     /**
      * Stream characteristics.
      * Distinct: each element is distinct
@@ -1,20 +1,27 @@
 package com.demshape.factorization.dataset;
 
 import com.demshape.factorization.datastructure.DataPoint;
+import com.demshape.factorization.datastructure.IntIntMap;
+import com.demshape.factorization.datastructure.IntSet;
 import com.demshape.factorization.datastructure.SparseVector;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-
-import static com.demshape.factorization.tools.GlobalConstants.HASH_MAP_LOAD_FACTOR;
+import java.util.function.Consumer;
 
 /**
  * Maps a data set into a dense one: all input ids are remapped from 0 to max(id).
  * A dense representation allows to allocate arrays instead of maps and speeds up subsequent computations.
- * The mapping is stored internally such that the remapping can be reversed.
+ * The mapping is stored internally such that the remapping can be reversed. It can be written to disk and read back
+ * in order to extend it with the ids of new data (see {@link #learn(DatasetInterface, Map)}).
+ * Ids and mappings are held in primitive sets and maps (see {@link IntSet} and {@link IntIntMap}) as there may be
+ * tens of millions of them.
  */
 public class DenseMapper {
     private static final Logger logger = LogManager.getLogger(DenseMapper.class);
@@ -22,55 +29,75 @@ public class DenseMapper {
     /**
      * The set of all context ids
      */
-    public Set<Integer> contexts;
+    public IntSet contexts;
 
     /**
      * The set of all items
      */
-    public Set<Integer> items;
+    public IntSet items;
 
     /**
      * The set of all features
      */
-    public Set<Integer> features;
+    public IntSet features;
 
     /**
      * The mapping from context id to the dense one.
      */
-    public Map<Integer, Integer> contextMap;
+    public IntIntMap contextMap;
 
     /**
      * The mapping from item id to the dense one.
      */
-    public Map<Integer, Integer> itemMap;
+    public IntIntMap itemMap;
 
     /**
      * The mapping from feature id to the dense one.
      */
-    public Map<Integer, Integer> featureMap;
+    public IntIntMap featureMap;
     public int numFeatures;
 
     /**
-     * Detects all elements in a column based data set and creates mappings from original ids to dense ones.
+     * Whether dense ids are assigned in descending order of occurrence instead of ascending order of the original ids.
+     * The rows of popular items, contexts and features are then close to each other in memory.
+     */
+    public boolean frequencyOrder;
+
+    /**
+     * Occurrences of each id as context or item and of each feature weighted by the occurrences of its items, only
+     * counted if frequencyOrder is set
+     */
+    private IntIntMap occurrences;
+    private IntIntMap featureOccurrences;
+
+    private static final String ITEM = "item";
+    private static final String FEATURE = "feature";
+    private static final int BINARY_MAGIC = 0x49494d50;
+    private static final int BINARY_VERSION = 1;
+
+    /**
+     * Detects all elements in a column based data set and creates mappings from original ids to dense ones. If a
+     * mapping exists already, e.g. read by {@link #readMapping(Reader)}, it is extended by the new ids.
      * @param dataset An input dataset
      * @param optionalFeatures Optional side information available for each item.
      */
     public void learn(DatasetInterface dataset, Map<Integer, SparseVector> optionalFeatures) {
         detect(dataset);
         detect(optionalFeatures);
-        numFeatures = createMap(contexts, items, features);
+        numFeatures = itemMap == null ? createMap(contexts, items, features) : extendMap(items, features);
         logger.info(String.format("%d contexts, %d items, %d features found (total: %d)", contexts.size(), items.size(), features.size(), numFeatures));
     }
 
     /**
-     * Detects all elements in row based based data set and creates mappings from original ids to dense ones.
+     * Detects all elements in row based based data set and creates mappings from original ids to dense ones. If a
+     * mapping exists already it is extended by the new ids.
      * @param lines An input dataset
      * @param optionalFeatures Optional side information available for each item.
      */
     public void learn(int[][] lines, Map<Integer, SparseVector> optionalFeatures) {
         detect(lines);
         detect(optionalFeatures);
-        numFeatures = createMap(contexts, items, features);
+        numFeatures = itemMap == null ? createMap(contexts, items, features) : extendMap(items, features);
         logger.info(String.format("%d contexts, %d items, %d features found (total: %d)", contexts.size(), items.size(), features.size(), numFeatures));
     }
 
@@ -80,14 +107,22 @@ public class DenseMapper {
      */
     public void detect(DatasetInterface dataset) {
         logger.info("Detecting contexts and items");
-        contexts = Collections.newSetFromMap(new ConcurrentHashMap<>());
-        items = Collections.newSetFromMap(new ConcurrentHashMap<>());
-        dataset.parallelStream().forEach(
-                dataPoint -> {
-                    contexts.add(dataPoint.contextId);
-                    items.add(dataPoint.itemId);
-                }
+        // each thread collects into its own sets which are merged afterwards
+        Detected detected = dataset.parallelStream().collect(
+                () -> new Detected(frequencyOrder),
+                (current, dataPoint) -> {
+                    current.contexts.add(dataPoint.contextId);
+                    current.items.add(dataPoint.itemId);
+                    if (current.occurrences != null) {
+                        current.occurrences.addTo(dataPoint.contextId, 1);
+                        current.occurrences.addTo(dataPoint.itemId, 1);
+                    }
+                },
+                Detected::addAll
         );
+        contexts = detected.contexts;
+        items = detected.items;
+        occurrences = detected.occurrences;
     }
 
     /**
@@ -96,14 +131,21 @@ public class DenseMapper {
      */
     public void detect(int[][] lines) {
         logger.info("Detecting contexts and items");
-        contexts = Collections.newSetFromMap(new ConcurrentHashMap<>());
-        items = Collections.newSetFromMap(new ConcurrentHashMap<>());
-        Arrays.stream(lines).parallel().forEach(currentLine -> {
-            for (int item = 0; item < currentLine.length; ++item) {
-                contexts.add(currentLine[item]);
-                items.add(currentLine[item]);
-            }
-        });
+        Detected detected = Arrays.stream(lines).parallel().collect(
+                () -> new Detected(frequencyOrder),
+                (current, currentLine) -> {
+                    for (int item = 0; item < currentLine.length; ++item) {
+                        current.contexts.add(currentLine[item]);
+                        current.items.add(currentLine[item]);
+                        if (current.occurrences != null)
+                            current.occurrences.addTo(currentLine[item], 1);
+                    }
+                },
+                Detected::addAll
+        );
+        contexts = detected.contexts;
+        items = detected.items;
+        occurrences = detected.occurrences;
     }
 
     /**
@@ -112,50 +154,154 @@ public class DenseMapper {
      */
     public void detect(Map<Integer, SparseVector> itemFeatures) {
         logger.info("Detecting additional features");
-        features = new HashSet<>();
-        for (SparseVector sparseVector : itemFeatures.values()) {
-            for (SparseVector.SparseEntry sparseEntry : sparseVector)
-                features.add(sparseEntry.key);
+        features = new IntSet();
+        featureOccurrences = occurrences != null ? new IntIntMap() : null;
+        itemFeatures.forEach((itemId, sparseVector) -> {
+            // a feature row is updated whenever one of its items is trained
+            final int itemOccurrences = occurrences != null ? occurrences.getOrDefault(itemId, 0) : 0;
+            for (int i = 0; i < sparseVector.size(); ++i) {
+                features.add(sparseVector.keyAt(i));
+                if (featureOccurrences != null)
+                    featureOccurrences.addTo(sparseVector.keyAt(i), itemOccurrences);
+            }
+        });
+    }
+
+    /**
+     * Ids detected by a single thread.
+     */
+    private static class Detected {
+        final IntSet contexts = new IntSet();
+        final IntSet items = new IntSet();
+        final IntIntMap occurrences;
+
+        Detected(boolean countOccurrences) {
+            occurrences = countOccurrences ? new IntIntMap() : null;
+        }
+
+        void addAll(Detected other) {
+            contexts.addAll(other.contexts);
+            items.addAll(other.items);
+            if (occurrences != null)
+                occurrences.addAll(other.occurrences);
         }
     }
 
     /**
      * Generates a dense mapping given all contexts, items and additional features
      * The context ids have odd indices whereas the item ids have even ones. That way the context vectors
-     * for item i can be accessed via i + 1.
+     * for item i can be accessed via i + 1. Ids are mapped in ascending order, or in descending order of occurrence
+     * if frequencyOrder is set, such that the mapping does not depend on the order in which they were detected.
      * @param contexts The set of all context ids
      * @param items The set of all item ids
      * @param features The set of all feature ids
      * @return Number of total elements
      */
-    public int createMap(Set<Integer> contexts, Set<Integer> items, Set<Integer> features) {
+    public int createMap(IntSet contexts, IntSet items, IntSet features) {
         logger.info("Creating dense mapping");
-        contextMap = new HashMap<>((int) (contexts.size() / HASH_MAP_LOAD_FACTOR), HASH_MAP_LOAD_FACTOR);
-        itemMap = new HashMap<>((int) (items.size() / HASH_MAP_LOAD_FACTOR), HASH_MAP_LOAD_FACTOR);
-        featureMap = new HashMap<>((int) (features.size() / HASH_MAP_LOAD_FACTOR), HASH_MAP_LOAD_FACTOR);
+        contextMap = new IntIntMap(items.size());
+        itemMap = new IntIntMap(items.size());
+        featureMap = new IntIntMap(features.size());
         int index = 0;
-        for (int id : items) {
+        for (int id : ordered(items, occurrences)) {
             itemMap.put(id, 2 * index);
             contextMap.put(id, 1 + 2 * index);
             index++;
         }
         index = 2 * index;
-        for (int id : features)
+        for (int id : ordered(features, featureOccurrences))
             featureMap.put(id, index++);
         return index;
     }
 
+    /**
+     * Appends ids which are not mapped yet behind all existing dense ids. Existing ids keep their dense id.
+     * New items and contexts are again mapped to pairs of an even and the following odd index, in the same order as
+     * by {@link #createMap}.
+     * @param items The set of all item ids
+     * @param features The set of all feature ids
+     * @return Number of total elements
+     */
+    public int extendMap(IntSet items, IntSet features) {
+        logger.info("Extending dense mapping");
+        int index = numFeatures;
+        int newItems = 0;
+        for (int id : ordered(items, occurrences)) {
+            if (itemMap.containsKey(id))
+                continue;
+            // keep item ids even, one row stays unused at most
+            if (newItems++ == 0 && index % 2 != 0)
+                ++index;
+            itemMap.put(id, index);
+            contextMap.put(id, index + 1);
+            index += 2;
+        }
+        int newFeatures = 0;
+        for (int id : ordered(features, featureOccurrences)) {
+            if (!featureMap.containsKey(id)) {
+                featureMap.put(id, index++);
+                ++newFeatures;
+            }
+        }
+        logger.info(String.format("%d new items, %d new features", newItems, newFeatures));
+        return index;
+    }
+
+    /**
+     * @param ids ids to order
+     * @param occurrences occurrences of the ids, null to order by id
+     * @return the ids in descending order of occurrence, ties in ascending order of id
+     */
+    private static int[] ordered(IntSet ids, IntIntMap occurrences) {
+        final int[] sorted = ids.toSortedArray();
+        if (occurrences == null)
+            return sorted;
+        // sort keys: inverted occurrence in the upper, position in the sorted ids in the lower 32 bits
+        final long[] keys = new long[sorted.length];
+        for (int i = 0; i < sorted.length; ++i)
+            keys[i] = (long) (Integer.MAX_VALUE - occurrences.getOrDefault(sorted[i], 0)) << 32 | i;
+        Arrays.parallelSort(keys);
+        final int[] ordered = new int[sorted.length];
+        for (int i = 0; i < ordered.length; ++i)
+            ordered[i] = sorted[(int) keys[i]];
+        return ordered;
+    }
+
+    /**
+     * @param id original item id
+     * @return dense item id or {@link IntIntMap#MISSING}
+     */
+    public int denseItem(int id) {
+        return itemMap.get(id);
+    }
+
+    /**
+     * @param id original context id
+     * @return dense context id or {@link IntIntMap#MISSING}
+     */
+    public int denseContext(int id) {
+        return contextMap.get(id);
+    }
+
+    /**
+     * @param id original feature id
+     * @return dense feature id or {@link IntIntMap#MISSING}
+     */
+    public int denseFeature(int id) {
+        return featureMap.get(id);
+    }
+
     /**
      * Return a dense data set using the learned mapping.
      * @param dataset A non dense column based data set
      * @return A dense data set
      */
     public DatasetInterface map(DatasetInterface dataset) {
-        DatasetInterface mappedDateset = new LowMemoryDataset((int) dataset.size());
+        DatasetInterface mappedDateset = new LowMemoryDataset(dataset.size());
         for (DataPoint dataPoint : dataset) {
-            Integer contextId = contextMap.get(dataPoint.contextId);
-            Integer itemId = itemMap.get(dataPoint.itemId);
-            if (contextId != null && itemId != null) {
+            final int contextId = contextMap.get(dataPoint.contextId);
+            final int itemId = itemMap.get(dataPoint.itemId);
+            if (contextId != IntIntMap.MISSING && itemId != IntIntMap.MISSING) {
                 dataPoint.contextId = contextId;
                 dataPoint.itemId = itemId;
                 mappedDateset.addDatapoint(dataPoint);
@@ -164,6 +310,20 @@ public class DenseMapper {
         return mappedDateset;
     }
 
+    /**
+     * Replaces the ids of a data set by their dense ids without copying it. All items of the data set must be known,
+     * e.g. because the mapping was learned from it by {@link #learn(DatasetInterface, Map)}. Data points whose context
+     * does not occur as item have no dense context id and are dropped as by {@link #map(DatasetInterface)}.
+     * @param dataset A non dense column based data set
+     */
+    public void mapInPlace(LowMemoryDataset dataset) {
+        logger.info("Mapping data set to dense representation");
+        dataset.mapIds(contextMap::get, itemMap::get);
+        final long dropped = dataset.removeId(IntIntMap.MISSING);
+        if (dropped > 0)
+            logger.warn(String.format("dropped %d data points whose context does not occur as item", dropped));
+    }
+
     /**
      * Return a dense data set using the learned mapping.
      * @param lines A non dense line based data set
@@ -183,30 +343,215 @@ public class DenseMapper {
     public SparseVector[] map(Map<Integer, SparseVector> optionalFeatures) {
         SparseVector[] mappedFeatures = new SparseVector[numFeatures];
         optionalFeatures.forEach((itemId, sparseVector) -> {
+            final int mappedId = itemMap.get(itemId);
+            if (mappedId == IntIntMap.MISSING)
+                return;
             SparseVector mappedVector = new SparseVector(sparseVector.size());
-            int i = 0;
-            for (SparseVector.SparseEntry entry : sparseVector)
-                mappedVector.set(i++, featureMap.get(entry.key), entry.value);
-            if (itemMap.containsKey(itemId))
-                mappedFeatures[itemMap.get(itemId)] = mappedVector;
+            for (int i = 0; i < sparseVector.size(); ++i)
+                mappedVector.set(i, featureMap.get(sparseVector.keyAt(i)), sparseVector.valueAt(i));
+            mappedFeatures[mappedId] = mappedVector;
         });
         return mappedFeatures;
     }
 
+    /**
+     * Writes the mapping of items and features. Context ids are not written as they follow from the item ids.
+     * Each line holds the type (item or feature), the original and the dense id separated by tabs.
+     * @param writer Output writer
+     * @throws IOException if writer is not writable
+     */
+    public void writeMapping(Writer writer) throws IOException {
+        logger.info("Writing dense mapping");
+        PrintWriter printWriter = new PrintWriter(new BufferedWriter(writer), false);
+        itemMap.forEach((id, mappedId) -> printWriter.println(ITEM + "\t" + id + "\t" + mappedId));
+        featureMap.forEach((id, mappedId) -> printWriter.println(FEATURE + "\t" + id + "\t" + mappedId));
+        printWriter.close();
+    }
+
+    /**
+     * Reads a mapping written by {@link #writeMapping(Writer)}.
+     * @param reader Input reader
+     * @throws IOException if reader is not readable
+     */
+    public void readMapping(Reader reader) throws IOException {
+        logger.info("Reading dense mapping");
+        contextMap = new IntIntMap();
+        itemMap = new IntIntMap();
+        featureMap = new IntIntMap();
+        numFeatures = 0;
+        BufferedReader bufReader = new BufferedReader(reader);
+        String line;
+        while ((line = bufReader.readLine()) != null) {
+            String[] split = line.split("\t");
+            int id = Integer.parseInt(split[1]);
+            int mappedId = Integer.parseInt(split[2]);
+            if (ITEM.equals(split[0])) {
+                itemMap.put(id, mappedId);
+                contextMap.put(id, mappedId + 1);
+                numFeatures = Math.max(numFeatures, mappedId + 2);
+            } else if (FEATURE.equals(split[0])) {
+                featureMap.put(id, mappedId);
+                numFeatures = Math.max(numFeatures, mappedId + 1);
+            } else {
+                throw new IOException("Invalid mapping line: " + line);
+            }
+        }
+        bufReader.close();
+        logger.info(String.format("read mapping of %d items and %d features (total: %d)", itemMap.size(), featureMap.size(), numFeatures));
+    }
+
+    /**
+     * Writes the mapping of items and features in a compact binary format together with a fingerprint of the input
+     * it was learned from (see {@link com.demshape.factorization.tools.Fingerprint}). A later run on the same input
+     * reads it back by {@link #readBinary(Path, long)} instead of detecting and mapping all ids again. The file is
+     * written to a temporary file first which then replaces the given path.
+     * <p>
+     * Layout: magic, version, fingerprint, number of dense ids, number of items followed by (id, dense id) pairs and
+     * number of features followed by (id, dense id) pairs.
+     * @param path Output path
+     * @param fingerprint Fingerprint of the input
+     * @throws IOException if the file can not be written
+     */
+    public void writeBinary(Path path, long fingerprint) throws IOException {
+        logger.info("Writing binary dense mapping to " + path);
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            output.writeInt(BINARY_MAGIC);
+            output.writeInt(BINARY_VERSION);
+            output.writeLong(fingerprint);
+            output.writeInt(numFeatures);
+            writeEntries(output, itemMap);
+            writeEntries(output, featureMap);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeEntries(DataOutputStream output, IntIntMap map) throws IOException {
+        // big endian like DataOutputStream
+        final ByteBuffer entries = ByteBuffer.allocate(Integer.BYTES + 2 * Integer.BYTES * map.size());
+        entries.putInt(map.size());
+        map.forEach((id, mappedId) -> entries.putInt(id).putInt(mappedId));
+        output.write(entries.array());
+    }
+
+    /**
+     * Reads a mapping written by {@link #writeBinary(Path, long)} if it exists and was learned from the same input. The
+     * file is only a cache: a file which is truncated, corrupt or not a binary mapping is ignored like an outdated one
+     * and the mapping is left unchanged.
+     * @param path Input path
+     * @param fingerprint Fingerprint of the current input
+     * @return true if the mapping was read, false if the file does not exist, belongs to a different input or can not
+     * be read
+     */
+    public boolean readBinary(Path path, long fingerprint) {
+        if (!Files.exists(path))
+            return false;
+        final int readFeatures;
+        final IntIntMap readItems;
+        final IntIntMap readContexts;
+        final IntIntMap readFeatureMap;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            final long length = Files.size(path);
+            if (input.readInt() != BINARY_MAGIC)
+                throw new IOException("not a binary mapping");
+            final int version = input.readInt();
+            if (version != BINARY_VERSION || input.readLong() != fingerprint) {
+                logger.info("binary dense mapping " + path + " is outdated");
+                return false;
+            }
+            logger.info("Reading binary dense mapping from " + path);
+            readFeatures = input.readInt();
+            final int items = readCount(input, length);
+            readItems = new IntIntMap(items);
+            readContexts = new IntIntMap(items);
+            for (int i = 0; i < items; ++i) {
+                final int id = input.readInt();
+                final int mappedId = input.readInt();
+                readItems.put(id, mappedId);
+                readContexts.put(id, mappedId + 1);
+            }
+            final int features = readCount(input, length);
+            readFeatureMap = new IntIntMap(features);
+            for (int i = 0; i < features; ++i)
+                readFeatureMap.put(input.readInt(), input.readInt());
+        } catch (EOFException e) {
+            logger.warn("binary dense mapping " + path + " is truncated, it is computed again");
+            return false;
+        } catch (IOException e) {
+            logger.warn("binary dense mapping " + path + " can not be read, it is computed again: " + e.getMessage());
+            return false;
+        }
+        numFeatures = readFeatures;
+        itemMap = readItems;
+        contextMap = readContexts;
+        featureMap = readFeatureMap;
+        logger.info(String.format("read mapping of %d items and %d features (total: %d)", itemMap.size(), featureMap.size(), numFeatures));
+        return true;
+    }
+
+    /**
+     * Reads the number of (id, dense id) pairs which follow, a corrupt count must not allocate huge maps.
+     */
+    private static int readCount(DataInputStream input, long length) throws IOException {
+        final int count = input.readInt();
+        if (count < 0 || 2L * Integer.BYTES * count > length)
+            throw new IOException("invalid number of entries: " + count);
+        return count;
+    }
+
     /**
      * Writes a dense mapped data set to disk.
      * @param dataset Input data set
      * @param writer Output writer
+     * @param ordered Whether the order of the data points is kept, e.g. for reproducible output. Otherwise the data
+     *                points are written in parallel in no particular order.
      * @throws IOException if writer is not writable
      */
-    public void write(DatasetInterface dataset, Writer writer) throws IOException {
+    public void write(DatasetInterface dataset, Writer writer, boolean ordered) throws IOException {
         logger.info("Writing dense mapped data set");
         PrintWriter printWriter = new PrintWriter(new BufferedWriter(writer), false);
-        dataset.parallelStream().forEach(dataPoint -> {
+        final Consumer<DataPoint> write = dataPoint -> {
             dataPoint.contextId = contextMap.get(dataPoint.contextId);
             dataPoint.itemId = itemMap.get(dataPoint.itemId);
             printWriter.println(dataPoint.toString());
-        });
+        };
+        if (ordered)
+            dataset.forEach(write);
+        else
+            dataset.parallelStream().forEach(write);
         printWriter.close();
     }
+
+    /**
+     * Writes a dense mapped data set to disk in binary columnar format (see {@link MappedDataset}). The order of the
+     * data points is kept. Data points whose context does not occur as item are dropped as by
+     * {@link #map(DatasetInterface)}, they are counted by an additional pass over the data set.
+     * @param dataset Input data set
+     * @param path Output path
+     * @throws IOException if path is not writable
+     */
+    public void writeColumnar(DatasetInterface dataset, Path path) throws IOException {
+        logger.info("Writing dense mapped data set in binary columnar format");
+        long size = dataset.size();
+        if (unknownContexts()) {
+            size = dataset.parallelStream().filter(dataPoint -> contextMap.containsKey(dataPoint.contextId)).count();
+            logger.warn(String.format("dropped %d data points whose context does not occur as item", dataset.size() - size));
+        }
+        try (ColumnarWriter writer = new ColumnarWriter(path, size)) {
+            for (DataPoint dataPoint : dataset) {
+                final int contextId = contextMap.get(dataPoint.contextId);
+                if (contextId != IntIntMap.MISSING)
+                    writer.add(contextId, itemMap.get(dataPoint.itemId), dataPoint.rating);
+            }
+        }
+    }
+
+    /**
+     * @return whether a detected context has no dense id because it does not occur as item
+     */
+    private boolean unknownContexts() {
+        final boolean[] unknown = {false};
+        contexts.forEach(id -> unknown[0] |= !contextMap.containsKey(id));
+        return unknown[0];
+    }
 }
@@ -1,31 +1,121 @@
 package com.demshape.factorization.dataset;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import com.demshape.factorization.datastructure.AsciiParser;
+import com.demshape.factorization.datastructure.DataBatch;
 import com.demshape.factorization.datastructure.DataPoint;
+import com.demshape.factorization.datastructure.LineReader;
 
 /**
  * A {@link DatasetInterface} implementation where data points are streamed from disk. It is hence suited
- * for very large data sets which do not fit into main memory.
+ * for very large data sets which do not fit into main memory. Lines are parsed from the bytes of the file by
+ * {@link AsciiParser}.
+ * <p>
+ * Partitions and the parts of parallel streams are byte ranges of the file, each line belongs to the range its first
+ * byte lies in. Every part is read and parsed by the thread which processes it through positional reads of
+ * {@link #READ_AHEAD} bytes, hence streaming scales with the number of threads. The parts hold about the same number of
+ * bytes rather than the same number of data points.
  */
 public class DiskBasedDataset implements DatasetInterface, Iterable<DataPoint> {
 
+    /**
+     * number of bytes read at once by each part
+     */
+    static final int READ_AHEAD = 1 << 20;
+
+    /**
+     * parts of parallel streams are not split below this number of bytes
+     */
+    static final long MIN_SPLIT_SIZE = 1 << 22;
+
     private String input;
-    private int size;
+    private long size;
     private BufferedWriter writer;
 
     final private String lineBreak = System.lineSeparator();
 
-    public DiskBasedDataset(String input, int size) {
+    /**
+     * @param input path of a file in column based format
+     * @param size  number of lines of the file
+     */
+    public DiskBasedDataset(String input, long size) {
         this.input = input;
         this.size = size;
     }
 
     @Override
     public Iterator<DataPoint> iterator() {
-        return new DiskBasedDatasetIterator(input);
+        return new DiskBasedDatasetIterator(reader(0, 1));
+    }
+
+    /**
+     * Each part is a byte range of the file, lines before it are neither read nor parsed.
+     */
+    @Override
+    public Iterator<DataPoint> partition(int index, int partitions) {
+        return new DiskBasedDatasetIterator(reader(index, partitions));
+    }
+
+    /**
+     * Parses the lines of a part straight into the batches.
+     */
+    @Override
+    public BatchCursor cursor(int index, int partitions) {
+        final DiskBasedDatasetReader reader = reader(index, partitions);
+        final DataPoint dataPoint = new DataPoint();
+        return batch -> {
+            batch.clear();
+            try {
+                while (!batch.isFull() && reader.next(dataPoint))
+                    batch.add(dataPoint.contextId, dataPoint.itemId, dataPoint.rating);
+            } catch (IOException e) {
+                throw new IllegalArgumentException(e);
+            }
+            return batch.size > 0;
+        };
+    }
+
+    @Override
+    public Spliterator<DataPoint> spliterator() {
+        final long length = length();
+        return new DiskBasedDatasetSpliterator(input, 0, length, length, size);
+    }
+
+    /**
+     * Splits the file into byte ranges, each part reads and parses its lines on the thread which processes it.
+     */
+    @Override
+    public Stream<DataPoint> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    private DiskBasedDatasetReader reader(int index, int partitions) {
+        final long length = length();
+        try {
+            return new DiskBasedDatasetReader(input, DatasetInterface.partitionStart(length, index, partitions),
+                    DatasetInterface.partitionStart(length, index + 1, partitions));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    private long length() {
+        try {
+            return Files.size(Paths.get(input));
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
     }
 
     @Override
@@ -52,15 +142,64 @@ public class DiskBasedDataset implements DatasetInterface, Iterable<DataPoint> {
 
 }
 
+/**
+ * Parses the lines of a byte range, the file is closed after the last line.
+ */
+class DiskBasedDatasetReader {
+
+    private final FileChannel channel;
+    private final LineReader lines;
+    private boolean open = true;
+
+    DiskBasedDatasetReader(String input, long from, long to) throws IOException {
+        channel = FileChannel.open(Paths.get(input), StandardOpenOption.READ);
+        try {
+            lines = new LineReader(channel, from, to, DiskBasedDataset.READ_AHEAD);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param target data point which is overwritten by the next line
+     * @return false if there are no more lines
+     */
+    boolean next(DataPoint target) throws IOException {
+        if (!open)
+            return false;
+        if (lines.next()) {
+            AsciiParser.parseDataPoint(lines.buffer(), lines.start(), lines.end(), target);
+            return true;
+        }
+        close();
+        return false;
+    }
+
+    void close() throws IOException {
+        if (open) {
+            open = false;
+            channel.close();
+        }
+    }
+
+}
+
 class DiskBasedDatasetIterator implements Iterator<DataPoint> {
 
-    private String nextLine;
-    private BufferedReader bufReader;
+    private final DiskBasedDatasetReader reader;
+    private DataPoint nextDataPoint;
+
+    DiskBasedDatasetIterator(DiskBasedDatasetReader reader) {
+        this.reader = reader;
+        advance();
+    }
 
-    public DiskBasedDatasetIterator(String input) {
+    private void advance() {
         try {
-            bufReader = new BufferedReader(new FileReader(input));
-            nextLine = bufReader.readLine();
+            nextDataPoint = new DataPoint();
+            if (!reader.next(nextDataPoint))
+                nextDataPoint = null;
         } catch (IOException e) {
             throw new IllegalArgumentException(e);
         }
@@ -68,25 +207,102 @@ class DiskBasedDatasetIterator implements Iterator<DataPoint> {
 
     @Override
     public boolean hasNext() {
-        return nextLine != null;
+        return nextDataPoint != null;
     }
 
     @Override
     public DataPoint next() {
-        if (nextLine == null)
+        if (nextDataPoint == null)
             throw new NoSuchElementException();
+        DataPoint current = nextDataPoint;
+        advance();
+        return current;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+}
+
+/**
+ * Spliterator over a byte range of the file. Splitting halves the range without reading anything, the file is opened
+ * once the part is traversed.
+ */
+class DiskBasedDatasetSpliterator implements Spliterator<DataPoint> {
+
+    private final String input;
+    private long from;
+    private final long to;
+    private final long length;
+    private final long lines;
+    private DiskBasedDatasetReader reader;
+
+    /**
+     * @param length size of the whole file in bytes
+     * @param lines  number of lines of the whole file, used to estimate the size of parts
+     */
+    DiskBasedDatasetSpliterator(String input, long from, long to, long length, long lines) {
+        this.input = input;
+        this.from = from;
+        this.to = to;
+        this.length = length;
+        this.lines = lines;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super DataPoint> action) {
         try {
-            String currentLine = nextLine;
-            nextLine = bufReader.readLine();
-            return new DataPoint(currentLine);
+            if (reader == null)
+                reader = new DiskBasedDatasetReader(input, from, to);
+            final DataPoint dataPoint = new DataPoint();
+            if (!reader.next(dataPoint))
+                return false;
+            action.accept(dataPoint);
+            return true;
         } catch (IOException e) {
             throw new IllegalArgumentException(e);
         }
     }
 
     @Override
-    public void remove() {
-        throw new UnsupportedOperationException();
+    public void forEachRemaining(Consumer<? super DataPoint> action) {
+        try {
+            if (reader == null)
+                reader = new DiskBasedDatasetReader(input, from, to);
+            try {
+                DataPoint dataPoint = new DataPoint();
+                while (reader.next(dataPoint)) {
+                    action.accept(dataPoint);
+                    dataPoint = new DataPoint();
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    @Override
+    public Spliterator<DataPoint> trySplit() {
+        if (reader != null || to - from < 2 * DiskBasedDataset.MIN_SPLIT_SIZE)
+            return null;
+        final long middle = from + (to - from) / 2;
+        final DiskBasedDatasetSpliterator prefix = new DiskBasedDatasetSpliterator(input, from, middle, length, lines);
+        from = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return length == 0 ? 0 : (long) ((double) lines * (to - from) / length);
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
     }
 
 }
@@ -0,0 +1,68 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.DataPoint;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+
+/**
+ * Spliterator over the index range [from, to) of a data set with random access. Splitting halves the range in constant
+ * time and the data points are created by the thread which processes them. In contrast to
+ * {@link java.util.Spliterators#spliterator(java.util.Iterator, long, int)}, which copies batches of an iterator on the
+ * calling thread, parallel streams therefore start all workers at once with evenly sized parts.
+ */
+public class IndexRangeSpliterator implements Spliterator<DataPoint> {
+
+    private final LongFunction<DataPoint> get;
+    private long index;
+    private final long to;
+
+    /**
+     * @param get  returns the data point at an index
+     * @param from first index
+     * @param to   index after the last one
+     */
+    public IndexRangeSpliterator(LongFunction<DataPoint> get, long from, long to) {
+        this.get = get;
+        this.index = from;
+        this.to = to;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super DataPoint> action) {
+        if (index >= to)
+            return false;
+        action.accept(get.apply(index++));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super DataPoint> action) {
+        final long end = to;
+        for (long i = index; i < end; ++i)
+            action.accept(get.apply(i));
+        index = end;
+    }
+
+    @Override
+    public Spliterator<DataPoint> trySplit() {
+        final long middle = (index + to) >>> 1;
+        if (middle <= index)
+            return null;
+        final IndexRangeSpliterator prefix = new IndexRangeSpliterator(get, index, middle);
+        index = middle;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return to - index;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.ORDERED | DatasetInterface.characteristics();
+    }
+
+}
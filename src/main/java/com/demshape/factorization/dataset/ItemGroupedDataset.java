@@ -0,0 +1,221 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.DataBatch;
+import com.demshape.factorization.datastructure.DataPoint;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Random;
+
+/**
+ * Copy of a dense mapped data set in which all data points of an item follow each other. A worker then trains all
+ * pairs of an item in a row and the item vector (and the sum of its features) stays in the cpu cache while only
+ * contexts and negative samples vary.
+ * <p>
+ * The data points of an item are split into groups of at most groupSize points such that popular items do not train
+ * on long runs of the same item. The order of the groups is random and changed by {@link #shuffle(Random)}, e.g.
+ * before every iteration. Within a group the points keep the order of the input data set.
+ */
+public class ItemGroupedDataset implements DatasetInterface {
+
+    private static final Logger logger = LogManager.getLogger(ItemGroupedDataset.class);
+
+    // data points sorted by item
+    private final LowMemoryDataset sorted;
+
+    /**
+     * group g holds the sorted data points [groupStart[g], groupStart[g + 1])
+     */
+    private final long[] groupStart;
+
+    /**
+     * current order of the groups and position of the first data point of order[k] in this order
+     */
+    private final int[] order;
+    private final long[] orderStart;
+
+    /**
+     * Copies a data set, sorted by item with a counting sort. Positions are long, the copy is segmented like
+     * {@link LowMemoryDataset}.
+     * @param dataset a dense mapped data set
+     * @param numFeatures number of dense ids
+     * @param groupSize maximum number of data points per group, there must be less than 2^31 groups
+     */
+    public ItemGroupedDataset(DatasetInterface dataset, int numFeatures, int groupSize) {
+        if (groupSize <= 0)
+            throw new IllegalArgumentException("Invalid group size parameter: " + groupSize);
+        logger.info("grouping data set by item...");
+        final long[] start = new long[numFeatures + 1];
+        for (DataPoint dataPoint : dataset)
+            start[dataPoint.itemId + 1]++;
+        long groupCount = 0;
+        for (int id = 0; id < numFeatures; ++id) {
+            groupCount += (start[id + 1] + groupSize - 1) / groupSize;
+            start[id + 1] += start[id];
+        }
+        if (groupCount > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException(String.format("%d groups are too many, increase the group size %d", groupCount, groupSize));
+        final int groups = (int) groupCount;
+        final long size = start[numFeatures];
+
+        sorted = LowMemoryDataset.zeros(size);
+        final long[] next = Arrays.copyOf(start, numFeatures);
+        for (DataPoint dataPoint : dataset)
+            sorted.set(next[dataPoint.itemId]++, dataPoint.contextId, dataPoint.itemId, dataPoint.rating);
+
+        groupStart = new long[groups + 1];
+        int group = 0;
+        for (int id = 0; id < numFeatures; ++id)
+            for (long position = start[id]; position < start[id + 1]; position += groupSize)
+                groupStart[group++] = position;
+        groupStart[groups] = size;
+
+        order = new int[groups];
+        orderStart = new long[groups + 1];
+        for (int i = 0; i < groups; ++i)
+            order[i] = i;
+        updateOrderStart();
+    }
+
+    /**
+     * Randomly permutes the order of the groups. Must not be called while iterating.
+     * @param random random numbers
+     */
+    public void shuffle(Random random) {
+        for (int i = order.length - 1; i > 0; --i) {
+            final int j = random.nextInt(i + 1);
+            final int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+        updateOrderStart();
+    }
+
+    private void updateOrderStart() {
+        for (int k = 0; k < order.length; ++k)
+            orderStart[k + 1] = orderStart[k] + groupStart[order[k] + 1] - groupStart[order[k]];
+    }
+
+    /**
+     * @return number of groups
+     */
+    public int groups() {
+        return order.length;
+    }
+
+    @Override
+    public boolean addDatapoint(DataPoint dataPoint) {
+        throw new UnsupportedOperationException("grouped data sets are read only");
+    }
+
+    @Override
+    public long size() {
+        return sorted.size();
+    }
+
+    @Override
+    public Iterator<DataPoint> iterator() {
+        return new GroupedIterator(0, sorted.size());
+    }
+
+    /**
+     * Parts are contiguous in the current group order, a group may be split between two parts.
+     */
+    @Override
+    public Iterator<DataPoint> partition(int index, int partitions) {
+        final long from = DatasetInterface.partitionStart(sorted.size(), index, partitions);
+        final long to = DatasetInterface.partitionStart(sorted.size(), index + 1, partitions);
+        return new GroupedIterator(from, to);
+    }
+
+    /**
+     * Copies the runs of the current group order into the batches.
+     */
+    @Override
+    public BatchCursor cursor(int index, int partitions) {
+        final long from = DatasetInterface.partitionStart(sorted.size(), index, partitions);
+        final long to = DatasetInterface.partitionStart(sorted.size(), index + 1, partitions);
+        return new GroupedCursor(from, to);
+    }
+
+    /**
+     * A position within the positions [from, to) of the current group order.
+     */
+    private class GroupedPosition {
+
+        long remaining;
+        int k;
+        long position;
+        long groupEnd;
+
+        GroupedPosition(long from, long to) {
+            remaining = to - from;
+            if (remaining <= 0)
+                return;
+            // last group starting at or before from
+            k = Arrays.binarySearch(orderStart, 0, order.length, from);
+            if (k < 0)
+                k = -k - 2;
+            while (orderStart[k + 1] <= from)
+                ++k;
+            position = groupStart[order[k]] + from - orderStart[k];
+            groupEnd = groupStart[order[k] + 1];
+        }
+
+        /**
+         * Moves to the start of the next group if the current one is done.
+         */
+        void nextGroup() {
+            if (position == groupEnd) {
+                ++k;
+                position = groupStart[order[k]];
+                groupEnd = groupStart[order[k] + 1];
+            }
+        }
+    }
+
+    private class GroupedIterator extends GroupedPosition implements Iterator<DataPoint> {
+
+        GroupedIterator(long from, long to) {
+            super(from, to);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return remaining > 0;
+        }
+
+        @Override
+        public DataPoint next() {
+            if (remaining <= 0)
+                throw new NoSuchElementException();
+            nextGroup();
+            --remaining;
+            return sorted.get(position++);
+        }
+    }
+
+    private class GroupedCursor extends GroupedPosition implements BatchCursor {
+
+        GroupedCursor(long from, long to) {
+            super(from, to);
+        }
+
+        @Override
+        public boolean next(DataBatch batch) {
+            batch.clear();
+            while (remaining > 0 && !batch.isFull()) {
+                nextGroup();
+                final int count = (int) Math.min(Math.min(remaining, batch.capacity() - batch.size), groupEnd - position);
+                sorted.copyTo(position, batch, count);
+                position += count;
+                remaining -= count;
+            }
+            return batch.size > 0;
+        }
+    }
+
+}
@@ -1,37 +1,301 @@
 package com.demshape.factorization.dataset;
 
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.IntUnaryOperator;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
+import com.demshape.factorization.datastructure.DataBatch;
 import com.demshape.factorization.datastructure.DataPoint;
 
 /**
  * A {@link DatasetInterface} implementation which is internally based on plain
  * java arrays in order to use less memory.
+ * <p>
+ * The arrays are split into segments of 2^{@link #SEGMENT_SHIFT} data points which are addressed by a long index,
+ * hence the number of data points is not limited by the maximum size of an array. Appending allocates new segments
+ * and never copies the data points which were added before. Only the first segment starts at the initial capacity and
+ * grows until it reaches the segment size, small data sets thus do not allocate a full segment.
  */
 public class LowMemoryDataset implements DatasetInterface {
 
-    private int[] contextIDs;
-    private int[] itemIDs;
-    private float[] ratings;
-    private int size;
+    /**
+     * log2 of the number of data points per segment
+     */
+    static final int SEGMENT_SHIFT = 20;
 
-    public LowMemoryDataset(int capacity) {
-        contextIDs = new int[capacity];
-        itemIDs = new int[capacity];
-        ratings = new float[capacity];
-        this.size = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    private final int segmentShift;
+    private final int segmentSize;
+    private final int segmentMask;
+    private int[][] contextIDs;
+    private int[][] itemIDs;
+    private float[][] ratings;
+    private int segments;
+    private long capacity;
+    private long size;
+
+    public LowMemoryDataset() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param capacity expected number of data points, the data set grows beyond it
+     */
+    public LowMemoryDataset(long capacity) {
+        this(capacity, SEGMENT_SHIFT);
+    }
+
+    LowMemoryDataset(long capacity, int segmentShift) {
+        if (capacity < 0)
+            throw new IllegalArgumentException("Invalid capacity parameter: " + capacity);
+        if (segmentShift < 0 || segmentShift > 30)
+            throw new IllegalArgumentException("Invalid segmentShift parameter: " + segmentShift);
+        this.segmentShift = segmentShift;
+        segmentSize = 1 << segmentShift;
+        segmentMask = segmentSize - 1;
+        clear();
+        ensureCapacity(capacity);
+    }
+
+    /**
+     * Drops all data points and segments.
+     */
+    private void clear() {
+        contextIDs = new int[1][0];
+        itemIDs = new int[1][0];
+        ratings = new float[1][0];
+        segments = 1;
+        capacity = 0;
+        size = 0;
     }
 
     @Override
     public Iterator<DataPoint> iterator() {
-        return new LowMemoryDatasetIterator();
+        return new LowMemoryDatasetIterator(0, size);
+    }
+
+    @Override
+    public Spliterator<DataPoint> spliterator() {
+        return new IndexRangeSpliterator(this::get, 0, size);
+    }
+
+    /**
+     * Splits by index range, each part creates its data points on the thread which processes it.
+     */
+    @Override
+    public Stream<DataPoint> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    DataPoint get(long index) {
+        final int segment = (int) (index >>> segmentShift);
+        final int offset = (int) index & segmentMask;
+        return new DataPoint(contextIDs[segment][offset], itemIDs[segment][offset], ratings[segment][offset]);
+    }
+
+    @Override
+    public Iterator<DataPoint> partition(int index, int partitions) {
+        final long from = DatasetInterface.partitionStart(size, index, partitions);
+        final long to = DatasetInterface.partitionStart(size, index + 1, partitions);
+        return new LowMemoryDatasetIterator(from, to);
+    }
+
+    /**
+     * Concatenates several data sets, e.g. parts of a file which were read concurrently. Segments are allocated as
+     * they are filled and the parts are emptied segment by segment: a full segment which starts at a segment border of
+     * the result is moved by reference, all others are copied and released right after. The data points are hence
+     * held twice for at most one segment.
+     * @param parts data sets in order, they are empty afterwards
+     * @return a data set holding all data points of the parts in order
+     */
+    public static LowMemoryDataset concat(List<LowMemoryDataset> parts) {
+        final LowMemoryDataset dataset = new LowMemoryDataset(0, parts.isEmpty() ? SEGMENT_SHIFT : parts.get(0).segmentShift);
+        for (LowMemoryDataset part : parts) {
+            for (int segment = 0; segment < part.segments; ++segment) {
+                final long start = (long) segment << part.segmentShift;
+                if (start >= part.size)
+                    break;
+                final int count = (int) Math.min(part.segmentSize, part.size - start);
+                if (count == dataset.segmentSize && (dataset.size & dataset.segmentMask) == 0
+                        && part.contextIDs[segment].length == dataset.segmentSize)
+                    dataset.appendSegment(part.contextIDs[segment], part.itemIDs[segment], part.ratings[segment]);
+                else
+                    dataset.append(part.contextIDs[segment], part.itemIDs[segment], part.ratings[segment], count);
+                part.contextIDs[segment] = null;
+                part.itemIDs[segment] = null;
+                part.ratings[segment] = null;
+            }
+            part.clear();
+        }
+        return dataset;
+    }
+
+    /**
+     * Appends full segments without copying them, the size must be a multiple of the segment size.
+     */
+    private void appendSegment(int[] contextIds, int[] itemIds, float[] ratings) {
+        final int segment = (int) (size >>> segmentShift);
+        if (segment == segments) {
+            growSegments();
+            segments++;
+        }
+        // replaces an empty segment, all segments are full afterwards
+        contextIDs[segment] = contextIds;
+        itemIDs[segment] = itemIds;
+        this.ratings[segment] = ratings;
+        capacity = (long) segments << segmentShift;
+        size += segmentSize;
+    }
+
+    /**
+     * Appends the first count entries of the given arrays.
+     */
+    private void append(int[] contextIds, int[] itemIds, float[] ratings, int count) {
+        ensureCapacity(size + count);
+        int copied = 0;
+        while (copied < count) {
+            final int segment = (int) (size >>> segmentShift);
+            final int offset = (int) size & segmentMask;
+            final int length = Math.min(count - copied, segmentSize - offset);
+            System.arraycopy(contextIds, copied, contextIDs[segment], offset, length);
+            System.arraycopy(itemIds, copied, itemIDs[segment], offset, length);
+            System.arraycopy(ratings, copied, this.ratings[segment], offset, length);
+            copied += length;
+            size += length;
+        }
+    }
+
+    /**
+     * Appends all data points of a mapped data set without creating data point objects.
+     * @param dataset a mapped data set
+     */
+    public void addAll(MappedDataset dataset) {
+        final long offset = size;
+        ensureCapacity(offset + dataset.size());
+        LongStream.range(0, dataset.size()).parallel().forEach(i -> {
+            final int segment = (int) ((offset + i) >>> segmentShift);
+            final int position = (int) (offset + i) & segmentMask;
+            contextIDs[segment][position] = dataset.contextId(i);
+            itemIDs[segment][position] = dataset.itemId(i);
+            ratings[segment][position] = dataset.rating(i);
+        });
+        size = offset + dataset.size();
+    }
+
+    /**
+     * Replaces all context and item ids concurrently, e.g. by their dense ids.
+     * @param contextMapping new id of each context id
+     * @param itemMapping new id of each item id
+     */
+    public void mapIds(IntUnaryOperator contextMapping, IntUnaryOperator itemMapping) {
+        LongStream.range(0, size).parallel().forEach(i -> {
+            final int segment = (int) (i >>> segmentShift);
+            final int offset = (int) i & segmentMask;
+            contextIDs[segment][offset] = contextMapping.applyAsInt(contextIDs[segment][offset]);
+            itemIDs[segment][offset] = itemMapping.applyAsInt(itemIDs[segment][offset]);
+        });
+    }
+
+    /**
+     * Removes all data points whose context or item id equals the given id, e.g. ids without a dense id. The order of
+     * the remaining data points is kept.
+     * @param id id to remove
+     * @return number of removed data points
+     */
+    public long removeId(int id) {
+        final long first = LongStream.range(0, size).parallel().filter(i -> hasId(i, id)).min().orElse(size);
+        long kept = first;
+        for (long i = first; i < size; ++i) {
+            if (hasId(i, id))
+                continue;
+            final int segment = (int) (i >>> segmentShift);
+            final int offset = (int) i & segmentMask;
+            set(kept++, contextIDs[segment][offset], itemIDs[segment][offset], ratings[segment][offset]);
+        }
+        final long removed = size - kept;
+        size = kept;
+        return removed;
+    }
+
+    private boolean hasId(long index, int id) {
+        final int segment = (int) (index >>> segmentShift);
+        final int offset = (int) index & segmentMask;
+        return contextIDs[segment][offset] == id || itemIDs[segment][offset] == id;
+    }
+
+    /**
+     * Copies array ranges into the batches.
+     */
+    @Override
+    public BatchCursor cursor(int index, int partitions) {
+        final long from = DatasetInterface.partitionStart(size, index, partitions);
+        final long to = DatasetInterface.partitionStart(size, index + 1, partitions);
+        return new BatchCursor() {
+            private long position = from;
+
+            @Override
+            public boolean next(DataBatch batch) {
+                final int count = (int) Math.min(batch.capacity(), to - position);
+                batch.size = 0;
+                copyTo(position, batch, count);
+                position += count;
+                return count > 0;
+            }
+        };
+    }
+
+    /**
+     * Appends count data points starting at position to a batch, a range which spans two segments is copied in two
+     * pieces.
+     */
+    void copyTo(long position, DataBatch batch, int count) {
+        int copied = 0;
+        while (copied < count) {
+            final int segment = (int) (position >>> segmentShift);
+            final int offset = (int) position & segmentMask;
+            final int length = Math.min(count - copied, segmentSize - offset);
+            System.arraycopy(contextIDs[segment], offset, batch.contextIds, batch.size, length);
+            System.arraycopy(itemIDs[segment], offset, batch.itemIds, batch.size, length);
+            System.arraycopy(ratings[segment], offset, batch.ratings, batch.size, length);
+            batch.size += length;
+            copied += length;
+            position += length;
+        }
+    }
+
+    /**
+     * Creates a data set of size data points which are all 0 until they are overwritten by
+     * {@link #set(long, int, int, float)}, e.g. by a sort.
+     */
+    static LowMemoryDataset zeros(long size) {
+        final LowMemoryDataset dataset = new LowMemoryDataset(size);
+        dataset.size = size;
+        return dataset;
+    }
+
+    void set(long index, int contextId, int itemId, float rating) {
+        final int segment = (int) (index >>> segmentShift);
+        final int offset = (int) index & segmentMask;
+        contextIDs[segment][offset] = contextId;
+        itemIDs[segment][offset] = itemId;
+        ratings[segment][offset] = rating;
     }
 
     @Override
     public boolean addDatapoint(DataPoint dataPoint) {
-        contextIDs[size] = dataPoint.contextId;
-        itemIDs[size] = dataPoint.itemId;
-        ratings[size] = dataPoint.rating;
+        if (size == capacity)
+            ensureCapacity(size + 1);
+        final int segment = (int) (size >>> segmentShift);
+        final int offset = (int) size & segmentMask;
+        contextIDs[segment][offset] = dataPoint.contextId;
+        itemIDs[segment][offset] = dataPoint.itemId;
+        ratings[segment][offset] = dataPoint.rating;
         size++;
         return true;
     }
@@ -41,21 +305,63 @@ public class LowMemoryDataset implements DatasetInterface {
         return size;
     }
 
+    /**
+     * Grows the first segment by half its length up to the segment size and allocates further segments as needed.
+     * @param minCapacity number of data points which fit without growing
+     */
+    private void ensureCapacity(long minCapacity) {
+        if (minCapacity <= capacity)
+            return;
+        if (segments == 1 && capacity < segmentSize) {
+            final int length = (int) Math.min(segmentSize, Math.max(minCapacity, Math.max(MIN_CAPACITY, capacity + (capacity >> 1))));
+            contextIDs[0] = Arrays.copyOf(contextIDs[0], length);
+            itemIDs[0] = Arrays.copyOf(itemIDs[0], length);
+            ratings[0] = Arrays.copyOf(ratings[0], length);
+            capacity = length;
+        }
+        while (capacity < minCapacity) {
+            growSegments();
+            contextIDs[segments] = new int[segmentSize];
+            itemIDs[segments] = new int[segmentSize];
+            ratings[segments] = new float[segmentSize];
+            segments++;
+            capacity += segmentSize;
+        }
+    }
+
+    /**
+     * Makes room for another segment reference, only the references to the segments are copied.
+     */
+    private void growSegments() {
+        if (segments < contextIDs.length)
+            return;
+        final int length = (int) Math.min(Integer.MAX_VALUE - 8, 2L * segments);
+        if (length == segments)
+            throw new IllegalStateException("data set is full");
+        contextIDs = Arrays.copyOf(contextIDs, length);
+        itemIDs = Arrays.copyOf(itemIDs, length);
+        ratings = Arrays.copyOf(ratings, length);
+    }
+
 
     private class LowMemoryDatasetIterator implements Iterator<DataPoint> {
 
-        private int index;
+        private long index;
+        private final long to;
+
+        LowMemoryDatasetIterator(long from, long to) {
+            this.index = from;
+            this.to = to;
+        }
 
         @Override
         public boolean hasNext() {
-            return index < size;
+            return index < to;
         }
 
         @Override
         public DataPoint next() {
-            DataPoint dataPoint = new DataPoint(contextIDs[index], itemIDs[index], ratings[index]);
-            ++index;
-            return dataPoint;
+            return get(index++);
         }
 
         @Override
@@ -64,4 +370,4 @@ public class LowMemoryDataset implements DatasetInterface {
         }
 
     }
-}
\ No newline at end of file
+}
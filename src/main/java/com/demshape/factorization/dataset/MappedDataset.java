@@ -0,0 +1,164 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.DataBatch;
+import com.demshape.factorization.datastructure.DataPoint;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A read only {@link DatasetInterface} backed by a memory mapped file in binary columnar format (see
+ * {@link ColumnarWriter}). In contrast to {@link DiskBasedDataset} nothing is parsed, data points are read at random
+ * positions and the data set can be split into parts for concurrent work. Data sets larger than main memory are paged
+ * in and out by the operating system.
+ * <p>
+ * Layout (little endian): magic, version, number of data points n, n context ids, n item ids and n ratings. The file
+ * is mapped in segments of 1 GiB as a single mapping is limited to 2 GiB.
+ */
+public class MappedDataset implements DatasetInterface {
+
+    static final int MAGIC = 0x49494344;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final MappedByteBuffer[] segments;
+    private final long size;
+
+    /**
+     * @param path path of a data set in binary columnar format
+     * @throws IOException if the file can not be read or is not in binary columnar format
+     */
+    public MappedDataset(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long length = channel.size();
+            segments = new MappedByteBuffer[(int) ((length + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int segment = 0; segment < segments.length; ++segment) {
+                final long position = (long) segment << SEGMENT_SHIFT;
+                segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_MASK + 1, length - position));
+                segments[segment].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            if (length < HEADER_SIZE || getInt(0) != MAGIC)
+                throw new IOException("not a binary columnar data set: " + path);
+            if (getInt(4) != VERSION)
+                throw new IOException(String.format("unsupported binary columnar data set version %d", getInt(4)));
+            size = (long) getInt(8) & 0xffffffffL | (long) getInt(12) << 32;
+            if (length != HEADER_SIZE + 3L * Integer.BYTES * size)
+                throw new IOException(String.format("binary columnar data set %s is truncated", path));
+        }
+    }
+
+    public int contextId(long index) {
+        return getInt(HEADER_SIZE + (long) Integer.BYTES * index);
+    }
+
+    public int itemId(long index) {
+        return getInt(HEADER_SIZE + (long) Integer.BYTES * (size + index));
+    }
+
+    public float rating(long index) {
+        return Float.intBitsToFloat(getInt(HEADER_SIZE + (long) Integer.BYTES * (2 * size + index)));
+    }
+
+    /**
+     * Ints never cross a segment border as all offsets and the segment size are multiples of 4. Absolute reads do not
+     * change the state of the buffers and may be done concurrently.
+     */
+    private int getInt(long offset) {
+        return segments[(int) (offset >>> SEGMENT_SHIFT)].getInt((int) (offset & SEGMENT_MASK));
+    }
+
+    private DataPoint get(long index) {
+        return new DataPoint(contextId(index), itemId(index), rating(index));
+    }
+
+    @Override
+    public boolean addDatapoint(DataPoint dataPoint) {
+        throw new UnsupportedOperationException("mapped data sets are read only");
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<DataPoint> iterator() {
+        return new RangeIterator(0, size);
+    }
+
+    @Override
+    public Iterator<DataPoint> partition(int index, int partitions) {
+        return new RangeIterator(DatasetInterface.partitionStart(size, index, partitions),
+                DatasetInterface.partitionStart(size, index + 1, partitions));
+    }
+
+    @Override
+    public BatchCursor cursor(int index, int partitions) {
+        final long from = DatasetInterface.partitionStart(size, index, partitions);
+        final long to = DatasetInterface.partitionStart(size, index + 1, partitions);
+        return new BatchCursor() {
+            private long position = from;
+
+            @Override
+            public boolean next(DataBatch batch) {
+                final int count = (int) Math.min(batch.capacity(), to - position);
+                for (int i = 0; i < count; ++i, ++position) {
+                    batch.contextIds[i] = contextId(position);
+                    batch.itemIds[i] = itemId(position);
+                    batch.ratings[i] = rating(position);
+                }
+                batch.size = count;
+                return count > 0;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<DataPoint> spliterator() {
+        return new IndexRangeSpliterator(this::get, 0, size);
+    }
+
+    /**
+     * Splits by index range, each part reads its data points on the thread which processes it.
+     */
+    @Override
+    public Stream<DataPoint> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    private class RangeIterator implements Iterator<DataPoint> {
+
+        private long index;
+        private final long to;
+
+        RangeIterator(long from, long to) {
+            this.index = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return index < to;
+        }
+
+        @Override
+        public DataPoint next() {
+            if (index >= to)
+                throw new NoSuchElementException();
+            return get(index++);
+        }
+    }
+
+}
@@ -1,5 +1,6 @@
 package com.demshape.factorization.dataset;
 
+import com.demshape.factorization.datastructure.DataBatch;
 import com.demshape.factorization.datastructure.DataPoint;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -19,7 +20,7 @@ public class RowBasedDataset implements DatasetInterface, Iterable<DataPoint> {
     private int[][] lines;
     private long size;
     private int window;
-    private Long seed;
+    private long seed;
 
     public RowBasedDataset(int[][] lines, int window, long seed) {
         this.lines = lines;
@@ -30,7 +31,9 @@ public class RowBasedDataset implements DatasetInterface, Iterable<DataPoint> {
 
     // todo: pre-compute this instead of iterating
     private void computeSize() {
-        new WindowIterator().forEachRemaining(dataPoint -> size++);
+        final WindowIterator iterator = new WindowIterator();
+        for (; iterator.hasNext(); iterator.advance())
+            size++;
         logger.info("Number of positive data points:" + size);
     }
 
@@ -49,8 +52,36 @@ public class RowBasedDataset implements DatasetInterface, Iterable<DataPoint> {
         return new WindowIterator();
     }
 
+    /**
+     * Partitions by lines. Each part uses its own random window sizes.
+     */
+    @Override
+    public Iterator<DataPoint> partition(int index, int partitions) {
+        return window(index, partitions);
+    }
+
+    /**
+     * Writes the pairs of a partition straight into the batches, in the order of {@link #partition(int, int)}.
+     */
+    @Override
+    public BatchCursor cursor(int index, int partitions) {
+        final WindowIterator iterator = window(index, partitions);
+        return batch -> {
+            batch.clear();
+            iterator.next(batch);
+            return batch.size > 0;
+        };
+    }
+
+    private WindowIterator window(int index, int partitions) {
+        final int from = (int) DatasetInterface.partitionStart(lines.length, index, partitions);
+        final int to = (int) DatasetInterface.partitionStart(lines.length, index + 1, partitions);
+        return new WindowIterator(from, to, seed + index);
+    }
+
     private class WindowIterator implements Iterator<DataPoint> {
         private int line;
+        private int toLine;
         private int context;
         private int item;
         private int[] currentLine;
@@ -58,21 +89,43 @@ public class RowBasedDataset implements DatasetInterface, Iterable<DataPoint> {
         private Random random;
 
         public WindowIterator() {
+            this(0, lines.length, seed);
+        }
+
+        public WindowIterator(int fromLine, int toLine, long seed) {
+            this.line = fromLine;
+            this.toLine = toLine;
             item = 0;
             context = 1;
-            currentLine = lines[0];
+            if (fromLine < toLine)
+                currentLine = lines[fromLine];
             random = new Random(seed);
             sampledWindow = random.nextInt(window) + 1;
         }
 
         @Override
         public boolean hasNext() {
-            return line < lines.length;
+            return line < toLine;
         }
 
         @Override
         public DataPoint next() {
             DataPoint dataPoint = new DataPoint(currentLine[context] + 1, currentLine[item], 1.0f);
+            advance();
+            return dataPoint;
+        }
+
+        /**
+         * Appends pairs until the batch is full or the partition ends, without creating data points.
+         */
+        void next(DataBatch batch) {
+            while (!batch.isFull() && hasNext()) {
+                batch.add(currentLine[context] + 1, currentLine[item], 1.0f);
+                advance();
+            }
+        }
+
+        private void advance() {
             // jump to next context
             ++context;
             // if context == item jump to next context
@@ -85,13 +138,12 @@ public class RowBasedDataset implements DatasetInterface, Iterable<DataPoint> {
                 context = Math.max(0, item - sampledWindow);
             }
             // if end of line jump to next line
-            if (item == currentLine.length && ++line < lines.length) {
+            if (item == currentLine.length && ++line < toLine) {
                 currentLine = lines[line];
                 item = 0;
                 context = 1;
                 sampledWindow = random.nextInt(window) + 1;
             }
-            return dataPoint;
         }
 
         @Override
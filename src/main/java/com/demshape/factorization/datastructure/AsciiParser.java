@@ -0,0 +1,200 @@
+package com.demshape.factorization.datastructure;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Decodes numbers and lines of the text input formats directly from the bytes of a buffer, without creating a String
+ * per line or field. All methods read the range [from, to) of a buffer by absolute index, they do not change the state
+ * of the buffer and work on heap as well as mapped buffers.
+ * <p>
+ * Invalid input throws a {@link NumberFormatException} just like {@link Integer#parseInt(String)} and
+ * {@link Float#parseFloat(String)}.
+ */
+public class AsciiParser {
+
+    private static final float[] POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+    private static final long MAX_EXACT_MANTISSA = 1L << 24;
+    private static final int MAX_DIGITS = 18;
+
+    /**
+     * @return index of the first occurrence of b in [from, to) or to if there is none
+     */
+    public static int indexOf(ByteBuffer buffer, int from, int to, byte b) {
+        for (int i = from; i < to; ++i)
+            if (buffer.get(i) == b)
+                return i;
+        return to;
+    }
+
+    /**
+     * Parses a decimal int with an optional sign.
+     */
+    public static int parseInt(ByteBuffer buffer, int from, int to) {
+        if (from >= to)
+            throw invalid(buffer, from, to);
+        int i = from;
+        final byte first = buffer.get(i);
+        final boolean negative = first == '-';
+        if (negative || first == '+')
+            ++i;
+        if (i == to)
+            throw invalid(buffer, from, to);
+        long value = 0;
+        for (; i < to; ++i) {
+            final int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9)
+                throw invalid(buffer, from, to);
+            value = 10 * value + digit;
+            if (value > (long) Integer.MAX_VALUE + 1)
+                throw invalid(buffer, from, to);
+        }
+        if (negative)
+            value = -value;
+        if (value > Integer.MAX_VALUE)
+            throw invalid(buffer, from, to);
+        return (int) value;
+    }
+
+    /**
+     * Parses a float such as 3, -0.25 or 1.5e3. The result equals {@link Float#parseFloat(String)}: numbers with a
+     * mantissa below 2^24 and a decimal exponent of at most 10 are exact floats multiplied or divided by an exact power
+     * of ten, which is rounded correctly. All other numbers are passed on to {@link Float#parseFloat(String)}.
+     */
+    public static float parseFloat(ByteBuffer buffer, int from, int to) {
+        int i = from;
+        boolean negative = false;
+        if (i < to && (buffer.get(i) == '-' || buffer.get(i) == '+'))
+            negative = buffer.get(i++) == '-';
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean point = false;
+        boolean anyDigit = false;
+        for (; i < to; ++i) {
+            final byte current = buffer.get(i);
+            if (current >= '0' && current <= '9') {
+                anyDigit = true;
+                mantissa = 10 * mantissa + (current - '0');
+                if (mantissa > 0 && ++digits > MAX_DIGITS)
+                    return fallback(buffer, from, to);
+                if (point)
+                    --exponent;
+            } else if (current == '.' && !point) {
+                point = true;
+            } else {
+                break;
+            }
+        }
+        if (anyDigit && i < to && (buffer.get(i) == 'e' || buffer.get(i) == 'E')) {
+            int j = i + 1;
+            final boolean negativeExponent = j < to && buffer.get(j) == '-';
+            if (j < to && (negativeExponent || buffer.get(j) == '+'))
+                ++j;
+            int value = 0;
+            // at most three digits, longer exponents are left to the fallback
+            for (i = j; i < to && i - j < 3 && buffer.get(i) >= '0' && buffer.get(i) <= '9'; ++i)
+                value = 10 * value + (buffer.get(i) - '0');
+            if (i == j)
+                return fallback(buffer, from, to);
+            exponent += negativeExponent ? -value : value;
+        }
+        // no digits, NaN, Infinity, hexadecimal numbers, type suffixes and large or long numbers
+        if (!anyDigit || i != to || mantissa >= MAX_EXACT_MANTISSA || exponent < -10 || exponent > 10)
+            return fallback(buffer, from, to);
+        final float value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a line of the column based format: context id, item id and rating separated by tabs.
+     * @param target data point which is overwritten
+     * @return target
+     */
+    public static DataPoint parseDataPoint(ByteBuffer buffer, int from, int to, DataPoint target) {
+        final int first = indexOf(buffer, from, to, (byte) '\t');
+        final int second = indexOf(buffer, first + 1, to, (byte) '\t');
+        if (second >= to)
+            throw invalid(buffer, from, to);
+        // further columns are ignored
+        final int third = indexOf(buffer, second + 1, to, (byte) '\t');
+        target.contextId = parseInt(buffer, from, first);
+        target.itemId = parseInt(buffer, first + 1, second);
+        target.rating = parseFloat(buffer, second + 1, third);
+        return target;
+    }
+
+    /**
+     * Parses a line of the row based format: tab separated ids. Trailing tabs are ignored.
+     */
+    public static int[] parseRow(ByteBuffer buffer, int from, int to) {
+        final int trimmed = withoutTrailingTabs(buffer, from, to);
+        // like String.split, a line of tabs has no fields
+        if (trimmed == from && to > from)
+            return new int[0];
+        to = trimmed;
+        int fields = 1;
+        for (int i = from; i < to; ++i)
+            if (buffer.get(i) == '\t')
+                ++fields;
+        final int[] row = new int[fields];
+        int start = from;
+        for (int field = 0; field < fields; ++field) {
+            final int end = indexOf(buffer, start, to, (byte) '\t');
+            row[field] = parseInt(buffer, start, end);
+            start = end + 1;
+        }
+        return row;
+    }
+
+    /**
+     * Parses the features of a line in sparse vector format: ITEM_ID FEATURE_ID:FEATURE_VALUE ... separated by tabs.
+     * Trailing tabs are ignored.
+     * @param itemId output, holds the item id at index 0
+     * @return the features
+     */
+    public static SparseVector parseFeatures(ByteBuffer buffer, int from, int to, int[] itemId) {
+        to = withoutTrailingTabs(buffer, from, to);
+        int entries = 0;
+        for (int i = from; i < to; ++i)
+            if (buffer.get(i) == '\t')
+                ++entries;
+        int end = indexOf(buffer, from, to, (byte) '\t');
+        itemId[0] = parseInt(buffer, from, end);
+        final SparseVector sparseVector = new SparseVector(entries);
+        for (int entry = 0; entry < entries; ++entry) {
+            final int start = end + 1;
+            end = indexOf(buffer, start, to, (byte) '\t');
+            final int colon = indexOf(buffer, start, end, (byte) ':');
+            if (colon == end)
+                throw invalid(buffer, start, end);
+            sparseVector.set(entry, parseInt(buffer, start, colon), parseFloat(buffer, colon + 1, end));
+        }
+        return sparseVector;
+    }
+
+    /**
+     * @return end of the range without trailing tabs, the empty trailing fields which String.split drops
+     */
+    private static int withoutTrailingTabs(ByteBuffer buffer, int from, int to) {
+        while (to > from && buffer.get(to - 1) == '\t')
+            --to;
+        return to;
+    }
+
+    private static float fallback(ByteBuffer buffer, int from, int to) {
+        return Float.parseFloat(string(buffer, from, to));
+    }
+
+    private static NumberFormatException invalid(ByteBuffer buffer, int from, int to) {
+        return new NumberFormatException("For input string: \"" + string(buffer, from, to) + "\"");
+    }
+
+    private static String string(ByteBuffer buffer, int from, int to) {
+        final byte[] bytes = new byte[to - from];
+        for (int i = from; i < to; ++i)
+            bytes[i - from] = buffer.get(i);
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.demshape.factorization.datastructure;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A bounded lock free queue of batches for several producers and consumers (array based queue of Dmitry Vyukov).
+ * Each slot carries a sequence number which tells whether it is free for the producer of a position or filled for its
+ * consumer, hence producers and consumers only contend on their own counter. {@link #offer(DataBatch)} and
+ * {@link #poll()} never block, callers decide how to wait.
+ */
+public class BatchRing {
+
+    private final DataBatch[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * @param capacity maximum number of batches, rounded up to a power of two
+     */
+    public BatchRing(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("Invalid capacity parameter: " + capacity);
+        final int size = Integer.bitCount(capacity) == 1 ? capacity : Integer.highestOneBit(capacity) << 1;
+        slots = new DataBatch[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; ++i)
+            sequences.set(i, i);
+        mask = size - 1;
+    }
+
+    /**
+     * @param batch batch to append
+     * @return false if the ring is full
+     */
+    public boolean offer(DataBatch batch) {
+        long position = tail.get();
+        while (true) {
+            final int slot = (int) position & mask;
+            final long difference = sequences.get(slot) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[slot] = batch;
+                    // publishes the batch to the consumer of this position
+                    sequences.lazySet(slot, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                // another producer took this position
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * @return the oldest batch or null if the ring is empty
+     */
+    public DataBatch poll() {
+        long position = head.get();
+        while (true) {
+            final int slot = (int) position & mask;
+            final long difference = sequences.get(slot) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    final DataBatch batch = slots[slot];
+                    slots[slot] = null;
+                    // frees the slot for the producer one round later
+                    sequences.lazySet(slot, position + mask + 1);
+                    return batch;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = head.get();
+            }
+        }
+    }
+
+    /**
+     * @return number of batches in the ring, exact only if no batch is added or removed concurrently
+     */
+    public int size() {
+        return (int) Math.max(0, Math.min(slots.length, tail.get() - head.get()));
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.demshape.factorization.datastructure;
+
+/**
+ * A reusable batch of data points held in primitive arrays. Filled by a
+ * {@link com.demshape.factorization.dataset.BatchCursor} such that the training and evaluation loops do not create an
+ * object per data point.
+ */
+public class DataBatch {
+
+    /**
+     * capacity used by the training and evaluation loops
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    public final int[] contextIds;
+    public final int[] itemIds;
+    public final float[] ratings;
+
+    /**
+     * number of valid data points
+     */
+    public int size;
+
+    public DataBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity maximum number of data points
+     */
+    public DataBatch(int capacity) {
+        contextIds = new int[capacity];
+        itemIds = new int[capacity];
+        ratings = new float[capacity];
+    }
+
+    public int capacity() {
+        return contextIds.length;
+    }
+
+    public boolean isFull() {
+        return size == contextIds.length;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Appends a data point, the batch must not be full.
+     */
+    public void add(int contextId, int itemId, float rating) {
+        contextIds[size] = contextId;
+        itemIds[size] = itemId;
+        ratings[size] = rating;
+        ++size;
+    }
+
+    public void add(DataPoint dataPoint) {
+        add(dataPoint.contextId, dataPoint.itemId, dataPoint.rating);
+    }
+
+}
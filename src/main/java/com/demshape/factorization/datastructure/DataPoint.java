@@ -44,16 +44,7 @@ public class DataPoint {
      * are merged into this.
      */
     public SparseVector toSparseVector(SparseVector features) {
-        if (features == null)
-            return toSparseVector();
-        SparseVector sparseVector = new SparseVector(2 + features.size());
-        sparseVector.set(0, contextId, 1.0f);
-        sparseVector.set(1, itemId, 1.0f);
-        int index = 2;
-        for (SparseVector.SparseEntry entry : features)
-            sparseVector.set(index++, entry.key, entry.value);
-
-        return sparseVector;
+        return toSparseVector(features, new SparseVector(features == null ? 2 : 2 + features.size()));
     }
 
     /**
@@ -61,10 +52,26 @@ public class DataPoint {
      * @return A sparse vector where the first two dimensions hold the context and item id.
      */
     public SparseVector toSparseVector() {
-        SparseVector sparseVector = new SparseVector(2);
-        sparseVector.set(0, contextId, 1.0f);
-        sparseVector.set(1, itemId, 1.0f);
-        return sparseVector;
+        return toSparseVector(null, new SparseVector(2));
+    }
+
+    /**
+     * Like {@link #toSparseVector(SparseVector)} but fills a given vector, which lets the training loops reuse a
+     * single buffer per thread instead of allocating a vector per data point.
+     * @param features Additional features to be merged into the output sparse vector, may be null.
+     * @param target Vector which is resized and overwritten.
+     * @return target
+     */
+    public SparseVector toSparseVector(SparseVector features, SparseVector target) {
+        final int numFeatures = features == null ? 0 : features.size();
+        target.resize(2 + numFeatures);
+        target.set(0, contextId, 1.0f);
+        target.set(1, itemId, 1.0f);
+        if (numFeatures > 0) {
+            System.arraycopy(features.keys, 0, target.keys, 2, numFeatures);
+            System.arraycopy(features.values, 0, target.values, 2, numFeatures);
+        }
+        return target;
     }
 
     @Override
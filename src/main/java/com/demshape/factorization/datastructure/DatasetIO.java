@@ -1,13 +1,22 @@
 package com.demshape.factorization.datastructure;
 
+import com.demshape.factorization.dataset.ColumnarWriter;
 import com.demshape.factorization.dataset.DatasetInterface;
+import com.demshape.factorization.dataset.LowMemoryDataset;
+import com.demshape.factorization.dataset.MappedDataset;
 import com.demshape.factorization.dataset.RowBasedDataset;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jblas.FloatMatrix;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * Class which holds all IO operations.
@@ -16,6 +25,8 @@ public class DatasetIO {
 
     private static final Logger logger = LogManager.getLogger(DatasetIO.class);
 
+    private static final long MIN_CHUNK_SIZE = 1 << 24;
+
     /**
      * Read a data set from a txt file in column based format.
      * 1st column: item a (int)
@@ -40,6 +51,90 @@ public class DatasetIO {
         logger.info(String.format("read %d datapoints", lineNumber));
     }
 
+    /**
+     * Reads a data set from a txt file in column based format (see {@link #readColumnBased(String, DatasetInterface)})
+     * in a single pass. The file is split into byte ranges which are parsed concurrently, each line belongs to the
+     * range its first byte lies in. Empty lines are skipped.
+     * @param filepath Path to input file
+     * @return A data set holding all lines in the order of the file
+     * @throws IOException if path is not readable
+     */
+    public static LowMemoryDataset readColumnBased(String filepath) throws IOException {
+        return readColumnBased(filepath, chunks(Files.size(Paths.get(filepath))));
+    }
+
+    /**
+     * @param size size of a file in bytes
+     * @return number of byte ranges the file is split into for concurrent parsing
+     */
+    private static int chunks(long size) {
+        return (int) Math.max(1, Math.min(size / MIN_CHUNK_SIZE, 4L * Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @param chunks number of byte ranges parsed concurrently
+     */
+    static LowMemoryDataset readColumnBased(String filepath, int chunks) throws IOException {
+        logger.info("Reading from file: " + filepath);
+        final Path path = Paths.get(filepath);
+        final long size = Files.size(path);
+        final List<LowMemoryDataset> parts = LineReader.readChunks(path, chunks, lines -> {
+            final LowMemoryDataset part = new LowMemoryDataset(size / chunks / 16);
+            final DataPoint dataPoint = new DataPoint();
+            while (lines.next()) {
+                if (lines.end() > lines.start()) {
+                    AsciiParser.parseDataPoint(lines.buffer(), lines.start(), lines.end(), dataPoint);
+                    part.addDatapoint(dataPoint);
+                }
+            }
+            return part;
+        });
+        LowMemoryDataset dataset = LowMemoryDataset.concat(parts);
+        logger.info(String.format("read %d datapoints", dataset.size()));
+        return dataset;
+    }
+
+    /**
+     * Writes a data set in column based format.
+     * @param dataset A data set
+     * @param writer A writer for the output
+     * @throws IOException if writer is not writable
+     */
+    public static void writeColumnBased(DatasetInterface dataset, Writer writer) throws IOException {
+        PrintWriter printWriter = new PrintWriter(new BufferedWriter(writer), false);
+        for (DataPoint dataPoint : dataset)
+            printWriter.println(dataPoint.toString());
+        printWriter.close();
+    }
+
+    /**
+     * Writes a data set in binary columnar format, see {@link MappedDataset}.
+     * @param dataset A data set
+     * @param filepath Path to output file
+     * @throws IOException if path is not writable
+     */
+    public static void writeColumnar(DatasetInterface dataset, String filepath) throws IOException {
+        logger.info("Writing binary columnar data set: " + filepath);
+        try (ColumnarWriter writer = new ColumnarWriter(Paths.get(filepath), dataset.size())) {
+            for (DataPoint dataPoint : dataset)
+                writer.add(dataPoint);
+        }
+    }
+
+    /**
+     * Reads a data set in binary columnar format into memory.
+     * @param filepath Path to input file
+     * @return A data set
+     * @throws IOException if path is not readable or not in binary columnar format
+     */
+    public static LowMemoryDataset readColumnar(String filepath) throws IOException {
+        logger.info("Reading binary columnar data set: " + filepath);
+        final MappedDataset mapped = new MappedDataset(Paths.get(filepath));
+        final LowMemoryDataset dataset = new LowMemoryDataset(mapped.size());
+        dataset.addAll(mapped);
+        return dataset;
+    }
+
     /**
      * Read a data set from a txt file in row based format.
      * Each row of the data set contains interactions of a single user. All entries are ids.
@@ -51,25 +146,17 @@ public class DatasetIO {
      */
     public static int[][] readRowBased(String filepath) throws IOException {
         logger.info("Reading from file: " + filepath);
-        int numLines = numberOfLines(new FileReader(filepath));
-        int[][] lines = new int[numLines][];
-
-        BufferedReader bufReader = new BufferedReader(new FileReader(filepath));
-        String line;
-        int lineNumber = 0;
-        while ((line = bufReader.readLine()) != null) {
-            String[] split = line.split("\t");
-            lines[lineNumber] = new int[split.length];
-            for (int i = 0; i < split.length; ++i)
-                lines[lineNumber][i] = Integer.parseInt(split[i]);
-            ++lineNumber;
-            if (lineNumber % 1000000 == 0)
-                logger.info(String.format("Reading line: %d", lineNumber));
-
-        }
-        bufReader.close();
-        logger.info(String.format("read %d datapoints", lineNumber));
-        return lines;
+        final Path path = Paths.get(filepath);
+        final List<List<int[]>> parts = LineReader.readChunks(path, chunks(Files.size(path)), lines -> {
+            final List<int[]> part = new ArrayList<>();
+            while (lines.next())
+                if (lines.end() > lines.start())
+                    part.add(AsciiParser.parseRow(lines.buffer(), lines.start(), lines.end()));
+            return part;
+        });
+        int[][] rows = parts.stream().flatMap(List::stream).toArray(int[][]::new);
+        logger.info(String.format("read %d datapoints", rows.length));
+        return rows;
     }
 
     /**
@@ -116,20 +203,45 @@ public class DatasetIO {
         return lineNumber;
     }
 
+    /**
+     * Returns number of lines of a file, counting byte ranges of the file concurrently.
+     * @param filepath Path to input file
+     * @return Number of lines.
+     * @throws IOException if path is not readable
+     */
+    public static long numberOfLines(String filepath) throws IOException {
+        final Path path = Paths.get(filepath);
+        return LineReader.readChunks(path, chunks(Files.size(path)), lines -> {
+            long count = 0;
+            while (lines.next())
+                ++count;
+            return count;
+        }).stream().mapToLong(Long::longValue).sum();
+    }
+
     /**
      * Writes latens vectors to a given writer
      * @param latentVectors A mapping from id to a latent vector
      * @param writer A writer for the output
+     * @param sorted Whether the vectors are written ordered by id, e.g. for reproducible output. Otherwise they are
+     *               written in parallel in no particular order.
      * @throws IOException if writer is not writable
      */
-    public static void write(Map<Integer, FloatMatrix> latentVectors, Writer writer) throws IOException {
+    public static void write(Map<Integer, FloatMatrix> latentVectors, Writer writer, boolean sorted) throws IOException {
         PrintWriter printWriter = new PrintWriter(new BufferedWriter(writer), false);
-        latentVectors.entrySet().stream().parallel().map(entry -> {
+        Stream<Map.Entry<Integer, FloatMatrix>> entries = latentVectors.entrySet().stream().parallel();
+        if (sorted)
+            entries = entries.sorted(Map.Entry.comparingByKey());
+        Stream<String> lines = entries.map(entry -> {
             StringBuilder stringBuilder = new StringBuilder();
             for (Float value : entry.getValue().toArray())
                 stringBuilder.append(String.format(" %.4f", value));
             return entry.getKey() + stringBuilder.toString();
-        }).forEach(line -> printWriter.println(line));
+        });
+        if (sorted)
+            lines.forEachOrdered(line -> printWriter.println(line));
+        else
+            lines.forEach(line -> printWriter.println(line));
         printWriter.close();
     }
 
@@ -215,18 +327,41 @@ public class DatasetIO {
     public static Map<Integer, SparseVector> readFeatures(Reader input) throws IOException {
         Map<Integer, SparseVector> itemFeatures = new HashMap<>();
         BufferedReader bufReader = new BufferedReader(input);
+        final int[] itemId = new int[1];
         String line;
         while ((line = bufReader.readLine()) != null) {
-            String[] split = line.split("\t");
-            int itemId = Integer.parseInt(split[0]);
-            SparseVector sparseVector = new SparseVector(split.length - 1);
-            for (int i = 1; i < split.length; ++i) {
-                String[] sparseEntry = split[i].split(":");
-                sparseVector.set(i - 1, Integer.parseInt(sparseEntry[0]), Float.parseFloat(sparseEntry[1]));
-            }
-            itemFeatures.put(itemId, sparseVector);
+            final ByteBuffer buffer = ByteBuffer.wrap(line.getBytes(StandardCharsets.ISO_8859_1));
+            SparseVector sparseVector = AsciiParser.parseFeatures(buffer, 0, buffer.limit(), itemId);
+            itemFeatures.put(itemId[0], sparseVector);
         }
         return itemFeatures;
     }
 
+    /**
+     * Reads in additional side information per item like {@link #readFeatures(Reader)}, parsing byte ranges of the
+     * file concurrently. Empty lines are skipped.
+     * @param filepath Path to input file
+     * @return A mapping from item id to a sparse vector
+     * @throws IOException if path is not readable
+     */
+    public static Map<Integer, SparseVector> readFeatures(String filepath) throws IOException {
+        logger.info("Reading features from file: " + filepath);
+        final Path path = Paths.get(filepath);
+        final List<Map<Integer, SparseVector>> parts = LineReader.readChunks(path, chunks(Files.size(path)), lines -> {
+            final Map<Integer, SparseVector> part = new HashMap<>();
+            final int[] itemId = new int[1];
+            while (lines.next()) {
+                if (lines.end() > lines.start()) {
+                    SparseVector sparseVector = AsciiParser.parseFeatures(lines.buffer(), lines.start(), lines.end(), itemId);
+                    part.put(itemId[0], sparseVector);
+                }
+            }
+            return part;
+        });
+        // later lines win as in readFeatures(Reader)
+        Map<Integer, SparseVector> itemFeatures = new HashMap<>();
+        parts.forEach(itemFeatures::putAll);
+        return itemFeatures;
+    }
+
 }
@@ -0,0 +1,243 @@
+package com.demshape.factorization.datastructure;
+
+import static com.demshape.factorization.tools.GlobalConstants.HASH_MAP_LOAD_FACTOR;
+
+/**
+ * A map from primitive int keys to int values based on open addressing with linear probing. Keys and values are held
+ * in a single array (key, value, key, value, ...) such that a lookup touches a single cache line. In contrast to a
+ * {@code Map<Integer, Integer>} it does not allocate any object per entry and lookups do not box. Not thread safe: build
+ * it concurrently by letting each thread fill its own map and merging them with {@link #addAll(IntIntMap)}.
+ * <p>
+ * The key 0 marks free slots and is tracked separately.
+ */
+public class IntIntMap {
+
+    /**
+     * returned by {@link #get(int)} for keys which are not contained
+     */
+    public static final int MISSING = -1;
+
+    private static final int FREE = 0;
+
+    /**
+     * largest capacity whose entries (two per slot) fit into an array
+     */
+    static final int MAX_CAPACITY = IntSet.MAX_CAPACITY >> 1;
+
+    private final int maxCapacity;
+    private int[] entries;
+    private int mask;
+    private int size;
+    private int threshold;
+    private boolean containsFree;
+    private int freeValue;
+
+    public IntIntMap() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize number of entries which can be added without resizing
+     */
+    public IntIntMap(int expectedSize) {
+        this(expectedSize, MAX_CAPACITY);
+    }
+
+    IntIntMap(int expectedSize, int maxCapacity) {
+        this.maxCapacity = maxCapacity;
+        final int capacity = IntSet.capacity(expectedSize);
+        if (capacity > maxCapacity)
+            throw new IllegalArgumentException("Invalid size parameter: " + expectedSize);
+        allocate(capacity);
+    }
+
+    /**
+     * @param key a key
+     * @return the value of the key or {@link #MISSING}
+     */
+    public int get(int key) {
+        return getOrDefault(key, MISSING);
+    }
+
+    /**
+     * @param key a key
+     * @param defaultValue value returned if the key is not contained
+     * @return the value of the key or defaultValue
+     */
+    public int getOrDefault(int key, int defaultValue) {
+        if (key == FREE)
+            return containsFree ? freeValue : defaultValue;
+        int slot = (mix(key) & mask) << 1;
+        int current;
+        while ((current = entries[slot]) != FREE) {
+            if (current == key)
+                return entries[slot + 1];
+            slot = (slot + 2) & (mask << 1 | 1);
+        }
+        return defaultValue;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == FREE)
+            return containsFree;
+        int slot = (mix(key) & mask) << 1;
+        int current;
+        while ((current = entries[slot]) != FREE) {
+            if (current == key)
+                return true;
+            slot = (slot + 2) & (mask << 1 | 1);
+        }
+        return false;
+    }
+
+    /**
+     * @param key a key
+     * @param value new value of the key
+     */
+    public void put(int key, int value) {
+        if (key == FREE) {
+            if (!containsFree) {
+                containsFree = true;
+                ++size;
+            }
+            freeValue = value;
+            return;
+        }
+        final int slot = slot(key);
+        entries[slot + 1] = value;
+    }
+
+    /**
+     * Adds to the value of a key, missing keys start at 0. The sum saturates at Integer.MAX_VALUE.
+     * @param key a key
+     * @param delta non negative value to add
+     */
+    public void addTo(int key, int delta) {
+        if (key == FREE) {
+            if (!containsFree) {
+                containsFree = true;
+                ++size;
+            }
+            freeValue = saturatedAdd(freeValue, delta);
+            return;
+        }
+        final int slot = slot(key);
+        entries[slot + 1] = saturatedAdd(entries[slot + 1], delta);
+    }
+
+    /**
+     * Adds the values of all entries of another map, see {@link #addTo(int, int)}.
+     * @param other map to add
+     */
+    public void addAll(IntIntMap other) {
+        other.forEach(this::addTo);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param action action applied to each entry in no particular order
+     */
+    public void forEach(IntIntConsumer action) {
+        if (containsFree)
+            action.accept(FREE, freeValue);
+        for (int slot = 0; slot < entries.length; slot += 2)
+            if (entries[slot] != FREE)
+                action.accept(entries[slot], entries[slot + 1]);
+    }
+
+    /**
+     * Finds or inserts the slot of a key other than FREE. Values of inserted keys are 0.
+     * @return index of the key in entries
+     */
+    private int slot(int key) {
+        int slot = (mix(key) & mask) << 1;
+        int current;
+        while ((current = entries[slot]) != FREE) {
+            if (current == key)
+                return slot;
+            slot = (slot + 2) & (mask << 1 | 1);
+        }
+        // doubling the capacity would overflow
+        if (size >= threshold && entries.length >> 1 >= maxCapacity)
+            throw new IllegalStateException("map is full");
+        entries[slot] = key;
+        entries[slot + 1] = 0;
+        if (++size > threshold) {
+            rehash(entries.length);
+            return slot(key);
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        final int[] oldEntries = entries;
+        allocate(capacity);
+        for (int oldSlot = 0; oldSlot < oldEntries.length; oldSlot += 2) {
+            final int key = oldEntries[oldSlot];
+            if (key == FREE)
+                continue;
+            int slot = (mix(key) & mask) << 1;
+            while (entries[slot] != FREE)
+                slot = (slot + 2) & (mask << 1 | 1);
+            entries[slot] = key;
+            entries[slot + 1] = oldEntries[oldSlot + 1];
+        }
+    }
+
+    private void allocate(int capacity) {
+        entries = new int[capacity << 1];
+        mask = capacity - 1;
+        threshold = (int) (capacity * HASH_MAP_LOAD_FACTOR);
+    }
+
+    private static int saturatedAdd(int a, int b) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) a + b);
+    }
+
+    /**
+     * Spreads the bits of a key such that consecutive ids do not form long probe sequences (murmur3 finalizer).
+     */
+    static int mix(int key) {
+        int h = key * 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public boolean equals(Object that) {
+        if (this == that)
+            return true;
+        if (!(that instanceof IntIntMap))
+            return false;
+        final IntIntMap other = (IntIntMap) that;
+        if (size != other.size || containsFree != other.containsFree || (containsFree && freeValue != other.freeValue))
+            return false;
+        for (int slot = 0; slot < entries.length; slot += 2) {
+            final int key = entries[slot];
+            if (key != FREE && (!other.containsKey(key) || other.get(key) != entries[slot + 1]))
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = containsFree ? freeValue : 0;
+        for (int slot = 0; slot < entries.length; slot += 2)
+            hash += entries[slot] ^ entries[slot + 1];
+        return hash;
+    }
+
+    /**
+     * Consumer of a key and a value.
+     */
+    @FunctionalInterface
+    public interface IntIntConsumer {
+        void accept(int key, int value);
+    }
+
+}
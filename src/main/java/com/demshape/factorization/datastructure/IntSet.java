@@ -0,0 +1,180 @@
+package com.demshape.factorization.datastructure;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+import static com.demshape.factorization.tools.GlobalConstants.HASH_MAP_LOAD_FACTOR;
+
+/**
+ * A set of primitive ints based on open addressing with linear probing. In contrast to a {@code Set<Integer>} it
+ * does not allocate an object per element. Not thread safe: build it concurrently by letting each thread fill its
+ * own set and merging them with {@link #addAll(IntSet)}, e.g. via {@code Stream.collect(IntSet::new, ..., IntSet::addAll)}.
+ * <p>
+ * The key 0 marks free slots and is tracked separately.
+ */
+public class IntSet {
+
+    private static final int FREE = 0;
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * largest power of two which is a valid array length
+     */
+    static final int MAX_CAPACITY = 1 << 30;
+
+    private final int maxCapacity;
+    private int[] keys;
+    private int mask;
+    private int size;
+    private int threshold;
+    private boolean containsFree;
+
+    public IntSet() {
+        this(0);
+    }
+
+    /**
+     * @param expectedSize number of elements which can be added without resizing
+     */
+    public IntSet(int expectedSize) {
+        this(expectedSize, MAX_CAPACITY);
+    }
+
+    IntSet(int expectedSize, int maxCapacity) {
+        this.maxCapacity = maxCapacity;
+        final int capacity = capacity(expectedSize);
+        if (capacity > maxCapacity)
+            throw new IllegalArgumentException("Invalid size parameter: " + expectedSize);
+        allocate(capacity);
+    }
+
+    /**
+     * @param key element to add
+     * @return true if the element was not contained before
+     */
+    public boolean add(int key) {
+        if (key == FREE) {
+            if (containsFree)
+                return false;
+            containsFree = true;
+            ++size;
+            return true;
+        }
+        int slot = IntIntMap.mix(key) & mask;
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key)
+                return false;
+            slot = (slot + 1) & mask;
+        }
+        // doubling the capacity would overflow
+        if (size >= threshold && keys.length >= maxCapacity)
+            throw new IllegalStateException("set is full");
+        keys[slot] = key;
+        if (++size > threshold)
+            rehash(keys.length << 1);
+        return true;
+    }
+
+    /**
+     * Adds all elements of another set.
+     * @param other set to add
+     */
+    public void addAll(IntSet other) {
+        other.forEach(this::add);
+    }
+
+    public boolean contains(int key) {
+        if (key == FREE)
+            return containsFree;
+        int slot = IntIntMap.mix(key) & mask;
+        while (keys[slot] != FREE) {
+            if (keys[slot] == key)
+                return true;
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param action action applied to each element in no particular order
+     */
+    public void forEach(IntConsumer action) {
+        if (containsFree)
+            action.accept(FREE);
+        for (int key : keys)
+            if (key != FREE)
+                action.accept(key);
+    }
+
+    /**
+     * @return all elements in ascending order
+     */
+    public int[] toSortedArray() {
+        final int[] elements = new int[size];
+        int index = 0;
+        if (containsFree)
+            elements[index++] = FREE;
+        for (int key : keys)
+            if (key != FREE)
+                elements[index++] = key;
+        Arrays.parallelSort(elements);
+        return elements;
+    }
+
+    private void rehash(int capacity) {
+        final int[] oldKeys = keys;
+        allocate(capacity);
+        for (int key : oldKeys) {
+            if (key == FREE)
+                continue;
+            int slot = IntIntMap.mix(key) & mask;
+            while (keys[slot] != FREE)
+                slot = (slot + 1) & mask;
+            keys[slot] = key;
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        mask = capacity - 1;
+        threshold = (int) (capacity * HASH_MAP_LOAD_FACTOR);
+    }
+
+    /**
+     * @return a power of two large enough to hold expectedSize elements
+     */
+    static int capacity(int expectedSize) {
+        final long needed = (long) Math.ceil(expectedSize / HASH_MAP_LOAD_FACTOR) + 1;
+        if (needed > MAX_CAPACITY)
+            throw new IllegalArgumentException("Invalid size parameter: " + expectedSize);
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit((int) needed - 1) << 1);
+    }
+
+    @Override
+    public boolean equals(Object that) {
+        if (this == that)
+            return true;
+        if (!(that instanceof IntSet))
+            return false;
+        final IntSet other = (IntSet) that;
+        if (size != other.size || containsFree != other.containsFree)
+            return false;
+        for (int key : keys)
+            if (key != FREE && !other.contains(key))
+                return false;
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int key : keys)
+            hash += key;
+        return hash;
+    }
+
+}
@@ -0,0 +1,189 @@
+package com.demshape.factorization.datastructure;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Reads the lines of a byte range of a file into a reusable buffer. Each line belongs to the range its first byte lies
+ * in, hence a file split into adjacent ranges is read completely and every line exactly once, which lets the ranges be
+ * read concurrently (see {@link #readChunks(Path, int, ChunkReader)}). Lines are not decoded: the current line is the
+ * range [{@link #start()}, {@link #end()}) of {@link #buffer()}, without the line break and a trailing carriage
+ * return, and is valid until the next call of {@link #next()}.
+ * <p>
+ * Reads are positional, several readers may share a channel.
+ */
+public class LineReader {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final long to;
+    private ByteBuffer buffer;
+    // file position of index 0 of the buffer
+    private long offset;
+    // start of the next line and index to continue the search for its line break
+    private int lineStart;
+    private int scan;
+    private int start;
+    private int end;
+    private boolean endOfFile;
+
+    /**
+     * @param channel file to read
+     * @param from    first byte of the range, a line starting before it is skipped
+     * @param to      byte after the range, the last line starting before it is read completely
+     * @throws IOException if the file can not be read
+     */
+    public LineReader(FileChannel channel, long from, long to) throws IOException {
+        this(channel, from, to, BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel    file to read
+     * @param from       first byte of the range, a line starting before it is skipped
+     * @param to         byte after the range, the last line starting before it is read completely
+     * @param bufferSize number of bytes read at once, larger reads ahead further
+     * @throws IOException if the file can not be read
+     */
+    public LineReader(FileChannel channel, long from, long to, int bufferSize) throws IOException {
+        if (bufferSize <= 0)
+            throw new IllegalArgumentException("Invalid bufferSize parameter: " + bufferSize);
+        this.channel = channel;
+        this.to = to;
+        buffer = ByteBuffer.allocate(bufferSize);
+        buffer.limit(0);
+        // a line starting before from belongs to the previous range, its end is found by starting one byte earlier
+        offset = Math.max(0, from - 1);
+        if (from > 0)
+            findLine();
+    }
+
+    /**
+     * Moves to the next line.
+     * @return false if there are no more lines in the range
+     * @throws IOException if the file can not be read
+     */
+    public boolean next() throws IOException {
+        if (offset + lineStart >= to || !findLine())
+            return false;
+        if (end > start && buffer.get(end - 1) == '\r')
+            --end;
+        return true;
+    }
+
+    /**
+     * @return buffer holding the current line
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return index of the first byte of the current line
+     */
+    public int start() {
+        return start;
+    }
+
+    /**
+     * @return index after the last byte of the current line
+     */
+    public int end() {
+        return end;
+    }
+
+    /**
+     * Finds the line at lineStart, refilling the buffer as needed.
+     * @return false at the end of the file
+     */
+    private boolean findLine() throws IOException {
+        while (true) {
+            final int limit = buffer.limit();
+            for (int i = scan; i < limit; ++i) {
+                if (buffer.get(i) == '\n') {
+                    start = lineStart;
+                    end = i;
+                    lineStart = scan = i + 1;
+                    return true;
+                }
+            }
+            scan = limit;
+            if (endOfFile) {
+                // last line without line break
+                if (lineStart == limit)
+                    return false;
+                start = lineStart;
+                end = limit;
+                lineStart = scan = limit;
+                return true;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Drops all consumed bytes and reads more, doubling the buffer for lines longer than the buffer.
+     */
+    private void fill() throws IOException {
+        final int remaining = buffer.limit() - lineStart;
+        if (lineStart == 0 && remaining == buffer.capacity()) {
+            final ByteBuffer larger = ByteBuffer.allocate(2 * buffer.capacity());
+            buffer.position(0);
+            larger.put(buffer);
+            buffer = larger;
+        } else {
+            buffer.position(lineStart);
+            buffer.compact();
+        }
+        offset += lineStart;
+        scan -= lineStart;
+        lineStart = 0;
+        // buffer is in write mode, position is the end of the remaining bytes
+        final int read = channel.read(buffer, offset + buffer.position());
+        if (read < 0)
+            endOfFile = true;
+        buffer.flip();
+    }
+
+    /**
+     * Reads a part of a file.
+     * @param <T> result of a part
+     */
+    @FunctionalInterface
+    public interface ChunkReader<T> {
+        T read(LineReader lines) throws IOException;
+    }
+
+    /**
+     * Splits a file into byte ranges and reads them concurrently.
+     * @param path     file to read
+     * @param chunks   number of byte ranges
+     * @param reader   reads the lines of a single range
+     * @param <T>      result of a range
+     * @return results of all ranges in the order of the file
+     * @throws IOException if the file can not be read
+     */
+    public static <T> List<T> readChunks(Path path, int chunks, ChunkReader<T> reader) throws IOException {
+        final long size = Files.size(path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return IntStream.range(0, chunks).parallel().mapToObj(chunk -> {
+                try {
+                    return reader.read(new LineReader(channel, size * chunk / chunks, size * (chunk + 1) / chunks));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).collect(Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+}
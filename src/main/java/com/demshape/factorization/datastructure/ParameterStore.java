@@ -0,0 +1,161 @@
+package com.demshape.factorization.datastructure;
+
+import org.jblas.FloatMatrix;
+
+/**
+ * Holds all model parameters in a few large row-major float arrays instead of one object per id.
+ * Each row consists of the latent vector followed by the bias and the summed AdaGrad gradient length:
+ * <pre>
+ * | latent[0] ... latent[dimensions - 1] | bias | gradientLength |
+ * </pre>
+ * Rows are stored back to back. As a java array can not hold more than 2^31 entries, the rows are split into chunks
+ * of equal size. A row never spans two chunks. Use {@link #chunk(int)} and {@link #offset(int)} to access the raw
+ * values of a row in tight loops.
+ */
+public class ParameterStore {
+
+    /**
+     * Maximum number of floats held by a single chunk.
+     */
+    public static final int MAX_CHUNK_LENGTH = 1 << 30;
+
+    /**
+     * Number of rows
+     */
+    public final int rows;
+
+    /**
+     * Number of latent dimensions per row
+     */
+    public final int dimensions;
+
+    /**
+     * Number of floats between the start of two consecutive rows
+     */
+    public final int stride;
+
+    private final int chunkShift;
+    private final int chunkMask;
+    private final float[][] chunks;
+
+    public ParameterStore(int rows, int dimensions) {
+        this(rows, dimensions, MAX_CHUNK_LENGTH);
+    }
+
+    /**
+     * @param rows           number of rows
+     * @param dimensions     number of latent dimensions per row
+     * @param maxChunkLength maximum number of floats per chunk
+     */
+    public ParameterStore(int rows, int dimensions, int maxChunkLength) {
+        assert rows >= 0 && dimensions >= 0;
+        this.rows = rows;
+        this.dimensions = dimensions;
+        this.stride = dimensions + 2;
+        if (maxChunkLength < stride)
+            throw new IllegalArgumentException(String.format("chunk length %d is smaller than a row (%d)", maxChunkLength, stride));
+        // rows per chunk is a power of two such that chunk and offset can be computed by shifting and masking
+        int rowsPerChunk = Integer.highestOneBit(maxChunkLength / stride);
+        this.chunkShift = Integer.numberOfTrailingZeros(rowsPerChunk);
+        this.chunkMask = rowsPerChunk - 1;
+        int numChunks = (int) ((rows + (long) rowsPerChunk - 1) / rowsPerChunk);
+        chunks = new float[numChunks][];
+        for (int i = 0; i < numChunks; ++i) {
+            int chunkRows = Math.min(rowsPerChunk, rows - i * rowsPerChunk);
+            chunks[i] = new float[chunkRows * stride];
+        }
+    }
+
+    /**
+     * @param row row index
+     * @return the array holding the given row
+     */
+    public float[] chunk(int row) {
+        return chunks[row >>> chunkShift];
+    }
+
+    /**
+     * @param row row index
+     * @return the position of the first latent value of the given row within its chunk
+     */
+    public int offset(int row) {
+        return (row & chunkMask) * stride;
+    }
+
+    public float bias(int row) {
+        return chunk(row)[offset(row) + dimensions];
+    }
+
+    public void setBias(int row, float value) {
+        chunk(row)[offset(row) + dimensions] = value;
+    }
+
+    public float gradientLength(int row) {
+        return chunk(row)[offset(row) + dimensions + 1];
+    }
+
+    /**
+     * Adds to the summed gradient length of a row.
+     * @param row row index
+     * @param delta value to add
+     * @return the updated gradient length
+     */
+    public float addGradientLength(int row, float delta) {
+        final int index = offset(row) + dimensions + 1;
+        final float[] chunk = chunk(row);
+        chunk[index] += delta;
+        return chunk[index];
+    }
+
+    /**
+     * @param row row index
+     * @return a copy of the latent vector of the given row
+     */
+    public FloatMatrix vector(int row) {
+        final float[] chunk = chunk(row);
+        final int offset = offset(row);
+        final float[] vector = new float[dimensions];
+        System.arraycopy(chunk, offset, vector, 0, dimensions);
+        return new FloatMatrix(vector);
+    }
+
+    /**
+     * Overwrites the latent vector of a row.
+     * @param row row index
+     * @param vector the new latent vector
+     */
+    public void setVector(int row, float[] vector) {
+        System.arraycopy(vector, 0, chunk(row), offset(row), dimensions);
+    }
+
+    /**
+     * @return a copy of all biases
+     */
+    public FloatMatrix biases() {
+        final FloatMatrix biases = FloatMatrix.zeros(rows);
+        for (int row = 0; row < rows; ++row)
+            biases.put(row, bias(row));
+        return biases;
+    }
+
+    /**
+     * @param index chunk index
+     * @return index of the first row of a chunk
+     */
+    public int firstRow(int index) {
+        return index << chunkShift;
+    }
+
+    public int numChunks() {
+        return chunks.length;
+    }
+
+    /**
+     * @param index chunk index
+     * @return the raw values of a chunk
+     */
+    public float[] chunkAt(int index) {
+        return chunks[index];
+    }
+
+}
@@ -1,11 +1,17 @@
 package com.demshape.factorization.datastructure;
 
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
 
 /**
  * A sparse vector implementation. Implements an iterator over the entries.
+ * <p>
+ * The iterator and {@link #get(int)} create an entry object per entry. Loops on the training path use the primitive
+ * accessors {@link #keyAt(int)}, {@link #valueAt(int)} and {@link #forEach(IntFloatConsumer)} instead. A vector may be
+ * reused as a buffer by {@link #resize(int)}, in that case only the first {@link #size()} entries of the arrays are
+ * valid.
  */
 public class SparseVector implements Iterable<SparseVector.SparseEntry> {
 
@@ -19,17 +25,35 @@ public class SparseVector implements Iterable<SparseVector.SparseEntry> {
      */
     public float[] values;
 
+    private int size;
+
     private static Iterator<SparseEntry> emptyIterator = Collections.emptyIterator();
 
     public SparseVector(int capacity) {
         assert capacity >= 0;
         this.keys = new int[capacity];
         this.values = new float[capacity];
+        this.size = capacity;
     }
 
     public SparseVector(int[] keys, float[] values) {
         this.keys = keys;
         this.values = values;
+        this.size = keys.length;
+    }
+
+    /**
+     * Changes the number of entries. The arrays only grow, entries below the new size keep their values.
+     * @param size new number of entries
+     */
+    public void resize(int size) {
+        assert size >= 0;
+        if (size > keys.length) {
+            final int capacity = Math.max(size, keys.length + (keys.length >> 1));
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        this.size = size;
     }
 
     public void set(int index, int key, float value) {
@@ -37,12 +61,32 @@ public class SparseVector implements Iterable<SparseVector.SparseEntry> {
         values[index] = value;
     }
 
+    /**
+     * @param index index of an entry
+     * @return a new object holding the entry, see {@link #keyAt(int)} and {@link #valueAt(int)}
+     */
     public SparseEntry get(int index) {
         return new SparseEntry(keys[index], values[index]);
     }
 
+    public int keyAt(int index) {
+        return keys[index];
+    }
+
+    public float valueAt(int index) {
+        return values[index];
+    }
+
     public int size() {
-        return keys.length;
+        return size;
+    }
+
+    /**
+     * @param action action applied to each entry in order
+     */
+    public void forEach(IntFloatConsumer action) {
+        for (int i = 0; i < size; ++i)
+            action.accept(keys[i], values[i]);
     }
 
     @Override
@@ -52,11 +96,10 @@ public class SparseVector implements Iterable<SparseVector.SparseEntry> {
         if (!(that instanceof SparseVector))
             return false;
         SparseVector d = (SparseVector) that;
-        Iterator<SparseEntry> iterA = iterator();
-        Iterator<SparseEntry> iterB = d.iterator();
-
-        while (iterA.hasNext()) {
-            if (!iterA.next().equals(iterB.next())) {
+        if (size != d.size)
+            return false;
+        for (int i = 0; i < size; ++i) {
+            if (keys[i] != d.keys[i] || values[i] != d.values[i]) {
                 return false;
             }
         }
@@ -66,7 +109,7 @@ public class SparseVector implements Iterable<SparseVector.SparseEntry> {
     @Override
     public String toString() {
         StringBuffer stringBuffer = new StringBuffer();
-        iterator().forEachRemaining(i -> stringBuffer.append(i + " "));
+        forEach((key, value) -> stringBuffer.append(key).append(':').append(value).append(' '));
         return stringBuffer.toString();
     }
 
@@ -99,7 +142,7 @@ public class SparseVector implements Iterable<SparseVector.SparseEntry> {
     }
 
     public Iterator<SparseEntry> iterator() {
-        if (keys.length == 0)
+        if (size == 0)
             return emptyIterator;
         return new SparseEntryIterator();
     }
@@ -110,7 +153,7 @@ public class SparseVector implements Iterable<SparseVector.SparseEntry> {
 
         @Override
         public boolean hasNext() {
-            return index < keys.length;
+            return index < size;
         }
 
         @Override
@@ -126,4 +169,13 @@ public class SparseVector implements Iterable<SparseVector.SparseEntry> {
         }
 
     }
+
+    /**
+     * Consumer of a key and a value.
+     */
+    @FunctionalInterface
+    public interface IntFloatConsumer {
+        void accept(int key, float value);
+    }
+
 }
@@ -0,0 +1,198 @@
+package com.demshape.factorization.distributed;
+
+import com.demshape.factorization.datastructure.ParameterStore;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Connection of a single worker thread to all parameter servers. Requests are sent to all involved servers before
+ * the first answer is read, such that the servers work in parallel. Not thread safe.
+ */
+public class ParameterClient implements AutoCloseable {
+
+    private final Socket[] sockets;
+    private final DataInputStream[] ins;
+    private final DataOutputStream[] outs;
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+
+    /**
+     * @param servers addresses of all servers ordered by shard
+     * @throws IOException if a server can not be reached
+     */
+    public ParameterClient(List<InetSocketAddress> servers) throws IOException {
+        final int shards = servers.size();
+        sockets = new Socket[shards];
+        ins = new DataInputStream[shards];
+        outs = new DataOutputStream[shards];
+        try {
+            for (int shard = 0; shard < shards; ++shard) {
+                sockets[shard] = new Socket(servers.get(shard).getAddress(), servers.get(shard).getPort());
+                sockets[shard].setTcpNoDelay(true);
+                ins[shard] = new DataInputStream(new BufferedInputStream(sockets[shard].getInputStream()));
+                outs[shard] = new DataOutputStream(new BufferedOutputStream(sockets[shard].getOutputStream()));
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param servers comma separated list of host:port
+     * @return the addresses
+     */
+    public static List<InetSocketAddress> parse(String servers) {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String server : servers.split(",")) {
+            final int separator = server.lastIndexOf(':');
+            if (separator < 0)
+                throw new IllegalArgumentException("Invalid server parameter: " + server);
+            addresses.add(new InetSocketAddress(server.substring(0, separator).trim(), Integer.parseInt(server.substring(separator + 1).trim())));
+        }
+        return addresses;
+    }
+
+    /**
+     * Joins the current run of the servers. The first worker of a run allocates and randomly initializes the model,
+     * the others keep it.
+     * @param rows total number of rows
+     * @param dimensions number of latent dimensions
+     * @param seed seed of the initialization
+     * @param workers number of workers of the run
+     * @param threads number of threads of each worker
+     * @throws IOException if a server runs a different model or number of workers or threads
+     */
+    public void init(int rows, int dimensions, long seed, int workers, int threads) throws IOException {
+        for (DataOutputStream out : outs) {
+            out.writeByte(Protocol.INIT);
+            out.writeInt(rows);
+            out.writeInt(dimensions);
+            out.writeLong(seed);
+            out.writeInt(workers);
+            out.writeInt(threads);
+            out.flush();
+        }
+        String error = null;
+        for (int shard = 0; shard < ins.length; ++shard)
+            if (ins[shard].readByte() != Protocol.OK)
+                error = String.format("shard %d %s", shard, ins[shard].readUTF());
+        if (error != null)
+            throw new IOException(error);
+    }
+
+    /**
+     * Fetches rows from the servers.
+     * @param ids global ids, row i of the target receives row ids[i]
+     * @param count number of ids
+     * @param target local parameters with at least count rows
+     * @throws IOException on communication errors
+     */
+    public void pull(int[] ids, int count, ParameterStore target) throws IOException {
+        final int[][] positions = split(ids, count);
+        for (int shard = 0; shard < outs.length; ++shard) {
+            if (positions[shard].length == 0)
+                continue;
+            outs[shard].writeByte(Protocol.PULL);
+            Protocol.writeIds(outs[shard], select(ids, positions[shard]), positions[shard].length, deflater);
+            outs[shard].flush();
+        }
+        final int stride = target.stride;
+        for (int shard = 0; shard < ins.length; ++shard) {
+            if (positions[shard].length == 0)
+                continue;
+            final float[] rows = Protocol.readFloats(ins[shard], inflater);
+            for (int i = 0; i < positions[shard].length; ++i) {
+                final int row = positions[shard][i];
+                System.arraycopy(rows, i * stride, target.chunk(row), target.offset(row), stride);
+            }
+        }
+    }
+
+    /**
+     * Adds deltas to rows on the servers.
+     * @param ids global ids, row i of deltas is added to row ids[i]
+     * @param count number of ids
+     * @param deltas local deltas with at least count rows
+     * @throws IOException on communication errors
+     */
+    public void push(int[] ids, int count, ParameterStore deltas) throws IOException {
+        final int[][] positions = split(ids, count);
+        final int stride = deltas.stride;
+        for (int shard = 0; shard < outs.length; ++shard) {
+            if (positions[shard].length == 0)
+                continue;
+            final float[] rows = new float[positions[shard].length * stride];
+            for (int i = 0; i < positions[shard].length; ++i) {
+                final int row = positions[shard][i];
+                System.arraycopy(deltas.chunk(row), deltas.offset(row), rows, i * stride, stride);
+            }
+            outs[shard].writeByte(Protocol.PUSH);
+            Protocol.writeIds(outs[shard], select(ids, positions[shard]), positions[shard].length, deflater);
+            Protocol.writeFloats(outs[shard], rows, rows.length, deflater);
+            outs[shard].flush();
+        }
+        for (int shard = 0; shard < ins.length; ++shard)
+            if (positions[shard].length > 0 && ins[shard].readByte() != Protocol.OK)
+                throw new IOException(String.format("push to shard %d failed", shard));
+    }
+
+    /**
+     * Waits until the given number of clients entered the barrier. The barrier is kept by the first server.
+     * @param parties number of clients
+     * @throws IOException on communication errors
+     */
+    public void barrier(int parties) throws IOException {
+        outs[0].writeByte(Protocol.BARRIER);
+        outs[0].writeInt(parties);
+        outs[0].flush();
+        if (ins[0].readByte() != Protocol.OK)
+            throw new IOException("barrier failed");
+    }
+
+    /**
+     * @return positions of the ids grouped by shard
+     */
+    private int[][] split(int[] ids, int count) {
+        final int shards = outs.length;
+        final int[] sizes = new int[shards];
+        for (int i = 0; i < count; ++i)
+            sizes[Protocol.shard(ids[i], shards)]++;
+        final int[][] positions = new int[shards][];
+        for (int shard = 0; shard < shards; ++shard)
+            positions[shard] = new int[sizes[shard]];
+        final int[] filled = new int[shards];
+        for (int i = 0; i < count; ++i) {
+            final int shard = Protocol.shard(ids[i], shards);
+            positions[shard][filled[shard]++] = i;
+        }
+        return positions;
+    }
+
+    private static int[] select(int[] ids, int[] positions) {
+        final int[] selected = new int[positions.length];
+        for (int i = 0; i < positions.length; ++i)
+            selected[i] = ids[positions[i]];
+        return selected;
+    }
+
+    @Override
+    public void close() throws IOException {
+        deflater.end();
+        inflater.end();
+        for (Socket socket : sockets)
+            if (socket != null)
+                socket.close();
+    }
+
+}
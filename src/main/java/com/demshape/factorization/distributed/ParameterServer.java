@@ -0,0 +1,265 @@
+package com.demshape.factorization.distributed;
+
+import com.demshape.factorization.datastructure.ParameterStore;
+import com.demshape.factorization.tools.RandomStreams;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Holds one shard of the model parameters and serves them over TCP. Row id belongs to shard id % shards.
+ * Workers pull the rows they need for a batch of data points and push back the changes they made. Pushed deltas are
+ * added to the stored rows, hence concurrent updates of several workers are merged.
+ * Each connection is handled by its own thread. The parameters are allocated by the first init request of a run.
+ * A run ends once all of its workers joined by an init request, the next init request starts a new run and
+ * initializes the rows again.
+ */
+public class ParameterServer implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ParameterServer.class);
+
+    private static final int LOCK_STRIPES = 1024;
+
+    /**
+     * index of this shard
+     */
+    public final int shard;
+
+    /**
+     * total number of shards
+     */
+    public final int shards;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService connections;
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    private final CountDownLatch closed = new CountDownLatch(1);
+    private volatile ParameterStore parameters;
+    private long seed;
+    private int workers;
+    private int threads;
+    private int joined;
+
+    // barrier state
+    private int arrived;
+    private long generation;
+
+    /**
+     * @param port   port to listen on, any free port if 0
+     * @param shard  index of this shard
+     * @param shards total number of shards
+     * @throws IOException if the port can not be bound
+     */
+    public ParameterServer(int port, int shard, int shards) throws IOException {
+        if (shard < 0 || shard >= shards)
+            throw new IllegalArgumentException(String.format("Invalid shard parameter: %d of %d", shard, shards));
+        this.shard = shard;
+        this.shards = shards;
+        for (int i = 0; i < LOCK_STRIPES; ++i)
+            locks[i] = new Object();
+        serverSocket = new ServerSocket(port);
+        connections = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "parameter-server-" + shard);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the port this server listens on
+     */
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections in the background.
+     * @return this server
+     */
+    public ParameterServer start() {
+        logger.info(String.format("shard %d of %d listening on port %d", shard, shards, port()));
+        connections.execute(() -> {
+            try {
+                while (!serverSocket.isClosed())
+                    connections.execute(handler(serverSocket.accept()));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed())
+                    logger.error("accepting connections failed", e);
+            }
+        });
+        return this;
+    }
+
+    /**
+     * Blocks until the server is closed.
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void awaitClose() throws InterruptedException {
+        closed.await();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        connections.shutdownNow();
+        closed.countDown();
+    }
+
+    private Runnable handler(Socket socket) {
+        return () -> {
+            final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            final Inflater inflater = new Inflater();
+            try (Socket connection = socket;
+                 DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+                 DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()))) {
+                connection.setTcpNoDelay(true);
+                while (true) {
+                    final byte operation;
+                    try {
+                        operation = in.readByte();
+                    } catch (EOFException e) {
+                        return;
+                    }
+                    switch (operation) {
+                        case Protocol.INIT:
+                            final String error = init(in.readInt(), in.readInt(), in.readLong(), in.readInt(), in.readInt());
+                            if (error == null) {
+                                out.writeByte(Protocol.OK);
+                            } else {
+                                out.writeByte(Protocol.ERROR);
+                                out.writeUTF(error);
+                            }
+                            break;
+                        case Protocol.PULL:
+                            pull(Protocol.readIds(in, inflater), out, deflater);
+                            break;
+                        case Protocol.PUSH:
+                            push(Protocol.readIds(in, inflater), Protocol.readFloats(in, inflater));
+                            out.writeByte(Protocol.OK);
+                            break;
+                        case Protocol.BARRIER:
+                            barrier(in.readInt());
+                            out.writeByte(Protocol.OK);
+                            break;
+                        default:
+                            throw new IOException("Invalid operation: " + operation);
+                    }
+                    out.flush();
+                }
+            } catch (SocketException e) {
+                logger.debug("connection closed: " + e.getMessage());
+            } catch (IOException e) {
+                logger.error("connection failed", e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                deflater.end();
+                inflater.end();
+            }
+        };
+    }
+
+    /**
+     * Allocates and initializes the rows of this shard with a normal distribution. The other workers of the same run
+     * join with the same arguments and keep the rows as they are.
+     * @param workers number of workers of the run
+     * @param threads number of threads of each worker, which together define the partitions of the train set
+     * @return null on success, otherwise why the worker can not join the current run
+     */
+    private synchronized String init(int rows, int dimensions, long seed, int workers, int threads) {
+        final int localRows = rows > shard ? (rows - shard + shards - 1) / shards : 0;
+        if (parameters != null && joined < this.workers) {
+            if (parameters.rows != localRows || parameters.dimensions != dimensions || this.seed != seed)
+                return "holds a different model, all workers must use the same train set, dimensions and seed";
+            if (this.workers != workers || this.threads != threads)
+                return String.format("runs %d workers with %d threads but the worker has %d workers with %d threads",
+                        this.workers, this.threads, workers, threads);
+            ++joined;
+            return null;
+        }
+        if (parameters != null)
+            logger.info("all workers of the previous run joined, starting a new run");
+        logger.info(String.format("initializing %d rows with %d dimensions...", localRows, dimensions));
+        final ParameterStore store = new ParameterStore(localRows, dimensions);
+        IntStream.range(0, store.numChunks()).parallel().forEach(index -> {
+            final float[] chunk = store.chunkAt(index);
+            final Random random = RandomStreams.create(seed, shard, index);
+            for (int offset = 0; offset < chunk.length; offset += store.stride)
+                for (int d = 0; d < dimensions; ++d)
+                    chunk[offset + d] = (float) random.nextGaussian() / dimensions;
+        });
+        this.seed = seed;
+        this.workers = workers;
+        this.threads = threads;
+        joined = 1;
+        parameters = store;
+        return null;
+    }
+
+    private void pull(int[] ids, DataOutputStream out, Deflater deflater) throws IOException {
+        final ParameterStore store = initialized();
+        final int stride = store.stride;
+        final float[] rows = new float[ids.length * stride];
+        for (int i = 0; i < ids.length; ++i) {
+            final int row = Protocol.localRow(ids[i], shards);
+            System.arraycopy(store.chunk(row), store.offset(row), rows, i * stride, stride);
+        }
+        Protocol.writeFloats(out, rows, rows.length, deflater);
+    }
+
+    private void push(int[] ids, float[] deltas) throws IOException {
+        final ParameterStore store = initialized();
+        final int stride = store.stride;
+        if (deltas.length != ids.length * stride)
+            throw new IOException(String.format("expected %d values but got %d", ids.length * stride, deltas.length));
+        for (int i = 0; i < ids.length; ++i) {
+            final int row = Protocol.localRow(ids[i], shards);
+            final float[] chunk = store.chunk(row);
+            final int offset = store.offset(row);
+            // several connections may update the same row
+            synchronized (locks[row & (LOCK_STRIPES - 1)]) {
+                for (int j = 0; j < stride; ++j)
+                    chunk[offset + j] += deltas[i * stride + j];
+            }
+        }
+    }
+
+    /**
+     * Waits until the given number of connections entered the barrier.
+     */
+    private synchronized void barrier(int parties) throws InterruptedException {
+        final long current = generation;
+        if (++arrived >= parties) {
+            arrived = 0;
+            ++generation;
+            notifyAll();
+            return;
+        }
+        while (generation == current)
+            wait();
+    }
+
+    private ParameterStore initialized() throws IOException {
+        final ParameterStore store = parameters;
+        if (store == null)
+            throw new IOException("shard is not initialized");
+        return store;
+    }
+
+}
@@ -0,0 +1,120 @@
+package com.demshape.factorization.distributed;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Wire format shared by {@link ParameterServer} and {@link ParameterClient}.
+ * A request starts with an operation byte followed by its arguments, every request is answered. An ERROR answer is
+ * followed by a message. Ids and rows are sent as deflate compressed blocks: raw length, compressed length and the
+ * compressed bytes. Ids are delta encoded before compression.
+ */
+final class Protocol {
+
+    static final byte INIT = 1;
+    static final byte PULL = 2;
+    static final byte PUSH = 3;
+    static final byte BARRIER = 4;
+
+    static final byte OK = 0;
+    static final byte ERROR = 1;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private Protocol() {
+    }
+
+    /**
+     * @param id global row id
+     * @param shards number of servers
+     * @return index of the server holding the row
+     */
+    static int shard(int id, int shards) {
+        return id % shards;
+    }
+
+    /**
+     * @param id global row id
+     * @param shards number of servers
+     * @return row index within the server
+     */
+    static int localRow(int id, int shards) {
+        return id / shards;
+    }
+
+    static void writeIds(DataOutputStream out, int[] ids, int count, Deflater deflater) throws IOException {
+        final ByteBuffer raw = ByteBuffer.allocate(count * Integer.BYTES);
+        int previous = 0;
+        for (int i = 0; i < count; ++i) {
+            raw.putInt(ids[i] - previous);
+            previous = ids[i];
+        }
+        writeBlock(out, raw.array(), deflater);
+    }
+
+    static int[] readIds(DataInputStream in, Inflater inflater) throws IOException {
+        final ByteBuffer raw = ByteBuffer.wrap(readBlock(in, inflater));
+        final int[] ids = new int[raw.remaining() / Integer.BYTES];
+        int previous = 0;
+        for (int i = 0; i < ids.length; ++i) {
+            previous += raw.getInt();
+            ids[i] = previous;
+        }
+        return ids;
+    }
+
+    static void writeFloats(DataOutputStream out, float[] values, int count, Deflater deflater) throws IOException {
+        final ByteBuffer raw = ByteBuffer.allocate(count * Float.BYTES);
+        raw.asFloatBuffer().put(values, 0, count);
+        writeBlock(out, raw.array(), deflater);
+    }
+
+    static float[] readFloats(DataInputStream in, Inflater inflater) throws IOException {
+        final ByteBuffer raw = ByteBuffer.wrap(readBlock(in, inflater));
+        final float[] values = new float[raw.remaining() / Float.BYTES];
+        raw.asFloatBuffer().get(values);
+        return values;
+    }
+
+    private static void writeBlock(DataOutputStream out, byte[] raw, Deflater deflater) throws IOException {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 2 + 64);
+        final byte[] buffer = new byte[BUFFER_SIZE];
+        while (!deflater.finished()) {
+            final int length = deflater.deflate(buffer);
+            compressed.write(buffer, 0, length);
+        }
+        out.writeInt(raw.length);
+        out.writeInt(compressed.size());
+        compressed.writeTo(out);
+    }
+
+    private static byte[] readBlock(DataInputStream in, Inflater inflater) throws IOException {
+        final byte[] raw = new byte[in.readInt()];
+        final byte[] compressed = new byte[in.readInt()];
+        in.readFully(compressed);
+        inflater.reset();
+        inflater.setInput(compressed);
+        try {
+            int length = 0;
+            while (length < raw.length) {
+                final int inflated = inflater.inflate(raw, length, raw.length - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput()))
+                    throw new IOException("truncated block");
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        }
+        return raw;
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.demshape.factorization.kernel;
+
+import org.jblas.NativeBlas;
+
+/**
+ * Delegates to the native BLAS routines shipped with jblas. The JNI call overhead makes this only worthwhile for
+ * large dimensions.
+ */
+public class JblasKernel implements VectorKernelInterface {
+
+    public float dot(float[] x, int xIndex, float[] y, int yIndex, int length) {
+        return NativeBlas.sdot(length, x, xIndex, 1, y, yIndex, 1);
+    }
+
+    public void axpy(float alpha, float[] x, int xIndex, float[] y, int yIndex, int length) {
+        NativeBlas.saxpy(length, alpha, x, xIndex, 1, y, yIndex, 1);
+    }
+
+    public void scaledSubtract(float alpha, float[] x, int xIndex, float[] y, int yIndex, int length) {
+        NativeBlas.saxpy(length, -alpha, x, xIndex, 1, y, yIndex, 1);
+    }
+
+    public float gradient(float error, float value, float lambda, float[] sum, float[] row, int rowIndex, float[] gradient, int length) {
+        NativeBlas.scopy(length, sum, 0, 1, gradient, 0, 1);
+        NativeBlas.sscal(length, error * value, gradient, 0, 1);
+        NativeBlas.saxpy(length, lambda - error * value * value, row, rowIndex, 1, gradient, 0, 1);
+        return NativeBlas.sdot(length, gradient, 0, 1, gradient, 0, 1);
+    }
+
+}
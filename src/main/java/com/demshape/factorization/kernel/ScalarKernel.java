@@ -0,0 +1,37 @@
+package com.demshape.factorization.kernel;
+
+/**
+ * Straightforward loop implementation. Serves as reference for the other kernels.
+ */
+public class ScalarKernel implements VectorKernelInterface {
+
+    public float dot(float[] x, int xIndex, float[] y, int yIndex, int length) {
+        float sum = 0.0f;
+        for (int i = 0; i < length; ++i)
+            sum += x[xIndex + i] * y[yIndex + i];
+        return sum;
+    }
+
+    public void axpy(float alpha, float[] x, int xIndex, float[] y, int yIndex, int length) {
+        for (int i = 0; i < length; ++i)
+            y[yIndex + i] += alpha * x[xIndex + i];
+    }
+
+    public void scaledSubtract(float alpha, float[] x, int xIndex, float[] y, int yIndex, int length) {
+        for (int i = 0; i < length; ++i)
+            y[yIndex + i] -= alpha * x[xIndex + i];
+    }
+
+    public float gradient(float error, float value, float lambda, float[] sum, float[] row, int rowIndex, float[] gradient, int length) {
+        final float squaredValue = value * value;
+        float squaredSum = 0.0f;
+        for (int i = 0; i < length; ++i) {
+            final float current = row[rowIndex + i];
+            final float g = error * (value * sum[i] - squaredValue * current) + lambda * current;
+            gradient[i] = g;
+            squaredSum += g * g;
+        }
+        return squaredSum;
+    }
+
+}
@@ -0,0 +1,66 @@
+package com.demshape.factorization.kernel;
+
+/**
+ * Loops are unrolled by four with independent accumulators which breaks the dependency chain of the reductions
+ * and gives the JIT room for instruction level parallelism.
+ */
+public class UnrolledKernel implements VectorKernelInterface {
+
+    public float dot(float[] x, int xIndex, float[] y, int yIndex, int length) {
+        float sum0 = 0.0f, sum1 = 0.0f, sum2 = 0.0f, sum3 = 0.0f;
+        int i = 0;
+        for (; i < (length & ~3); i += 4) {
+            sum0 += x[xIndex + i] * y[yIndex + i];
+            sum1 += x[xIndex + i + 1] * y[yIndex + i + 1];
+            sum2 += x[xIndex + i + 2] * y[yIndex + i + 2];
+            sum3 += x[xIndex + i + 3] * y[yIndex + i + 3];
+        }
+        for (; i < length; ++i)
+            sum0 += x[xIndex + i] * y[yIndex + i];
+        return (sum0 + sum1) + (sum2 + sum3);
+    }
+
+    public void axpy(float alpha, float[] x, int xIndex, float[] y, int yIndex, int length) {
+        int i = 0;
+        for (; i < (length & ~3); i += 4) {
+            y[yIndex + i] += alpha * x[xIndex + i];
+            y[yIndex + i + 1] += alpha * x[xIndex + i + 1];
+            y[yIndex + i + 2] += alpha * x[xIndex + i + 2];
+            y[yIndex + i + 3] += alpha * x[xIndex + i + 3];
+        }
+        for (; i < length; ++i)
+            y[yIndex + i] += alpha * x[xIndex + i];
+    }
+
+    public void scaledSubtract(float alpha, float[] x, int xIndex, float[] y, int yIndex, int length) {
+        axpy(-alpha, x, xIndex, y, yIndex, length);
+    }
+
+    public float gradient(float error, float value, float lambda, float[] sum, float[] row, int rowIndex, float[] gradient, int length) {
+        final float scaledValue = error * value;
+        final float rowFactor = lambda - error * value * value;
+        float squaredSum0 = 0.0f, squaredSum1 = 0.0f, squaredSum2 = 0.0f, squaredSum3 = 0.0f;
+        int i = 0;
+        for (; i < (length & ~3); i += 4) {
+            final float g0 = scaledValue * sum[i] + rowFactor * row[rowIndex + i];
+            final float g1 = scaledValue * sum[i + 1] + rowFactor * row[rowIndex + i + 1];
+            final float g2 = scaledValue * sum[i + 2] + rowFactor * row[rowIndex + i + 2];
+            final float g3 = scaledValue * sum[i + 3] + rowFactor * row[rowIndex + i + 3];
+            gradient[i] = g0;
+            gradient[i + 1] = g1;
+            gradient[i + 2] = g2;
+            gradient[i + 3] = g3;
+            squaredSum0 += g0 * g0;
+            squaredSum1 += g1 * g1;
+            squaredSum2 += g2 * g2;
+            squaredSum3 += g3 * g3;
+        }
+        for (; i < length; ++i) {
+            final float g = scaledValue * sum[i] + rowFactor * row[rowIndex + i];
+            gradient[i] = g;
+            squaredSum0 += g * g;
+        }
+        return (squaredSum0 + squaredSum1) + (squaredSum2 + squaredSum3);
+    }
+
+}
@@ -0,0 +1,151 @@
+package com.demshape.factorization.kernel;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Factory to create a vector kernel based on a string value. The value "auto" runs a short benchmark of all available
+ * kernels and returns the fastest one.
+ */
+public class VectorKernelFactory {
+
+    private static final Logger logger = LogManager.getLogger(VectorKernelFactory.class);
+
+    private static final String SIMD_KERNEL = "com.demshape.factorization.kernel.SimdKernel";
+    private static final int DEFAULT_BENCHMARK_DIMENSIONS = 64;
+    private static final long WARMUP_STEPS = 50_000L;
+    private static final long WARMUP_NANOS = 200_000_000L;
+    private static final long BENCHMARK_NANOS = 50_000_000L;
+
+    public static VectorKernelInterface get(String name) throws IllegalArgumentException {
+        return get(name, DEFAULT_BENCHMARK_DIMENSIONS);
+    }
+
+    /**
+     * @param name       kernel name: auto, scalar, unrolled, simd or jblas
+     * @param dimensions vector length used to benchmark the kernels if name is auto
+     * @return a kernel
+     * @throws IllegalArgumentException if the name is unknown or the kernel is not available on this JVM
+     */
+    public static VectorKernelInterface get(String name, int dimensions) throws IllegalArgumentException {
+        switch (name.toLowerCase().trim()) {
+            case "auto":
+                return fastest(available(), dimensions > 0 ? dimensions : DEFAULT_BENCHMARK_DIMENSIONS);
+            case "scalar":
+                return new ScalarKernel();
+            case "unrolled":
+                return new UnrolledKernel();
+            case "simd":
+                VectorKernelInterface simd = simd();
+                if (simd == null)
+                    throw new IllegalArgumentException("simd kernel requires JDK 17+ and --add-modules jdk.incubator.vector");
+                return simd;
+            case "jblas":
+                VectorKernelInterface jblas = jblas();
+                if (jblas == null)
+                    throw new IllegalArgumentException("jblas kernel could not load its native library");
+                return jblas;
+        }
+        throw new IllegalArgumentException("Invalid kernel parameter: " + name);
+    }
+
+    /**
+     * @return all kernels which can be used on this JVM
+     */
+    public static List<VectorKernelInterface> available() {
+        List<VectorKernelInterface> kernels = new ArrayList<>();
+        kernels.add(new ScalarKernel());
+        kernels.add(new UnrolledKernel());
+        VectorKernelInterface simd = simd();
+        if (simd != null)
+            kernels.add(simd);
+        VectorKernelInterface jblas = jblas();
+        if (jblas != null)
+            kernels.add(jblas);
+        return kernels;
+    }
+
+    /**
+     * Runs each kernel on a typical training step workload for a short time and returns the fastest one.
+     * @param kernels    candidates
+     * @param dimensions vector length
+     * @return fastest kernel
+     */
+    public static VectorKernelInterface fastest(List<VectorKernelInterface> kernels, int dimensions) {
+        final float[] a = new float[dimensions];
+        final float[] b = new float[dimensions];
+        final float[] gradient = new float[dimensions];
+        for (int i = 0; i < dimensions; ++i) {
+            a[i] = (float) ThreadLocalRandom.current().nextGaussian() / dimensions;
+            b[i] = (float) ThreadLocalRandom.current().nextGaussian() / dimensions;
+        }
+        VectorKernelInterface fastest = null;
+        double fastestNanos = Double.MAX_VALUE;
+        for (VectorKernelInterface kernel : kernels) {
+            // first run warms up the jit, second one is measured
+            benchmark(kernel, a, b, gradient, WARMUP_STEPS, WARMUP_NANOS);
+            double nanos = benchmark(kernel, a, b, gradient, 0, BENCHMARK_NANOS);
+            logger.info(String.format("kernel %s: %.1f ns per step", kernel.getClass().getSimpleName(), nanos));
+            if (nanos < fastestNanos) {
+                fastestNanos = nanos;
+                fastest = kernel;
+            }
+        }
+        logger.info("using kernel " + fastest.getClass().getSimpleName());
+        return fastest;
+    }
+
+    /**
+     * Runs for at least minSteps steps and the given duration.
+     * @return average time in nanoseconds of a single step
+     */
+    private static double benchmark(VectorKernelInterface kernel, float[] a, float[] b, float[] gradient, long minSteps, long duration) {
+        final int dimensions = a.length;
+        final int stepsPerRound = 1000;
+        long steps = 0;
+        float sink = 0.0f;
+        final long start = System.nanoTime();
+        long elapsed;
+        do {
+            for (int i = 0; i < stepsPerRound; ++i) {
+                sink += kernel.dot(a, 0, b, 0, dimensions);
+                sink += kernel.gradient(0.1f, 1.0f, 0.01f, a, b, 0, gradient, dimensions);
+                kernel.axpy(1e-6f, gradient, 0, a, 0, dimensions);
+                kernel.scaledSubtract(1e-6f, gradient, 0, b, 0, dimensions);
+            }
+            steps += stepsPerRound;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < duration || steps < minSteps);
+        if (Float.isNaN(sink))
+            logger.debug("benchmark diverged");
+        return elapsed / (double) steps;
+    }
+
+    private static VectorKernelInterface simd() {
+        try {
+            VectorKernelInterface kernel = (VectorKernelInterface) Class.forName(SIMD_KERNEL).getDeclaredConstructor().newInstance();
+            // make sure the vector api is linked
+            kernel.dot(new float[1], 0, new float[1], 0, 1);
+            return kernel;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            logger.debug("simd kernel not available", e);
+            return null;
+        }
+    }
+
+    private static VectorKernelInterface jblas() {
+        try {
+            VectorKernelInterface kernel = new JblasKernel();
+            kernel.dot(new float[1], 0, new float[1], 0, 1);
+            return kernel;
+        } catch (LinkageError e) {
+            logger.debug("jblas kernel not available", e);
+            return null;
+        }
+    }
+
+}
@@ -0,0 +1,57 @@
+package com.demshape.factorization.kernel;
+
+/**
+ * Defines the dense vector operations used by the training and prediction hot paths.
+ * All vectors are given as an array together with the offset of their first element such that rows of a
+ * {@link com.demshape.factorization.datastructure.ParameterStore} can be used without copying.
+ */
+public interface VectorKernelInterface {
+
+    /**
+     * @param x      first vector
+     * @param xIndex offset of the first vector
+     * @param y      second vector
+     * @param yIndex offset of the second vector
+     * @param length number of elements
+     * @return dot product of x and y
+     */
+    float dot(float[] x, int xIndex, float[] y, int yIndex, int length);
+
+    /**
+     * Computes y += alpha * x
+     * @param alpha  scaling factor
+     * @param x      input vector
+     * @param xIndex offset of the input vector
+     * @param y      vector to add to
+     * @param yIndex offset of the vector to add to
+     * @param length number of elements
+     */
+    void axpy(float alpha, float[] x, int xIndex, float[] y, int yIndex, int length);
+
+    /**
+     * Computes y -= alpha * x
+     * @param alpha  scaling factor
+     * @param x      input vector
+     * @param xIndex offset of the input vector
+     * @param y      vector to subtract from
+     * @param yIndex offset of the vector to subtract from
+     * @param length number of elements
+     */
+    void scaledSubtract(float alpha, float[] x, int xIndex, float[] y, int yIndex, int length);
+
+    /**
+     * Computes the gradient of a factorization machine row:
+     * gradient = error * (value * sum - value^2 * row) + lambda * row
+     * @param error    derivative of the loss
+     * @param value    input value of the row
+     * @param lambda   regularization factor
+     * @param sum      weighted sum of all rows of the input (starting at index 0)
+     * @param row      current row
+     * @param rowIndex offset of the current row
+     * @param gradient output vector (starting at index 0)
+     * @param length   number of elements
+     * @return the squared length of the gradient
+     */
+    float gradient(float error, float value, float lambda, float[] sum, float[] row, int rowIndex, float[] gradient, int length);
+
+}
@@ -1,15 +1,17 @@
 package com.demshape.factorization.model;
 
-import com.demshape.factorization.dataset.DatasetInterface;
+import com.demshape.factorization.dataset.BatchCursor;
+import com.demshape.factorization.datastructure.DataBatch;
 import com.demshape.factorization.datastructure.DataPoint;
 import com.demshape.factorization.datastructure.SparseVector;
 import com.demshape.factorization.lossfunction.LossFunctionInterface;
 import com.demshape.factorization.metric.LossAverager;
+import com.demshape.factorization.sampler.SamplerFactory;
+import com.demshape.factorization.sampler.SamplerInterface;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.jblas.FloatMatrix;
 
-import java.util.concurrent.ExecutionException;
+import java.util.Random;
 
 /**
  * An alternative learning function which uses the BPR objective.
@@ -23,71 +25,79 @@ public class Bpr extends Factorization {
         super(dimensions, learnRate, lambda1, lambda2, iterations, negatives, lossFunction, regression, tableSize, minCount, alpha, bins);
     }
 
+    /**
+     * Negative items are sampled from the item distribution.
+     */
     @Override
-    public void train(DatasetInterface trainset, SparseVector[] optionalFeatures, int numFeatures) throws InterruptedException, ExecutionException {
-        initParameters(numFeatures, dimensions);
-        initLearnRates(numFeatures);
-        count(numFeatures, trainset);
-        initSamplingTable(itemCount, alpha, tableSize);
+    protected void initSampling() {
+        sampler = SamplerFactory.get(samplerType, itemCount, alpha, tableSize);
+    }
+
+    /**
+     * A single negative item is sampled per data point.
+     */
+    @Override
+    protected int negativeSamples() {
+        return 1;
+    }
 
+    /**
+     * Negative items are sampled from the item block.
+     */
+    @Override
+    protected SamplerInterface[] initBlockSamplers(int blocks) {
+        return blockSamplers(itemCount, blocks);
+    }
+
+    @Override
+    protected int negativeBlock(int contextBlock, int itemBlock) {
+        return itemBlock;
+    }
+
+    @Override
+    protected LossAverager trainPartition(BatchCursor dataPoints, SparseVector[] optionalFeatures, SamplerInterface negativeSampler, Random random) {
+        LossAverager lossAverager = new LossAverager(bins);
+        final DataBatch batch = new DataBatch();
+        DataPoint dataPoint = new DataPoint();
         DataPoint negativeDataPoint = new DataPoint();
+        // the sums of vectors are kept for the gradient steps, the input vectors are reused
+        final Workspace workspace = workspace();
         float measured = 1.0f;
-        for (int iteration = 1; iteration <= iterations; ++iteration) {
-            logger.info(String.format("Iteration %d start...", iteration));
-            trainset.parallelStream().map(dataPoint -> {
-                LossAverager lossAverager = new LossAverager(bins);
+        while (dataPoints.next(batch)) {
+            for (int n = 0; n < batch.size; ++n) {
+                dataPoint.contextId = batch.contextIds[n];
+                dataPoint.itemId = batch.itemIds[n];
+                dataPoint.rating = batch.ratings[n];
                 final int itemOccurrence = itemCount[dataPoint.itemId];
 
                 // positive data point
-                SparseVector positiveSparseVector = dataPoint.toSparseVector(optionalFeatures[dataPoint.itemId]);
+                SparseVector positiveSparseVector = dataPoint.toSparseVector(optionalFeatures[dataPoint.itemId], workspace.input);
 
                 // negative data point
-                negativeDataPoint.itemId = dataPoint.itemId;
                 // todo: does it make a difference which one is sampled?
-                dataPoint.itemId = sample();
-                SparseVector negativeSparseVector = negativeDataPoint.toSparseVector(optionalFeatures[negativeDataPoint.itemId]);
+                negativeDataPoint.contextId = dataPoint.contextId;
+                negativeDataPoint.itemId = negativeSampler.sample(random);
+                SparseVector negativeSparseVector = negativeDataPoint.toSparseVector(optionalFeatures[negativeDataPoint.itemId], workspace.negativeInput);
 
-                float predicted = predict(positiveSparseVector) - predict(negativeSparseVector);
+                float predicted = predictDataPoint(positiveSparseVector, workspace.vectorSum) - predictDataPoint(negativeSparseVector, workspace.negativeVectorSum);
                 float loss = lossFunction.g(predicted, measured);
                 float weight = dataPoint.rating;
                 final float error = weight * lossFunction.gDeriv(predicted, measured);
                 lossAverager.add(loss, itemOccurrence);
 
-                trainStep(positiveSparseVector, error, 1.0f);
-                trainStep(negativeSparseVector, error, -1.0f);
-
-                return lossAverager;
-            }).reduce((a, b) -> a.add(b)).ifPresent(iterationLoss ->
-                    logger.info("train loss: " + iterationLoss));
+                gradientStep(positiveSparseVector, workspace.vectorSum, error);
+                gradientStep(negativeSparseVector, workspace.negativeVectorSum, -error);
+            }
         }
+        return lossAverager;
     }
 
-     public float trainStep(SparseVector sparseVector, float error, float group) {
-        // pre compute sum of vectors to speed up computation
-        final FloatMatrix vectorSum = FloatMatrix.zeros(latentVectors[0].length);
-        for (SparseVector.SparseEntry entry : sparseVector)
-            vectorSum.addi(latentVectors[entry.key].mul(entry.value));
-
-        // gradient updates
+    public float trainStep(SparseVector sparseVector, float error, float group) {
         // XXX(od): do not include quadratic features
-        for (SparseVector.SparseEntry entryA : sparseVector) {
-            int key = entryA.key;
-            float value = entryA.value;
-            FloatMatrix vector = latentVectors[key];
-
-            // quadratic term
-            final FloatMatrix gradientA = vectorSum.mul(value).subi(vector.mul(value * value));
-            gradientA.muli(error * group).addi(vector.mul(lambda2));
-            float individualLearnRate = updateLearnRate(key, gradientA);
-            vector.subi(gradientA.muli(learnRate * individualLearnRate));
-
-            // linear term
-            float current = biases.get(key);
-            float linearGradient = value * error * group + lambda1 * current;
-            biases.put(key, current - learnRate * individualLearnRate * linearGradient);
-        }
+        final float[] vectorSum = workspace().vectorSum;
+        predict(sparseVector, vectorSum);
+        gradientStep(sparseVector, vectorSum, error * group);
         return 0.0f;
     }
 
-
 }
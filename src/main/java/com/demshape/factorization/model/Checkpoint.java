@@ -0,0 +1,210 @@
+package com.demshape.factorization.model;
+
+import com.demshape.factorization.datastructure.ParameterStore;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary snapshot of the training state which allows to resume an interrupted training. It holds all parameters
+ * (latent vectors, biases and gradient lengths), the item and context counts, the parameters of the negative
+ * sampler, the master seed and the last finished iteration. All other random state is derived from the seed and the
+ * iteration (see {@link com.demshape.factorization.tools.RandomStreams}).
+ * <p>
+ * Layout (little endian): magic, version, iteration, seed, rows, dimensions, sampler type, alpha, table size,
+ * item counts, context counts and all parameter rows back to back.
+ */
+public class Checkpoint {
+
+    private static final Logger logger = LogManager.getLogger(Checkpoint.class);
+
+    private static final int MAGIC = 0x49494643;
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * last finished iteration
+     */
+    public int iteration;
+
+    /**
+     * master seed
+     */
+    public long seed;
+
+    public ParameterStore parameters;
+    public int[] itemCount;
+    public int[] contextCount;
+
+    /**
+     * parameters of the negative sampler
+     */
+    public String samplerType;
+    public double alpha;
+    public int tableSize;
+
+    public Checkpoint() {
+    }
+
+    /**
+     * Captures the state of a model. Parameters are not copied.
+     * @param factorization the model
+     * @param iteration last finished iteration
+     */
+    public Checkpoint(Factorization factorization, int iteration) {
+        this.iteration = iteration;
+        this.seed = factorization.seed;
+        this.parameters = factorization.parameters;
+        this.itemCount = factorization.itemCount;
+        this.contextCount = factorization.contextCount;
+        this.samplerType = factorization.samplerType;
+        this.alpha = factorization.alpha;
+        this.tableSize = factorization.tableSize;
+    }
+
+    /**
+     * Writes the checkpoint to a temporary file which then replaces the given path. Hence the path always holds a
+     * complete checkpoint even if the process dies while writing.
+     * @param path output path
+     * @throws IOException if the checkpoint can not be written
+     */
+    public void write(Path path) throws IOException {
+        logger.info(String.format("writing checkpoint of iteration %d to %s...", iteration, path));
+        final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            final byte[] sampler = samplerType.getBytes(StandardCharsets.UTF_8);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(iteration).putLong(seed)
+                    .putInt(parameters.rows).putInt(parameters.dimensions)
+                    .putInt(sampler.length).put(sampler).putDouble(alpha).putInt(tableSize);
+            writeInts(channel, buffer, itemCount);
+            writeInts(channel, buffer, contextCount);
+            for (int chunk = 0; chunk < parameters.numChunks(); ++chunk)
+                writeFloats(channel, buffer, parameters.chunkAt(chunk));
+            flush(channel, buffer);
+            channel.force(false);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @param path path of a checkpoint
+     * @return the checkpoint
+     * @throws IOException if the file can not be read or is not a checkpoint
+     */
+    public static Checkpoint read(Path path) throws IOException {
+        logger.info(String.format("reading checkpoint %s...", path));
+        final Checkpoint checkpoint = new Checkpoint();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.flip();
+            if (require(channel, buffer, 8).getInt() != MAGIC)
+                throw new IOException("not a checkpoint: " + path);
+            final int version = buffer.getInt();
+            if (version != VERSION)
+                throw new IOException(String.format("unsupported checkpoint version %d", version));
+            checkpoint.iteration = require(channel, buffer, 12).getInt();
+            checkpoint.seed = buffer.getLong();
+            final int rows = require(channel, buffer, 12).getInt();
+            final int dimensions = buffer.getInt();
+            final byte[] sampler = new byte[buffer.getInt()];
+            require(channel, buffer, sampler.length + 12).get(sampler);
+            checkpoint.samplerType = new String(sampler, StandardCharsets.UTF_8);
+            checkpoint.alpha = buffer.getDouble();
+            checkpoint.tableSize = buffer.getInt();
+            checkpoint.itemCount = readInts(channel, buffer);
+            checkpoint.contextCount = readInts(channel, buffer);
+            checkpoint.parameters = new ParameterStore(rows, dimensions);
+            for (int chunk = 0; chunk < checkpoint.parameters.numChunks(); ++chunk)
+                readFloats(channel, buffer, checkpoint.parameters.chunkAt(chunk));
+        }
+        return checkpoint;
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        if (buffer.remaining() < Integer.BYTES)
+            flush(channel, buffer);
+        buffer.putInt(values.length);
+        int index = 0;
+        while (index < values.length) {
+            final int length = Math.min(values.length - index, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().put(values, index, length);
+            buffer.position(buffer.position() + length * Integer.BYTES);
+            index += length;
+            if (index < values.length)
+                flush(channel, buffer);
+        }
+    }
+
+    private static void writeFloats(FileChannel channel, ByteBuffer buffer, float[] values) throws IOException {
+        int index = 0;
+        while (index < values.length) {
+            final int length = Math.min(values.length - index, buffer.remaining() / Float.BYTES);
+            buffer.asFloatBuffer().put(values, index, length);
+            buffer.position(buffer.position() + length * Float.BYTES);
+            index += length;
+            if (index < values.length)
+                flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+        buffer.clear();
+    }
+
+    private static int[] readInts(FileChannel channel, ByteBuffer buffer) throws IOException {
+        final int[] values = new int[require(channel, buffer, Integer.BYTES).getInt()];
+        int index = 0;
+        while (index < values.length) {
+            if (buffer.remaining() < Integer.BYTES)
+                require(channel, buffer, Integer.BYTES);
+            final int length = Math.min(values.length - index, buffer.remaining() / Integer.BYTES);
+            buffer.asIntBuffer().get(values, index, length);
+            buffer.position(buffer.position() + length * Integer.BYTES);
+            index += length;
+        }
+        return values;
+    }
+
+    private static void readFloats(FileChannel channel, ByteBuffer buffer, float[] values) throws IOException {
+        int index = 0;
+        while (index < values.length) {
+            if (buffer.remaining() < Float.BYTES)
+                require(channel, buffer, Float.BYTES);
+            final int length = Math.min(values.length - index, buffer.remaining() / Float.BYTES);
+            buffer.asFloatBuffer().get(values, index, length);
+            buffer.position(buffer.position() + length * Float.BYTES);
+            index += length;
+        }
+    }
+
+    /**
+     * Makes sure that at least the given number of bytes are buffered.
+     * @return the buffer
+     * @throws IOException if the file ends before
+     */
+    private static ByteBuffer require(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (buffer.remaining() >= bytes)
+            return buffer;
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0)
+                throw new IOException("unexpected end of checkpoint");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+}
@@ -0,0 +1,222 @@
+package com.demshape.factorization.model;
+
+import com.demshape.factorization.dataset.BatchCursor;
+import com.demshape.factorization.dataset.DatasetInterface;
+import com.demshape.factorization.datastructure.DataBatch;
+import com.demshape.factorization.datastructure.ParameterStore;
+import com.demshape.factorization.datastructure.SparseVector;
+import com.demshape.factorization.distributed.ParameterClient;
+import com.demshape.factorization.metric.LossAverager;
+import com.demshape.factorization.sampler.SamplerInterface;
+import com.demshape.factorization.tools.RandomStreams;
+import com.demshape.factorization.tools.TrainingExecutor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Trains a model whose parameters are sharded over several {@link com.demshape.factorization.distributed.ParameterServer}
+ * processes. Each worker process trains on its part of the train set. Data points are processed in batches: all rows a
+ * batch refers to (contexts, items, negative samples and additional features) are pulled into a small local
+ * parameter store, the batch is trained locally with the usual update rules of the model and the changes are pushed
+ * back to the servers.
+ * <p>
+ * All workers must read the same train set (which results in the same dense mapping and counts) and use the same
+ * seed and number of threads, the servers reject workers which do not. Worker w with t threads trains the partitions
+ * w * t ... w * t + t - 1 of workers * t partitions. Workers wait for each other after every iteration.
+ */
+public class DistributedTraining {
+
+    private static final Logger logger = LogManager.getLogger(DistributedTraining.class);
+
+    private static final int DISTRIBUTED_STREAM = 4;
+
+    private final Factorization model;
+    private final List<InetSocketAddress> servers;
+    private final int worker;
+    private final int workers;
+    private final int batchSize;
+
+    /**
+     * @param model     the model, all hyper parameters are taken from it
+     * @param servers   addresses of the parameter servers ordered by shard
+     * @param worker    index of this worker
+     * @param workers   total number of workers
+     * @param batchSize number of data points per pull and push
+     */
+    public DistributedTraining(Factorization model, List<InetSocketAddress> servers, int worker, int workers, int batchSize) {
+        if (worker < 0 || worker >= workers)
+            throw new IllegalArgumentException(String.format("Invalid worker parameter: %d of %d", worker, workers));
+        this.model = model;
+        this.servers = servers;
+        this.worker = worker;
+        this.workers = workers;
+        this.batchSize = batchSize;
+    }
+
+    public void train(DatasetInterface trainset, SparseVector[] optionalFeatures, int numFeatures) throws IOException, InterruptedException, ExecutionException {
+        // the parameters live on the servers, which neither write checkpoints nor start from a previous model
+        if (model.checkpointInterval > 0 || model.resume != null)
+            logger.warn("checkpoints are not supported by distributed training, training starts from scratch and writes none");
+        if (model.warmStart != null)
+            logger.warn("warm start is not supported by distributed training, the servers initialize all rows");
+        if (model.deterministic)
+            logger.warn("distributed training is not deterministic, workers push their updates concurrently");
+        model.count(numFeatures, trainset);
+        model.initSampling();
+
+        try (TrainingExecutor executor = new TrainingExecutor(model.threads, "distributed-worker", model.affinity)) {
+            final int threads = executor.threads();
+            final int partitions = workers * threads;
+            final List<ParameterClient> clients = new ArrayList<>(threads);
+            try {
+                for (int thread = 0; thread < threads; ++thread)
+                    clients.add(new ParameterClient(servers));
+                clients.get(0).init(numFeatures, model.dimensions, model.seed, workers, threads);
+
+                for (int iteration = 1; iteration <= model.iterations; ++iteration) {
+                    logger.info(String.format("Iteration %d start...", iteration));
+                    final int currentIteration = iteration;
+                    executor.run(thread -> {
+                        final int partition = worker * threads + thread;
+                        final Random random = RandomStreams.create(model.seed, DISTRIBUTED_STREAM, currentIteration, partition);
+                        return trainPartition(clients.get(thread), trainset.cursor(partition, partitions), optionalFeatures, random);
+                    }).stream().reduce((a, b) -> a.add(b)).ifPresent(iterationLoss ->
+                            logger.info("train loss: " + iterationLoss));
+                    clients.get(0).barrier(workers);
+                }
+            } finally {
+                for (ParameterClient client : clients)
+                    client.close();
+            }
+        }
+    }
+
+    /**
+     * Pulls all rows from the servers into the model, e.g. to write the final vectors.
+     * @param numFeatures total number of rows
+     * @throws IOException on communication errors
+     */
+    public void pullAll(int numFeatures) throws IOException {
+        logger.info("pulling all parameters...");
+        model.parameters = new ParameterStore(numFeatures, model.dimensions);
+        final int[] ids = new int[Math.min(batchSize, numFeatures)];
+        final ParameterStore rows = new ParameterStore(ids.length, model.dimensions);
+        try (ParameterClient client = new ParameterClient(servers)) {
+            for (int from = 0; from < numFeatures; from += ids.length) {
+                final int count = Math.min(ids.length, numFeatures - from);
+                for (int i = 0; i < count; ++i)
+                    ids[i] = from + i;
+                client.pull(ids, count, rows);
+                for (int i = 0; i < count; ++i)
+                    System.arraycopy(rows.chunk(i), rows.offset(i), model.parameters.chunk(from + i), model.parameters.offset(from + i), rows.stride);
+            }
+        }
+    }
+
+    private LossAverager trainPartition(ParameterClient client, BatchCursor dataPoints, SparseVector[] optionalFeatures, Random random) {
+        final Factorization local = model.copy();
+        final LossAverager lossAverager = new LossAverager(model.bins);
+        final DataBatch batch = new DataBatch(batchSize);
+        final DataBatch localBatch = new DataBatch(batchSize);
+        try {
+            while (dataPoints.next(batch))
+                lossAverager.add(trainBatch(client, local, batch, localBatch, optionalFeatures, random));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return lossAverager;
+    }
+
+    /**
+     * Pull, train and push a single batch.
+     * @param local copy of the model which works on local row indices
+     * @param localBatch reused for the batch remapped to local rows
+     */
+    private LossAverager trainBatch(ParameterClient client, Factorization local, DataBatch batch, DataBatch localBatch, SparseVector[] optionalFeatures, Random random) throws IOException {
+        // negative samples are drawn up front such that their rows can be pulled
+        final int[] negatives = new int[batch.size * model.negativeSamples()];
+        for (int i = 0; i < negatives.length; ++i)
+            negatives[i] = model.sampler.sample(random);
+
+        // all referenced rows sorted and without duplicates, the position within ids is the local row
+        int[] ids = new int[2 * batch.size + negatives.length];
+        int count = 0;
+        for (int n = 0; n < batch.size; ++n) {
+            ids[count++] = batch.contextIds[n];
+            ids[count++] = batch.itemIds[n];
+        }
+        System.arraycopy(negatives, 0, ids, count, negatives.length);
+        count += negatives.length;
+        for (int i = 0, referenced = count; i < referenced; ++i) {
+            final SparseVector features = optionalFeatures[ids[i]];
+            if (features != null) {
+                if (count + features.size() > ids.length)
+                    ids = Arrays.copyOf(ids, 2 * (count + features.size()));
+                for (int j = 0; j < features.size(); ++j)
+                    ids[count++] = features.keys[j];
+            }
+        }
+        ids = Arrays.stream(ids, 0, count).sorted().distinct().toArray();
+
+        final ParameterStore rows = new ParameterStore(ids.length, model.dimensions);
+        client.pull(ids, ids.length, rows);
+        final float[] pulled = rows.chunkAt(0).clone();
+
+        // remap to local rows
+        localBatch.clear();
+        for (int n = 0; n < batch.size; ++n)
+            localBatch.add(Arrays.binarySearch(ids, batch.contextIds[n]), Arrays.binarySearch(ids, batch.itemIds[n]), batch.ratings[n]);
+        for (int i = 0; i < negatives.length; ++i)
+            negatives[i] = Arrays.binarySearch(ids, negatives[i]);
+        final SparseVector[] localFeatures = new SparseVector[ids.length];
+        final int[] localItemCount = new int[ids.length];
+        for (int row = 0; row < ids.length; ++row) {
+            localItemCount[row] = model.itemCount[ids[row]];
+            final SparseVector features = optionalFeatures[ids[row]];
+            if (features != null) {
+                final SparseVector localVector = new SparseVector(features.size());
+                for (int j = 0; j < features.size(); ++j)
+                    localVector.set(j, Arrays.binarySearch(ids, features.keys[j]), features.values[j]);
+                localFeatures[row] = localVector;
+            }
+        }
+
+        local.parameters = rows;
+        local.itemCount = localItemCount;
+        final LossAverager loss = local.trainPartition(BatchCursor.of(localBatch), localFeatures, new ReplaySampler(negatives), random);
+
+        // push the changes
+        final float[] trained = rows.chunkAt(0);
+        for (int i = 0; i < trained.length; ++i)
+            trained[i] -= pulled[i];
+        client.push(ids, ids.length, rows);
+        return loss;
+    }
+
+    /**
+     * Returns pre drawn samples in order.
+     */
+    private static class ReplaySampler implements SamplerInterface {
+        private final int[] samples;
+        private int position;
+
+        ReplaySampler(int[] samples) {
+            this.samples = samples;
+        }
+
+        @Override
+        public int sample(Random random) {
+            return samples[position++];
+        }
+    }
+
+}
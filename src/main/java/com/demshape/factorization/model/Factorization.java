@@ -1,26 +1,56 @@
 package com.demshape.factorization.model;
 
+import com.demshape.factorization.dataset.BatchCursor;
+import com.demshape.factorization.dataset.BatchPipeline;
+import com.demshape.factorization.dataset.BlockedDataset;
 import com.demshape.factorization.dataset.DatasetInterface;
+import com.demshape.factorization.dataset.ItemGroupedDataset;
+import com.demshape.factorization.datastructure.DataBatch;
 import com.demshape.factorization.datastructure.DataPoint;
+import com.demshape.factorization.datastructure.IntIntMap;
+import com.demshape.factorization.datastructure.ParameterStore;
 import com.demshape.factorization.datastructure.SparseVector;
+import com.demshape.factorization.kernel.UnrolledKernel;
+import com.demshape.factorization.kernel.VectorKernelInterface;
 import com.demshape.factorization.lossfunction.LossFunctionInterface;
 import com.demshape.factorization.metric.LossAverager;
+import com.demshape.factorization.sampler.BlockSampler;
+import com.demshape.factorization.sampler.SamplerFactory;
+import com.demshape.factorization.sampler.SamplerInterface;
+import com.demshape.factorization.tools.RandomStreams;
+import com.demshape.factorization.tools.TrainingExecutor;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jblas.FloatMatrix;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 
 import static com.demshape.factorization.tools.GlobalConstants.HASH_MAP_LOAD_FACTOR;
 import static com.demshape.factorization.tools.GlobalConstants.hashSize;
 
-public class Factorization {
+public class Factorization implements Cloneable {
 
     private static final Logger logger = LogManager.getLogger(Factorization.class);
 
+    // random streams derived from the master seed
+    private static final int INIT_STREAM = 0;
+    private static final int TRAIN_STREAM = 1;
+    private static final int BLOCK_STREAM = 2;
+    private static final int PREDICT_STREAM = 3;
+    private static final int ORDER_STREAM = 5;
+
     /**
      * number of features
      */
@@ -66,6 +96,11 @@ public class Factorization {
      */
     public int tableSize;
 
+    /**
+     * negative sampler to be used: alias or table (see {@link SamplerFactory})
+     */
+    public String samplerType = "alias";
+
     /**
      * minimum count after which no weighting is applied to individual samples
      */
@@ -81,14 +116,105 @@ public class Factorization {
      */
     public int[] bins;
 
+    /**
+     * vector operations used for training and prediction
+     */
+    public VectorKernelInterface kernel = new UnrolledKernel();
+
+    /**
+     * number of worker threads, all available processors if &lt;= 0
+     */
+    public int threads;
+
+    /**
+     * whether worker threads should be pinned to cpus
+     */
+    public boolean affinity;
+
+    /**
+     * number of iterations between two checkpoints, no checkpoints are written if &lt;= 0
+     */
+    public int checkpointInterval;
+
+    /**
+     * path of the checkpoint file
+     */
+    public String checkpointPath;
+
+    /**
+     * checkpoint to resume the training from, null to start from scratch
+     */
+    public Checkpoint resume;
+
+    /**
+     * final state of a previous model to continue with new data (see {@link #warmStart}), ignored when resuming
+     */
+    public Checkpoint warmStart;
+
+    /**
+     * parallel training mode: hogwild (lock free updates on shared vectors) or dsgd (conflict free blocks)
+     */
+    public String trainingMode = "hogwild";
+
+    /**
+     * order of the data points in hogwild training: file (order of the train set) or item (all data points of an item
+     * in a row, see {@link ItemGroupedDataset})
+     */
+    public String trainOrder = "file";
+
+    /**
+     * maximum number of data points of an item which are trained in a row if trainOrder is item
+     */
+    public int groupSize = 1000;
+
+    /**
+     * number of blocks per dimension in dsgd mode, the number of threads if &lt;= 0
+     */
+    public int blocks;
+
+    /**
+     * master seed of all random streams used for initialization, negative sampling and evaluation
+     */
+    public long seed;
+
+    /**
+     * whether two runs with the same seed and number of threads must produce identical parameters. As lock free
+     * updates of several threads are not reproducible, hogwild training with more than one thread falls back to dsgd.
+     */
+    public boolean deterministic;
+
+    /**
+     * number of training steps which reuse the cached sum of the feature vectors of an item before it is recomputed,
+     * the cache is disabled if &lt;= 0 (see {@link FeatureCache})
+     */
+    public int featureCache;
+
+    /**
+     * number of threads which read the train set ahead of hogwild training (see {@link BatchPipeline}), the training
+     * threads read themselves if &lt;= 0
+     */
+    public int readers;
+
+    /**
+     * number of batches the readers may read ahead of training
+     */
+    public int readAhead = 64;
+
     // internal data structures
-    public FloatMatrix biases;
-    public FloatMatrix[] latentVectors;
-    public float[] gradientLengths;
-    public int[] samplingTable;
+    public ParameterStore parameters;
+    public SamplerInterface sampler;
     public int[] itemCount;
     public int[] contextCount;
 
+    /**
+     * per thread scratch buffers used by the gradient updates
+     */
+    private final ThreadLocal<Workspace> workspaces = new ThreadLocal<>();
+
+    private FeatureCache featureSums;
+    private ExecutorService checkpointWriter;
+    private Future<?> pendingCheckpoint;
+
     public Factorization() {
     }
 
@@ -108,16 +234,286 @@ public class Factorization {
     }
 
     public void train(DatasetInterface trainset, SparseVector[] optionalFeatures, int numFeatures) throws InterruptedException, ExecutionException {
-        initParameters(numFeatures, dimensions);
-        initLearnRates(numFeatures);
-        count(numFeatures, trainset);
-        if (negatives > 0)
-            initSamplingTable(contextCount, alpha, tableSize);
+        boolean blocked = blocked(trainingMode);
+        final boolean grouped = itemOrder(trainOrder);
+        int readAheadThreads = readers;
+        int firstIteration = 1;
+        if (resume != null) {
+            restore(resume, numFeatures);
+            firstIteration = resume.iteration + 1;
+        } else if (warmStart != null) {
+            warmStart(warmStart, numFeatures, trainset);
+        } else {
+            initParameters(numFeatures, dimensions);
+            count(numFeatures, trainset);
+        }
+        initSampling();
+        featureSums = featureCache > 0 ? new FeatureCache(optionalFeatures, dimensions, featureCache) : null;
+
+        checkpointWriter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "factorization-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try (TrainingExecutor executor = new TrainingExecutor(threads, "factorization-worker", affinity)) {
+            if (deterministic && !blocked && executor.threads() > 1) {
+                logger.warn("hogwild training with several threads is not deterministic, using dsgd instead");
+                blocked = true;
+            }
+            if (readers > 0 && deterministic) {
+                logger.warn("reading ahead does not preserve the train order, deterministic training reads on the training threads");
+                readAheadThreads = 0;
+            }
+            if (blocked) {
+                if (grouped)
+                    logger.warn("train order item is only used by hogwild training");
+                if (readAheadThreads > 0)
+                    logger.warn("reading ahead is only used by hogwild training");
+                trainBlocked(executor, trainset, optionalFeatures, firstIteration);
+            } else if (grouped) {
+                trainHogwild(executor, new ItemGroupedDataset(trainset, numFeatures, groupSize), optionalFeatures, firstIteration, readAheadThreads);
+            } else {
+                trainHogwild(executor, trainset, optionalFeatures, firstIteration, readAheadThreads);
+            }
+            awaitCheckpoint();
+        } finally {
+            checkpointWriter.shutdownNow();
+        }
+    }
+
+    /**
+     * Continues from a checkpoint instead of initializing parameters and counting occurrences.
+     * @param checkpoint the checkpoint
+     * @param numFeatures number of features of the train set
+     * @throws IllegalArgumentException if the checkpoint does not match the model
+     */
+    private void restore(Checkpoint checkpoint, int numFeatures) throws IllegalArgumentException {
+        if (checkpoint.parameters.rows != numFeatures || checkpoint.parameters.dimensions != dimensions)
+            throw new IllegalArgumentException(String.format("checkpoint with %d rows and %d dimensions does not match %d features and %d dimensions",
+                    checkpoint.parameters.rows, checkpoint.parameters.dimensions, numFeatures, dimensions));
+        logger.info(String.format("resuming after iteration %d with seed %d", checkpoint.iteration, checkpoint.seed));
+        parameters = checkpoint.parameters;
+        itemCount = checkpoint.itemCount;
+        contextCount = checkpoint.contextCount;
+        seed = checkpoint.seed;
+        samplerType = checkpoint.samplerType;
+        alpha = checkpoint.alpha;
+        tableSize = checkpoint.tableSize;
+    }
+
+    /**
+     * Writes a checkpoint after every checkpointInterval iterations. The parameters are written by a background
+     * thread while the next iteration already runs, hence rows may contain some updates of the next iteration. This
+     * does not harm sgd but the resumed training is not identical to an uninterrupted one. In deterministic mode
+     * training waits until the checkpoint is written.
+     * @param iteration the finished iteration
+     */
+    private void iterationFinished(int iteration) throws InterruptedException, ExecutionException {
+        if (checkpointInterval <= 0 || iteration % checkpointInterval != 0)
+            return;
+        // only a single checkpoint is written at a time
+        awaitCheckpoint();
+        final Checkpoint checkpoint = new Checkpoint(this, iteration);
+        final Path path = Paths.get(checkpointPath);
+        pendingCheckpoint = checkpointWriter.submit(() -> {
+            checkpoint.write(path);
+            return null;
+        });
+        if (deterministic)
+            awaitCheckpoint();
+    }
+
+    private void awaitCheckpoint() throws InterruptedException, ExecutionException {
+        if (pendingCheckpoint != null) {
+            pendingCheckpoint.get();
+            pendingCheckpoint = null;
+        }
+    }
+
+    /**
+     * @param trainingMode hogwild or dsgd
+     * @return whether the training mode is block based
+     * @throws IllegalArgumentException if the training mode is unknown
+     */
+    private static boolean blocked(String trainingMode) throws IllegalArgumentException {
+        switch (trainingMode.toLowerCase().trim()) {
+            case "hogwild":
+                return false;
+            case "dsgd":
+                return true;
+        }
+        throw new IllegalArgumentException("Invalid training mode parameter: " + trainingMode);
+    }
+
+    /**
+     * @param trainOrder file or item
+     * @return whether data points are grouped by item
+     * @throws IllegalArgumentException if the train order is unknown
+     */
+    private static boolean itemOrder(String trainOrder) throws IllegalArgumentException {
+        switch (trainOrder.toLowerCase().trim()) {
+            case "file":
+                return false;
+            case "item":
+                return true;
+        }
+        throw new IllegalArgumentException("Invalid train order parameter: " + trainOrder);
+    }
+
+    /**
+     * Each worker trains on a contiguous part of the train set. All workers update the shared vectors without locking.
+     * Partition i is always trained by worker i with its own random stream. An item grouped train set is shuffled
+     * before every iteration. If readers &gt; 0 the workers instead train on the batches of a {@link BatchPipeline}
+     * which reads the train set on dedicated threads, each worker keeps its random stream.
+     */
+    private void trainHogwild(TrainingExecutor executor, DatasetInterface trainset, SparseVector[] optionalFeatures, int firstIteration, int readers) throws InterruptedException, ExecutionException {
+        final int partitions = executor.threads();
+        for (int iteration = firstIteration; iteration <= iterations; ++iteration) {
+            logger.info(String.format("Iteration %d start...", iteration));
+            if (trainset instanceof ItemGroupedDataset)
+                ((ItemGroupedDataset) trainset).shuffle(RandomStreams.create(seed, ORDER_STREAM, iteration));
+            final int currentIteration = iteration;
+            final BatchPipeline pipeline = readers > 0 ? new BatchPipeline(trainset, readers, readAhead) : null;
+            try {
+                executor.run(partition -> trainPartition(pipeline != null ? pipeline.cursor() : trainset.cursor(partition, partitions),
+                        optionalFeatures, sampler, RandomStreams.create(seed, TRAIN_STREAM, currentIteration, partition)))
+                        .stream().reduce((a, b) -> a.add(b)).ifPresent(iterationLoss ->
+                        logger.info("train loss: " + iterationLoss));
+            } finally {
+                if (pipeline != null)
+                    pipeline.close();
+            }
+            if (pipeline != null)
+                logger.info(pipeline);
+            iterationFinished(iteration);
+        }
+    }
 
-        for (int iteration = 1; iteration <= iterations; ++iteration) {
+    /**
+     * Distributed stochastic gradient descent: the train set is split into blocks x blocks parts (see
+     * {@link BlockedDataset}). Each iteration runs through all strata one after the other. The parts of a stratum are
+     * trained in parallel and never update the same context or item vector. Negative samples are drawn from the
+     * block which is owned by the worker. Vectors of additional features are shared by all blocks and still updated
+     * lock free.
+     * The train order and the random streams only depend on the number of blocks and the seed but not on the number
+     * of threads or the scheduling.
+     */
+    private void trainBlocked(TrainingExecutor executor, DatasetInterface trainset, SparseVector[] optionalFeatures, int firstIteration) throws InterruptedException, ExecutionException {
+        final int numBlocks = blocks > 0 ? blocks : executor.threads();
+        final BlockedDataset blockedDataset = new BlockedDataset(trainset, numBlocks);
+        final SamplerInterface[] blockSamplers = initBlockSamplers(numBlocks);
+        final Random[] randoms = new Random[numBlocks];
+
+        // rows of additional features are shared by all blocks: in deterministic mode the parts are trained one by one
+        final int parallelism = deterministic && Arrays.stream(optionalFeatures).anyMatch(Objects::nonNull) ? 1 : numBlocks;
+        if (parallelism < numBlocks)
+            logger.warn("additional features are updated by all blocks, deterministic training uses a single thread");
+
+        for (int iteration = firstIteration; iteration <= iterations; ++iteration) {
             logger.info(String.format("Iteration %d start...", iteration));
-            trainset.parallelStream().map(dataPoint -> {
-                LossAverager lossAverager = new LossAverager(bins);
+            // context block b is trained by one task at a time, hence its random stream is never shared
+            for (int block = 0; block < numBlocks; ++block)
+                randoms[block] = RandomStreams.create(seed, BLOCK_STREAM, iteration, block);
+            LossAverager iterationLoss = new LossAverager(bins);
+            for (int stratum = 0; stratum < numBlocks; ++stratum) {
+                final int currentStratum = stratum;
+                for (LossAverager loss : executor.run(parallelism, task -> {
+                    LossAverager taskLoss = new LossAverager(bins);
+                    for (int contextBlock = task; contextBlock < numBlocks; contextBlock += parallelism) {
+                        final int itemBlock = blockedDataset.itemBlock(currentStratum, contextBlock);
+                        final SamplerInterface blockSampler = blockSamplers[negativeBlock(contextBlock, itemBlock)];
+                        taskLoss.add(trainPartition(blockedDataset.part(contextBlock, itemBlock).cursor(), optionalFeatures, blockSampler, randoms[contextBlock]));
+                    }
+                    return taskLoss;
+                }))
+                    iterationLoss = iterationLoss.add(loss);
+            }
+            logger.info("train loss: " + iterationLoss);
+            iterationFinished(iteration);
+        }
+    }
+
+    /**
+     * Initializes one negative sampler per block for dsgd training. Negative contexts are sampled from the context
+     * distribution restricted to a block.
+     * @param blocks number of blocks
+     * @return sampler of each block
+     */
+    protected SamplerInterface[] initBlockSamplers(int blocks) {
+        if (negatives > 0)
+            return blockSamplers(contextCount, blocks);
+        return new SamplerInterface[blocks];
+    }
+
+    /**
+     * @param contextBlock context block of a part
+     * @param itemBlock item block of a part
+     * @return the block negative samples are drawn from while training the given part
+     */
+    protected int negativeBlock(int contextBlock, int itemBlock) {
+        return contextBlock;
+    }
+
+    /**
+     * @param counts occurrences of all ids
+     * @param blocks number of blocks
+     * @return a sampler for the ids of each block
+     */
+    protected SamplerInterface[] blockSamplers(int[] counts, int blocks) {
+        final SamplerInterface[] blockSamplers = new SamplerInterface[blocks];
+        for (int block = 0; block < blocks; ++block)
+            blockSamplers[block] = new BlockSampler(samplerType, counts, alpha, Math.max(1, tableSize / blocks), blocks, block);
+        return blockSamplers;
+    }
+
+    /**
+     * @return a shallow copy which shares all hyper parameters and data structures
+     */
+    Factorization copy() {
+        try {
+            final Factorization copy = (Factorization) clone();
+            // the feature cache is keyed by the ids of this model
+            copy.featureSums = null;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * @return number of negative samples drawn per data point by {@link #trainPartition}
+     */
+    protected int negativeSamples() {
+        return negatives;
+    }
+
+    /**
+     * Initializes negative sampling from the context distribution.
+     */
+    protected void initSampling() {
+        if (negatives > 0)
+            sampler = SamplerFactory.get(samplerType, contextCount, alpha, tableSize);
+    }
+
+    /**
+     * Runs one pass of training over a part of the train set. Each partition is handled by a single worker thread.
+     * @param dataPoints cursor over the data points of the partition
+     * @param optionalFeatures optional features of the train set
+     * @param negativeSampler sampler used to draw negative samples
+     * @param random random stream of the worker
+     * @return Binned train losses of this partition
+     */
+    protected LossAverager trainPartition(BatchCursor dataPoints, SparseVector[] optionalFeatures, SamplerInterface negativeSampler, Random random) {
+        LossAverager lossAverager = new LossAverager(bins);
+        final DataBatch batch = new DataBatch();
+        // a single data point and input vector are reused for all data points of the partition and their negative samples
+        final DataPoint dataPoint = new DataPoint();
+        final SparseVector input = workspace().input;
+        while (dataPoints.next(batch)) {
+            for (int n = 0; n < batch.size; ++n) {
+                dataPoint.contextId = batch.contextIds[n];
+                dataPoint.itemId = batch.itemIds[n];
+                dataPoint.rating = batch.ratings[n];
                 final int itemOccurrence = itemCount[dataPoint.itemId];
 
                 // positive data points
@@ -127,15 +523,16 @@ public class Factorization {
                     measured = (float) Math.log(1.0 + dataPoint.rating);
                     weight = weight(dataPoint.rating);
                 }
-                SparseVector sparseVector = dataPoint.toSparseVector(optionalFeatures[dataPoint.itemId]);
-                float loss = trainStep(sparseVector, measured, weight);
+                final SparseVector sparseVector = dataPoint.toSparseVector(optionalFeatures[dataPoint.itemId], input);
+                float loss = trainDataPoint(sparseVector, measured, weight);
                 lossAverager.add(loss, itemOccurrence);
 
                 // negative sampling
+                final int positiveContext = dataPoint.contextId;
                 int numSamples = negatives;
                 for (int i = 0; i < negatives; i++) {
-                    int negativeContext = sample();
-                    if (dataPoint.contextId == negativeContext) {
+                    int negativeContext = negativeSampler.sample(random);
+                    if (positiveContext == negativeContext) {
                         --numSamples;
                         continue;
                     }
@@ -146,66 +543,152 @@ public class Factorization {
                         measured = 0.0f; // log(1.0 + 0)
                         weight = weight(1.0f);
                     }
-                    sparseVector = dataPoint.toSparseVector(optionalFeatures[dataPoint.itemId]);
-                    loss = trainStep(sparseVector, measured, weight);
+                    // only the context changes, the features of the item stay in place
+                    sparseVector.set(0, negativeContext, 1.0f);
+                    loss = trainDataPoint(sparseVector, measured, weight);
                     lossAverager.add(loss, itemOccurrence);
                 }
-
-                return lossAverager;
-            }).reduce((a, b) -> a.add(b)).ifPresent(iterationLoss ->
-                    logger.info("train loss: " + iterationLoss));
+            }
         }
+        return lossAverager;
     }
 
     public float trainStep(SparseVector sparseVector, float measured, float weight) {
-        final float predicted = predict(sparseVector);
+        // the sum of vectors computed by predict is reused by the gradient step
+        final float[] vectorSum = workspace().vectorSum;
+        return trainStep(sparseVector, vectorSum, predict(sparseVector, vectorSum), measured, weight);
+    }
+
+    /**
+     * Like {@link #trainStep(SparseVector, float, float)} for a vector created by
+     * {@link DataPoint#toSparseVector(SparseVector)}, uses the feature cache if enabled.
+     */
+    private float trainDataPoint(SparseVector sparseVector, float measured, float weight) {
+        final float[] vectorSum = workspace().vectorSum;
+        return trainStep(sparseVector, vectorSum, predictDataPoint(sparseVector, vectorSum), measured, weight);
+    }
+
+    private float trainStep(SparseVector sparseVector, float[] vectorSum, float predicted, float measured, float weight) {
         final float error = weight * lossFunction.gDeriv(predicted, measured);
+        gradientStep(sparseVector, vectorSum, error);
 
-        // pre compute sum of vectors to speed up computation
-        final FloatMatrix vectorSum = FloatMatrix.zeros(latentVectors[0].length);
-        for (SparseVector.SparseEntry entry : sparseVector)
-            vectorSum.addi(latentVectors[entry.key].mul(entry.value));
+        // note that reported loss does not contain regularization term
+        return weight * lossFunction.g(predicted, measured);
+    }
 
+    /**
+     * Applies a single AdaGrad update to all rows referenced by a sparse vector.
+     * @param sparseVector input vector
+     * @param vectorSum weighted sum of all rows of the input as computed by {@link #predict(SparseVector, float[])}
+     * @param error derivative of the loss with respect to the prediction
+     */
+    protected void gradientStep(SparseVector sparseVector, float[] vectorSum, float error) {
         // gradient updates
-        for (SparseVector.SparseEntry entryA : sparseVector) {
-            int key = entryA.key;
-            float value = entryA.value;
-            FloatMatrix vector = latentVectors[key];
+        final float[] gradient = workspace().gradient;
+        for (int i = 0; i < sparseVector.size(); ++i) {
+            final int key = sparseVector.keys[i];
+            final float value = sparseVector.values[i];
+            final float[] chunk = parameters.chunk(key);
+            final int offset = parameters.offset(key);
 
             // quadratic term
-            final FloatMatrix gradientA = vectorSum.mul(value).subi(vector.mul(value * value));
-            gradientA.muli(error).addi(vector.mul(lambda2));
-            float individualLearnRate = updateLearnRate(key, gradientA);
-            vector.subi(gradientA.muli(learnRate * individualLearnRate));
+            final float squaredSum = kernel.gradient(error, value, lambda2, vectorSum, chunk, offset, gradient, dimensions);
+            final float individualLearnRate = updateLearnRate(key, squaredSum / dimensions);
+            final float stepSize = learnRate * individualLearnRate;
+            kernel.scaledSubtract(stepSize, gradient, 0, chunk, offset, dimensions);
 
             // linear term
-            float current = biases.get(key);
-            float linearGradient = value * error + lambda1 * current;
-            biases.put(key, current - learnRate * individualLearnRate * linearGradient);
+            final int biasIndex = offset + dimensions;
+            final float current = chunk[biasIndex];
+            final float linearGradient = value * error + lambda1 * current;
+            chunk[biasIndex] = current - stepSize * linearGradient;
         }
-
-        // note that reported loss does not contain regularization term
-        return weight * lossFunction.g(predicted, measured);
     }
 
     public float predict(SparseVector sparseVector) {
+        return predict(sparseVector, workspace().vectorSum);
+    }
+
+    /**
+     * Linear time prediction using the identity
+     * sum_i sum_j&gt;i v_i v_j &lt;w_i, w_j&gt; = 0.5 * (|sum_i v_i w_i|^2 - sum_i v_i^2 |w_i|^2)
+     * which needs O(k * d) instead of O(k^2 * d) operations for k entries.
+     * @param sparseVector input vector
+     * @param vectorSum output, weighted sum of all rows of the input
+     * @return the prediction
+     */
+    protected float predict(SparseVector sparseVector, float[] vectorSum) {
+        float linear = 0.0f;
+        float squaredNorms = 0.0f;
+        Arrays.fill(vectorSum, 0.0f);
+        for (int i = 0; i < sparseVector.size(); ++i) {
+            final int key = sparseVector.keys[i];
+            final float value = sparseVector.values[i];
+            final float[] chunk = parameters.chunk(key);
+            final int offset = parameters.offset(key);
+            linear += value * chunk[offset + dimensions];
+            kernel.axpy(value, chunk, offset, vectorSum, 0, dimensions);
+            squaredNorms += value * value * kernel.dot(chunk, offset, chunk, offset, dimensions);
+        }
+        // XXX(od): do not include quadratic features
+        return linear + 0.5f * (kernel.dot(vectorSum, 0, vectorSum, 0, dimensions) - squaredNorms);
+    }
+
+    /**
+     * Prediction of a vector created by {@link DataPoint#toSparseVector(SparseVector)}: context, item and the
+     * features of the item. If the feature cache is enabled the features are not summed up again but taken from the
+     * cache, hence the prediction may be slightly stale.
+     * @param sparseVector input vector
+     * @param vectorSum output, weighted sum of all rows of the input
+     * @return the prediction
+     */
+    protected float predictDataPoint(SparseVector sparseVector, float[] vectorSum) {
+        final FeatureCache cache = featureSums;
+        final int row;
+        if (cache == null || sparseVector.size() <= 2 || (row = cache.row(sparseVector.keys[1])) < 0)
+            return predict(sparseVector, vectorSum);
+
+        cache.refresh(row, sparseVector, parameters, kernel, vectorSum);
+        final float[] cached = cache.chunk(row);
+        final int cachedOffset = cache.offset(row);
+        System.arraycopy(cached, cachedOffset, vectorSum, 0, dimensions);
+        float linear = cached[cachedOffset + dimensions];
+        float squaredNorms = cached[cachedOffset + dimensions + 1];
+        // context and item
+        for (int i = 0; i < 2; ++i) {
+            final int key = sparseVector.keys[i];
+            final float value = sparseVector.values[i];
+            final float[] chunk = parameters.chunk(key);
+            final int offset = parameters.offset(key);
+            linear += value * chunk[offset + dimensions];
+            kernel.axpy(value, chunk, offset, vectorSum, 0, dimensions);
+            squaredNorms += value * value * kernel.dot(chunk, offset, chunk, offset, dimensions);
+        }
+        return linear + 0.5f * (kernel.dot(vectorSum, 0, vectorSum, 0, dimensions) - squaredNorms);
+    }
+
+    /**
+     * Reference implementation of {@link #predict(SparseVector)} which sums up all pairwise interactions.
+     * @param sparseVector input vector
+     * @return the prediction
+     */
+    float predictPairwise(SparseVector sparseVector) {
         float predicted = 0.0f;
         for (int i = 0; i < sparseVector.size(); ++i) {
             // linear term
-            SparseVector.SparseEntry entryA = sparseVector.get(i);
-            int keyA = entryA.key;
-            float valueA = entryA.value;
-            FloatMatrix vectorA = latentVectors[keyA];
-            predicted += valueA * biases.get(keyA);
+            final int keyA = sparseVector.keys[i];
+            final float valueA = sparseVector.values[i];
+            final float[] chunkA = parameters.chunk(keyA);
+            final int offsetA = parameters.offset(keyA);
+            predicted += valueA * chunkA[offsetA + dimensions];
 
             // quadratic term
             // XXX(od): do not include quadratic features
             for (int j = i + 1; j < sparseVector.size(); ++j) {
-                SparseVector.SparseEntry entryB = sparseVector.get(j);
-                int keyB = entryB.key;
-                float valueB = entryB.value;
-                FloatMatrix vectorB = latentVectors[keyB];
-                predicted += valueA * valueB * vectorA.dot(vectorB);
+                final int keyB = sparseVector.keys[j];
+                final float valueB = sparseVector.values[j];
+                final float dot = kernel.dot(chunkA, offsetA, parameters.chunk(keyB), parameters.offset(keyB), dimensions);
+                predicted += valueA * valueB * dot;
             }
         }
         return predicted;
@@ -217,59 +700,72 @@ public class Factorization {
      * @param optionalFeatures optional features of the data set
      * @return Binned losses
      */
-    public LossAverager predict(DatasetInterface dataset, SparseVector[] optionalFeatures) {
-        return dataset.parallelStream().map(dataPoint -> {
-            LossAverager lossAverager = new LossAverager(bins);
-            SparseVector sparseVector = dataPoint.toSparseVector(optionalFeatures[dataPoint.itemId]);
-            float predicted = predict(sparseVector);
-            int itemOccurrence = itemCount[dataPoint.itemId];
-
-            float measured = 1.0f;
-            float weight = dataPoint.rating;
-            if (regression) {
-                measured = (float) Math.log(1.0f + dataPoint.rating);
-                weight = weight(dataPoint.rating);
-            }
+    public LossAverager predict(DatasetInterface dataset, SparseVector[] optionalFeatures) throws InterruptedException, ExecutionException {
+        try (TrainingExecutor executor = new TrainingExecutor(threads, "factorization-predictor", affinity)) {
+            final int partitions = executor.threads();
+            return executor.run(partition -> predictPartition(dataset.cursor(partition, partitions), optionalFeatures,
+                    RandomStreams.create(seed, PREDICT_STREAM, partition)))
+                    .stream().reduce((a, b) -> a.add(b)).get();
+        }
+    }
 
-            float loss = weight * lossFunction.g(predicted, measured);
-            lossAverager.add(loss, itemOccurrence);
+    private LossAverager predictPartition(BatchCursor dataPoints, SparseVector[] optionalFeatures, Random random) {
+        LossAverager lossAverager = new LossAverager(bins);
+        final DataBatch batch = new DataBatch();
+        final DataPoint dataPoint = new DataPoint();
+        final SparseVector input = workspace().input;
+        while (dataPoints.next(batch)) {
+            for (int n = 0; n < batch.size; ++n) {
+                dataPoint.contextId = batch.contextIds[n];
+                dataPoint.itemId = batch.itemIds[n];
+                dataPoint.rating = batch.ratings[n];
+                final SparseVector sparseVector = dataPoint.toSparseVector(optionalFeatures[dataPoint.itemId], input);
+                float predicted = predict(sparseVector);
+                int itemOccurrence = itemCount[dataPoint.itemId];
 
-            // negative samples
-            int numSamples = negatives;
-            for (int i = 0; i < negatives; i++) {
-                int negativeContext = sample();
-                if (dataPoint.contextId == negativeContext) {
-                    --numSamples;
-                    continue;
-                }
-                dataPoint.contextId = negativeContext;
-                measured = -1.0f;
-                weight = dataPoint.rating / numSamples;
+                float measured = 1.0f;
+                float weight = dataPoint.rating;
                 if (regression) {
-                    measured = 0.0f; // log(1.0 + 0)
-                    weight = weight(1.0f);
+                    measured = (float) Math.log(1.0f + dataPoint.rating);
+                    weight = weight(dataPoint.rating);
                 }
-                sparseVector = dataPoint.toSparseVector(optionalFeatures[dataPoint.itemId]);
-                loss = weight * lossFunction.g(predict(sparseVector), measured);
+
+                float loss = weight * lossFunction.g(predicted, measured);
                 lossAverager.add(loss, itemOccurrence);
+
+                // negative samples
+                final int positiveContext = dataPoint.contextId;
+                int numSamples = negatives;
+                for (int i = 0; i < negatives; i++) {
+                    int negativeContext = sampler.sample(random);
+                    if (positiveContext == negativeContext) {
+                        --numSamples;
+                        continue;
+                    }
+                    dataPoint.contextId = negativeContext;
+                    measured = -1.0f;
+                    weight = dataPoint.rating / numSamples;
+                    if (regression) {
+                        measured = 0.0f; // log(1.0 + 0)
+                        weight = weight(1.0f);
+                    }
+                    sparseVector.set(0, negativeContext, 1.0f);
+                    loss = weight * lossFunction.g(predict(sparseVector), measured);
+                    lossAverager.add(loss, itemOccurrence);
+                }
             }
-            return lossAverager;
-        }).reduce((a, b) -> a.add(b)).get();
+        }
+        return lossAverager;
     }
 
     /**
      * Updates sum of gradient length and returns updated learn rate
      * @param id id of item
-     * @param gradient current gradient
+     * @param gradientLength mean squared value of the current gradient
      * @return updated learn rate
      */
-    public float updateLearnRate(int id, FloatMatrix gradient) {
-        gradientLengths[id] += gradientLength(gradient);
-        return learnRate(gradientLengths[id]);
-    }
-
-    public float gradientLength(FloatMatrix gradient) {
-        return gradient.dot(gradient) / (float) gradient.length;
+    public float updateLearnRate(int id, float gradientLength) {
+        return learnRate(parameters.addGradientLength(id, gradientLength));
     }
 
     /**
@@ -294,21 +790,61 @@ public class Factorization {
 
     /**
      * Init context, item and feature latent vectors with a normal distribution and
-     * set biases to 0.
+     * set biases and gradient lengths to 0. Each chunk is filled from its own random stream.
      * @param numFeatures number of additional features
      * @param dimensions number of latent factors
      */
     public void initParameters(int numFeatures, int dimensions) {
         logger.info("initializing parameters...");
-        biases = FloatMatrix.zeros(numFeatures);
-        latentVectors = new FloatMatrix[numFeatures];
-        for (int i = 0; i < numFeatures; ++i)
-            latentVectors[i] = gaussVector(dimensions).divi(dimensions);
+        parameters = new ParameterStore(numFeatures, dimensions);
+        initRows(0);
+    }
+
+    /**
+     * Init latent vectors of all rows starting at a given row with a normal distribution.
+     * @param firstRow first row to initialize
+     */
+    private void initRows(int firstRow) {
+        IntStream.range(0, parameters.numChunks()).parallel().forEach(index -> {
+            final float[] chunk = parameters.chunkAt(index);
+            final Random random = RandomStreams.create(seed, INIT_STREAM, index);
+            final int start = Math.max(0, firstRow - parameters.firstRow(index)) * parameters.stride;
+            for (int offset = start; offset < chunk.length; offset += parameters.stride)
+                for (int d = 0; d < parameters.dimensions; ++d)
+                    chunk[offset + d] = (float) random.nextGaussian() / parameters.dimensions;
+        });
+    }
+
+    /**
+     * Continues from the parameters of a previous model: rows of known ids keep their latent vectors, biases and
+     * gradient lengths, rows of new ids are initialized as usual. New ids must have been appended behind the known
+     * ones (see {@link com.demshape.factorization.dataset.DenseMapper#extendMap}). Occurrences of the train set are
+     * added to the previous counts such that negative sampling follows the whole history.
+     * @param previous state of the previous model
+     * @param numFeatures number of features including new ones
+     * @param dataset the train set, usually only new or recent data
+     * @throws IllegalArgumentException if the previous model does not fit
+     */
+    public void warmStart(Checkpoint previous, int numFeatures, DatasetInterface dataset) throws IllegalArgumentException {
+        if (previous.parameters.dimensions != dimensions || previous.parameters.rows > numFeatures)
+            throw new IllegalArgumentException(String.format("previous model with %d rows and %d dimensions does not match %d features and %d dimensions",
+                    previous.parameters.rows, previous.parameters.dimensions, numFeatures, dimensions));
+        logger.info(String.format("warm start from %d of %d rows...", previous.parameters.rows, numFeatures));
+        parameters = new ParameterStore(numFeatures, dimensions);
+        final ParameterStore old = previous.parameters;
+        IntStream.range(0, old.rows).parallel().forEach(row ->
+                System.arraycopy(old.chunk(row), old.offset(row), parameters.chunk(row), parameters.offset(row), parameters.stride));
+        initRows(old.rows);
+
+        count(numFeatures, dataset);
+        for (int id = 0; id < previous.itemCount.length; ++id) {
+            itemCount[id] = saturatedAdd(itemCount[id], previous.itemCount[id]);
+            contextCount[id] = saturatedAdd(contextCount[id], previous.contextCount[id]);
+        }
     }
 
-    public void initLearnRates(int numFeatures) {
-        logger.info("initializing learn rates...");
-        gradientLengths = new float[numFeatures];
+    private static int saturatedAdd(int a, int b) {
+        return (int) Math.min(Integer.MAX_VALUE, (long) a + b);
     }
 
     /**
@@ -322,55 +858,22 @@ public class Factorization {
         logger.info("counting item occurrence...");
         itemCount = new int[numFeatures];
         contextCount = new int[numFeatures];
-        for (DataPoint dataPoint : dataset) {
-            contextCount[dataPoint.contextId]++;
-            itemCount[dataPoint.itemId]++;
-        }
-    }
-
-    /**
-     * Creates a sampling table for a given distribution.
-     * Example for size = 3 and distribution = 1 to 10, 2 to 20 will result in int[] = {1, 2, 2}
-     * Hence, a uniform sampling over this samplingTable will result in a distribution similar to the given
-     * one.
-     * @param itemCount an array which holds the item occurrences
-     * @param alpha smoothing parameter
-     * @param tableSize sampling table size
-     */
-    public void initSamplingTable(int[] itemCount, double alpha, int tableSize) {
-        logger.info("initializing sampling table...");
-        samplingTable = new int[tableSize];
-        double sum = 0.0;
-        for (int itemId = 0; itemId < itemCount.length; ++itemId)
-            sum += Math.pow(itemCount[itemId], alpha);
-
-        int tableIndex = 0;
-        double cumulative = 0.0;
-        for (int itemId = 0; itemId < itemCount.length; ++itemId) {
-            if (itemCount[itemId] > 0) {
-                cumulative += Math.pow(itemCount[itemId], alpha) / sum;
-                while (cumulative > (tableIndex / (double) tableSize) && tableIndex < tableSize)
-                    samplingTable[tableIndex++] = itemId;
+        final BatchCursor cursor = dataset.cursor();
+        final DataBatch batch = new DataBatch();
+        while (cursor.next(batch)) {
+            for (int n = 0; n < batch.size; ++n) {
+                contextCount[batch.contextIds[n]]++;
+                itemCount[batch.itemIds[n]]++;
             }
         }
     }
 
     /**
-     * Samples a negative item according to samplingTable distribution
+     * Samples a negative item according to the sampler distribution
      * @return id of sampled item
      */
     public int sample() {
-        return samplingTable[ThreadLocalRandom.current().nextInt(tableSize)];
-    }
-
-    /**
-     * Returns a vector initialized with a gaussian distribution
-     * mean = 1, std = 1
-     * @param dimensions number of dimensions
-     * @return Normalized vector
-     */
-    public FloatMatrix gaussVector(int dimensions) {
-        return FloatMatrix.randn(dimensions);
+        return sampler.sample(ThreadLocalRandom.current());
     }
 
     /**
@@ -378,14 +881,14 @@ public class Factorization {
      * @param map mapping from initial to dense ids
      * @return mapping from original id to latent vectors
      */
-    public Map<Integer, FloatMatrix> vectors(Map<Integer, Integer> map) {
+    public Map<Integer, FloatMatrix> vectors(IntIntMap map) {
         Map<Integer, FloatMatrix> vectors = new HashMap<>(hashSize(map.size()), HASH_MAP_LOAD_FACTOR);
         map.forEach((id, mappedId) -> vectors.put(id, vector(mappedId)));
         return vectors;
     }
 
     public FloatMatrix vector(int mappedId) {
-        return latentVectors[mappedId];
+        return parameters.vector(mappedId);
     }
 
     /**
@@ -395,12 +898,13 @@ public class Factorization {
      * @param unmappedFeatures unmapped features
      * @return context / item latent vectors summed up with feature latent vectors
      */
-    public Map<Integer, FloatMatrix> featureVectors(Map<Integer, Integer> map, Map<Integer, Integer> featureMap, Map<Integer, SparseVector> unmappedFeatures) {
+    public Map<Integer, FloatMatrix> featureVectors(IntIntMap map, IntIntMap featureMap, Map<Integer, SparseVector> unmappedFeatures) {
         Map<Integer, FloatMatrix> vectors = new HashMap<>(hashSize(map.size()), HASH_MAP_LOAD_FACTOR);
         map.forEach((id, mappedId) -> {
-            FloatMatrix summedVector = vector(mappedId).dup();
-            unmappedFeatures.getOrDefault(id, new SparseVector(0)).forEach((unmappedFeature) ->
-                    summedVector.addi(vector(featureMap.get(unmappedFeature.key)).mul(unmappedFeature.value)));
+            FloatMatrix summedVector = vector(mappedId);
+            SparseVector sparseVector = unmappedFeatures.get(id);
+            if (sparseVector != null)
+                addFeatureRows(summedVector.data, featureMap, sparseVector);
             vectors.put(id, summedVector);
         });
         return vectors;
@@ -412,15 +916,66 @@ public class Factorization {
      * @param unmappedFeatures unmapped features
      * @return embeddings of additional features
      */
-    public Map<Integer, FloatMatrix> featureVectors(Map<Integer, Integer> featureMap, Map<Integer, SparseVector> unmappedFeatures) {
+    public Map<Integer, FloatMatrix> featureVectors(IntIntMap featureMap, Map<Integer, SparseVector> unmappedFeatures) {
         Map<Integer, FloatMatrix> vectors = new HashMap<>(hashSize(unmappedFeatures.size()), HASH_MAP_LOAD_FACTOR);
         unmappedFeatures.forEach((id, sparseVector) -> {
             FloatMatrix summedVector = FloatMatrix.zeros(dimensions);
-            sparseVector.forEach((unmappedFeature) ->
-                    summedVector.addi(vector(featureMap.get(unmappedFeature.key)).mul(unmappedFeature.value)));
+            addFeatureRows(summedVector.data, featureMap, sparseVector);
             vectors.put(id, summedVector);
         });
         return vectors;
     }
 
+    /**
+     * Adds the weighted latent vectors of unmapped features to a target vector
+     * @param target vector to add to
+     * @param featureMap mapping from original to dense feature ids
+     * @param unmappedFeatures features with original ids
+     */
+    private void addFeatureRows(float[] target, IntIntMap featureMap, SparseVector unmappedFeatures) {
+        for (int i = 0; i < unmappedFeatures.size(); ++i)
+            addRow(target, featureMap.get(unmappedFeatures.keyAt(i)), unmappedFeatures.valueAt(i));
+    }
+
+    /**
+     * Adds a scaled latent vector of the parameter store to a target vector
+     * @param target vector to add to
+     * @param mappedId row of the latent vector
+     * @param scale scaling factor
+     */
+    private void addRow(float[] target, int mappedId, float scale) {
+        kernel.axpy(scale, parameters.chunk(mappedId), parameters.offset(mappedId), target, 0, dimensions);
+    }
+
+    /**
+     * @return the scratch buffers of the current thread
+     */
+    protected Workspace workspace() {
+        Workspace workspace = workspaces.get();
+        if (workspace == null || workspace.vectorSum.length != dimensions) {
+            workspace = new Workspace(dimensions);
+            workspaces.set(workspace);
+        }
+        return workspace;
+    }
+
+    /**
+     * Scratch buffers which are reused across training steps of a single thread such that a step does not need to
+     * allocate any memory.
+     */
+    protected static class Workspace {
+        final float[] vectorSum;
+        final float[] negativeVectorSum;
+        final float[] gradient;
+        // input vectors of a data point and its negative sample, see DataPoint#toSparseVector(SparseVector, SparseVector)
+        final SparseVector input = new SparseVector(2);
+        final SparseVector negativeInput = new SparseVector(2);
+
+        Workspace(int dimensions) {
+            vectorSum = new float[dimensions];
+            negativeVectorSum = new float[dimensions];
+            gradient = new float[dimensions];
+        }
+    }
+
 }
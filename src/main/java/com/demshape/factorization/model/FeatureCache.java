@@ -0,0 +1,94 @@
+package com.demshape.factorization.model;
+
+import com.demshape.factorization.datastructure.ParameterStore;
+import com.demshape.factorization.datastructure.SparseVector;
+import com.demshape.factorization.kernel.VectorKernelInterface;
+
+import java.util.Arrays;
+
+/**
+ * Caches the weighted sum of the feature vectors of each item which has additional features, together with the
+ * summed biases and squared lengths needed for a prediction:
+ * <pre>
+ * | sum_f v_f w_f | sum_f v_f b_f | sum_f v_f^2 |w_f|^2 |
+ * </pre>
+ * The feature vectors change with every training step, hence an entry is recomputed after it was used a fixed number
+ * of times. Concurrent readers and writers are not synchronized, like the hogwild updates of the parameters.
+ */
+class FeatureCache {
+
+    /**
+     * row of the cached sums of item 2i, -1 if the item has no features
+     */
+    private final int[] rows;
+    private final ParameterStore sums;
+    private final int[] remaining;
+    private final int refreshInterval;
+
+    /**
+     * @param optionalFeatures features of all items
+     * @param dimensions number of latent dimensions
+     * @param refreshInterval number of times an entry is used before it is recomputed
+     */
+    FeatureCache(SparseVector[] optionalFeatures, int dimensions, int refreshInterval) {
+        this.refreshInterval = refreshInterval;
+        rows = new int[(optionalFeatures.length + 1) / 2];
+        Arrays.fill(rows, -1);
+        int numRows = 0;
+        for (int item = 0; item < rows.length; ++item)
+            if (optionalFeatures[2 * item] != null)
+                rows[item] = numRows++;
+        sums = new ParameterStore(numRows, dimensions);
+        remaining = new int[numRows];
+    }
+
+    /**
+     * @param itemId id of an item
+     * @return row of the cached sums of the item, -1 if the item has no features
+     */
+    int row(int itemId) {
+        return rows[itemId >>> 1];
+    }
+
+    float[] chunk(int row) {
+        return sums.chunk(row);
+    }
+
+    int offset(int row) {
+        return sums.offset(row);
+    }
+
+    /**
+     * Recomputes the sums of a row if it was used refreshInterval times since the last refresh.
+     * @param row row of the cached sums
+     * @param sparseVector data point vector whose entries from index 2 on are the features of the item
+     * @param parameters model parameters
+     * @param kernel vector operations
+     * @param scratch buffer of at least dimensions floats
+     */
+    void refresh(int row, SparseVector sparseVector, ParameterStore parameters, VectorKernelInterface kernel, float[] scratch) {
+        if (remaining[row]-- > 0)
+            return;
+        remaining[row] = refreshInterval - 1;
+        final int dimensions = sums.dimensions;
+        // sum up in a private buffer such that readers never see a partial sum
+        float linear = 0.0f;
+        float squaredNorms = 0.0f;
+        Arrays.fill(scratch, 0, dimensions, 0.0f);
+        for (int i = 2; i < sparseVector.size(); ++i) {
+            final int key = sparseVector.keys[i];
+            final float value = sparseVector.values[i];
+            final float[] chunk = parameters.chunk(key);
+            final int offset = parameters.offset(key);
+            linear += value * chunk[offset + dimensions];
+            kernel.axpy(value, chunk, offset, scratch, 0, dimensions);
+            squaredNorms += value * value * kernel.dot(chunk, offset, chunk, offset, dimensions);
+        }
+        final float[] cached = sums.chunk(row);
+        final int offset = sums.offset(row);
+        System.arraycopy(scratch, 0, cached, offset, dimensions);
+        cached[offset + dimensions] = linear;
+        cached[offset + dimensions + 1] = squaredNorms;
+    }
+
+}
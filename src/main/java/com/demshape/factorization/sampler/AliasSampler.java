@@ -0,0 +1,106 @@
+package com.demshape.factorization.sampler;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Samples with Vose's alias method: each id with a non zero count owns a bucket which is split between the id itself
+ * and one alias id. Sampling picks a bucket uniformly and then either the id or its alias.
+ * Memory is linear in the number of ids, sampling takes constant time and the probabilities are exact up to float
+ * precision.
+ */
+public class AliasSampler implements SamplerInterface {
+
+    private static final Logger logger = LogManager.getLogger(AliasSampler.class);
+
+    /**
+     * id owning each bucket
+     */
+    final int[] ids;
+
+    /**
+     * alias id of each bucket
+     */
+    final int[] aliases;
+
+    /**
+     * probability to keep the owning id of a bucket
+     */
+    final float[] probabilities;
+
+    /**
+     * An empty distribution is accepted, e.g. for a dsgd block without contexts which is never sampled from, but
+     * {@link #sample(Random)} fails on it.
+     * @param itemCount an array which holds the item occurrences
+     * @param alpha smoothing parameter, each id is sampled proportionally to count^alpha
+     */
+    public AliasSampler(int[] itemCount, double alpha) {
+        logger.info("initializing alias sampler...");
+        ids = IntStream.range(0, itemCount.length).parallel().filter(id -> itemCount[id] > 0).toArray();
+        final int n = ids.length;
+        aliases = new int[n];
+        probabilities = new float[n];
+        if (n == 0)
+            return;
+
+        // weights are computed in parallel, the sum is sequential such that the result does not depend on the splits
+        final double[] scaled = new double[n];
+        IntStream.range(0, n).parallel().forEach(bucket -> scaled[bucket] = Math.pow(itemCount[ids[bucket]], alpha));
+        double sum = 0.0;
+        for (double weight : scaled)
+            sum += weight;
+        final double factor = n / sum;
+        IntStream.range(0, n).parallel().forEach(bucket -> scaled[bucket] *= factor);
+
+        // pair buckets below the average weight with buckets above
+        final int[] small = new int[n];
+        final int[] large = new int[n];
+        int numSmall = 0;
+        int numLarge = 0;
+        for (int bucket = 0; bucket < n; ++bucket) {
+            if (scaled[bucket] < 1.0)
+                small[numSmall++] = bucket;
+            else
+                large[numLarge++] = bucket;
+        }
+        while (numSmall > 0 && numLarge > 0) {
+            final int less = small[--numSmall];
+            final int more = large[--numLarge];
+            probabilities[less] = (float) scaled[less];
+            aliases[less] = ids[more];
+            scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+            if (scaled[more] < 1.0)
+                small[numSmall++] = more;
+            else
+                large[numLarge++] = more;
+        }
+        // remaining buckets are full up to rounding errors
+        while (numLarge > 0) {
+            final int bucket = large[--numLarge];
+            probabilities[bucket] = 1.0f;
+            aliases[bucket] = ids[bucket];
+        }
+        while (numSmall > 0) {
+            final int bucket = small[--numSmall];
+            probabilities[bucket] = 1.0f;
+            aliases[bucket] = ids[bucket];
+        }
+    }
+
+    /**
+     * @throws IllegalStateException if no id has a count &gt; 0
+     */
+    @Override
+    public int sample(Random random) throws IllegalStateException {
+        if (ids.length == 0)
+            throw new IllegalStateException("no id with a count > 0 to sample from");
+        // a single draw selects the bucket (integer part) and decides between id and alias (fractional part)
+        final double u = random.nextDouble() * ids.length;
+        final int bucket = (int) u;
+        return (u - bucket) < probabilities[bucket] ? ids[bucket] : aliases[bucket];
+    }
+
+}
@@ -0,0 +1,59 @@
+package com.demshape.factorization.sampler;
+
+import com.demshape.factorization.dataset.BlockedDataset;
+
+import java.util.Random;
+
+/**
+ * Restricts a distribution to the ids of a single block (see {@link BlockedDataset#block(int, int)}). Only ids of this
+ * block are sampled, with probabilities relative to each other as in the full distribution.
+ * The underlying sampler works on local ids: local id j refers to id 2 * ((j / 2) * blocks + block) + j % 2.
+ */
+public class BlockSampler implements SamplerInterface {
+
+    private final SamplerInterface sampler;
+    private final int blocks;
+    private final int block;
+
+    /**
+     * @param name      sampler name, see {@link SamplerFactory}
+     * @param itemCount an array which holds the item occurrences of all ids
+     * @param alpha     smoothing parameter
+     * @param tableSize table size, only used by the table sampler
+     * @param blocks    number of blocks
+     * @param block     the block to sample from
+     */
+    public BlockSampler(String name, int[] itemCount, double alpha, int tableSize, int blocks, int block) {
+        this.blocks = blocks;
+        this.block = block;
+        this.sampler = SamplerFactory.get(name, localCounts(itemCount, blocks, block), alpha, tableSize);
+    }
+
+    /**
+     * @param itemCount occurrences of all ids
+     * @param blocks    number of blocks
+     * @param block     block index
+     * @return occurrences of the ids of one block indexed by local id
+     */
+    static int[] localCounts(int[] itemCount, int blocks, int block) {
+        final int pairs = (itemCount.length + 1) / 2;
+        final int localPairs = pairs > block ? (pairs - block + blocks - 1) / blocks : 0;
+        final int[] counts = new int[2 * localPairs];
+        for (int local = 0; local < counts.length; ++local) {
+            final int id = globalId(local, blocks, block);
+            if (id < itemCount.length)
+                counts[local] = itemCount[id];
+        }
+        return counts;
+    }
+
+    static int globalId(int local, int blocks, int block) {
+        return 2 * ((local >>> 1) * blocks + block) + (local & 1);
+    }
+
+    @Override
+    public int sample(Random random) {
+        return globalId(sampler.sample(random), blocks, block);
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.demshape.factorization.sampler;
+
+/**
+ * Factory to create a negative sampler based on a string value.
+ */
+public class SamplerFactory {
+
+    /**
+     * @param name      sampler name: alias or table
+     * @param itemCount an array which holds the item occurrences
+     * @param alpha     smoothing parameter
+     * @param tableSize table size, only used by the table sampler
+     * @return a sampler for the smoothed item distribution
+     * @throws IllegalArgumentException if the name is unknown
+     */
+    public static SamplerInterface get(String name, int[] itemCount, double alpha, int tableSize) throws IllegalArgumentException {
+        switch (name.toLowerCase().trim()) {
+            case "alias":
+                return new AliasSampler(itemCount, alpha);
+            case "table":
+                return new TableSampler(itemCount, alpha, tableSize);
+        }
+        throw new IllegalArgumentException("Invalid sampler parameter: " + name);
+    }
+}
@@ -0,0 +1,16 @@
+package com.demshape.factorization.sampler;
+
+import java.util.Random;
+
+/**
+ * Draws ids according to a fixed distribution. Used for negative sampling.
+ */
+public interface SamplerInterface {
+
+    /**
+     * @param random source of randomness
+     * @return a sampled id
+     */
+    int sample(Random random);
+
+}
@@ -0,0 +1,60 @@
+package com.demshape.factorization.sampler;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Random;
+
+/**
+ * Samples uniformly from a large table in which each id occurs proportionally to its probability. The precision is
+ * limited by the size of the table.
+ */
+public class TableSampler implements SamplerInterface {
+
+    private static final Logger logger = LogManager.getLogger(TableSampler.class);
+
+    /**
+     * The sampling table
+     */
+    public final int[] samplingTable;
+
+    /**
+     * @param samplingTable a pre computed sampling table
+     */
+    public TableSampler(int[] samplingTable) {
+        this.samplingTable = samplingTable;
+    }
+
+    /**
+     * Creates a sampling table for a given distribution.
+     * Example for size = 3 and distribution = 1 to 10, 2 to 20 will result in int[] = {1, 2, 2}
+     * Hence, a uniform sampling over this samplingTable will result in a distribution similar to the given
+     * one.
+     * @param itemCount an array which holds the item occurrences
+     * @param alpha smoothing parameter
+     * @param tableSize sampling table size
+     */
+    public TableSampler(int[] itemCount, double alpha, int tableSize) {
+        logger.info("initializing sampling table...");
+        samplingTable = new int[tableSize];
+        double sum = 0.0;
+        for (int itemId = 0; itemId < itemCount.length; ++itemId)
+            sum += Math.pow(itemCount[itemId], alpha);
+
+        int tableIndex = 0;
+        double cumulative = 0.0;
+        for (int itemId = 0; itemId < itemCount.length; ++itemId) {
+            if (itemCount[itemId] > 0) {
+                cumulative += Math.pow(itemCount[itemId], alpha) / sum;
+                while (cumulative > (tableIndex / (double) tableSize) && tableIndex < tableSize)
+                    samplingTable[tableIndex++] = itemId;
+            }
+        }
+    }
+
+    @Override
+    public int sample(Random random) {
+        return samplingTable[random.nextInt(samplingTable.length)];
+    }
+
+}
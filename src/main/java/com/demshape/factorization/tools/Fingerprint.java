@@ -0,0 +1,72 @@
+package com.demshape.factorization.tools;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Cheap fingerprint of a file which changes whenever the file is changed: its size, its modification time and a hash
+ * of a few blocks spread evenly over the file (always including the first and the last block). Reading only samples
+ * keeps the cost independent of the file size, a file rewritten with the same size and time stamp and only changed
+ * between the samples is not detected.
+ */
+public class Fingerprint {
+
+    private static final int BLOCKS = 64;
+    private static final int BLOCK_SIZE = 4096;
+
+    /**
+     * @param path a file
+     * @return fingerprint of the file
+     * @throws IOException if the file can not be read
+     */
+    public static long of(Path path) throws IOException {
+        final long size = Files.size(path);
+        final MessageDigest digest = sha256();
+        final ByteBuffer header = ByteBuffer.allocate(2 * Long.BYTES);
+        header.putLong(size).putLong(Files.getLastModifiedTime(path).toMillis());
+        digest.update(header.array());
+        final ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            final long samples = Math.min(blocks, BLOCKS);
+            for (long sample = 0; sample < samples; ++sample) {
+                final long index = samples == 1 ? 0 : sample * (blocks - 1) / (samples - 1);
+                block.clear();
+                long position = index * BLOCK_SIZE;
+                while (block.hasRemaining()) {
+                    final int read = channel.read(block, position);
+                    if (read < 0)
+                        break;
+                    position += read;
+                }
+                digest.update(block.array(), 0, block.position());
+            }
+        }
+        return ByteBuffer.wrap(digest.digest()).getLong();
+    }
+
+    /**
+     * Combines several fingerprints (or other values), the result depends on their order.
+     * @param values fingerprints
+     * @return combined fingerprint
+     */
+    public static long combine(long... values) {
+        return RandomStreams.derive(values.length, values);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // every java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
@@ -47,9 +47,78 @@ public class Options {
     @Option(name = "-mincount", usage = "min number of co-occurrences used for weighting in regression", metaVar = "<int>")
     public int minCount = 100;
 
-    @Option(name = "-threads", usage = "number of threads", metaVar = "<int>")
+    @Option(name = "-threads", usage = "number of threads (all processors if 0)", metaVar = "<int>")
     public int threads;
 
+    @Option(name = "-affinity", handler = ExplicitBooleanOptionHandler.class, usage = "pin each training thread to a cpu (linux only)", metaVar = "<bool>")
+    public boolean affinity = false;
+
+    @Option(name = "-checkpointinterval", usage = "write a binary checkpoint to <output>checkpoint.bin every n iterations (never if 0)", metaVar = "<int>")
+    public int checkpointInterval;
+
+    @Option(name = "-resume", handler = ExplicitBooleanOptionHandler.class, usage = "resume training from <output>checkpoint.bin if it exists", metaVar = "<bool>")
+    public boolean resume = false;
+
+    @Option(name = "-warmstart", usage = "output path of a previous run: keep its vectors and mapping, initialize only new ids and continue on the train set", metaVar = "<String>")
+    public String warmStart;
+
+    @Option(name = "-servers", usage = "comma separated host:port list of all parameter servers ordered by shard, enables distributed training", metaVar = "<String>")
+    public String servers;
+
+    @Option(name = "-worker", usage = "index of this worker in distributed training", metaVar = "<int>")
+    public int worker = 0;
+
+    @Option(name = "-workers", usage = "total number of workers in distributed training", metaVar = "<int>")
+    public int workers = 1;
+
+    @Option(name = "-batchsize", usage = "number of data points per pull and push in distributed training", metaVar = "<int>")
+    public int batchSize = 10_000;
+
+    @Option(name = "-port", usage = "port of a parameter server", metaVar = "<int>")
+    public int port = 7070;
+
+    @Option(name = "-shard", usage = "shard index of a parameter server", metaVar = "<int>")
+    public int shard = 0;
+
+    @Option(name = "-shards", usage = "total number of parameter servers", metaVar = "<int>")
+    public int shards = 1;
+
+    @Option(name = "-seed", usage = "master seed for all random numbers used in training (random if not set)", metaVar = "<long>")
+    public Long seed;
+
+    @Option(name = "-deterministic", handler = ExplicitBooleanOptionHandler.class, usage = "reproducible training: identical results for the same seed and number of threads", metaVar = "<bool>")
+    public boolean deterministic = false;
+
+    @Option(name = "-trainingmode", usage = "parallel training, hogwild:lock free updates of shared vectors, dsgd:conflict free blocks of contexts and items", metaVar = "<String>")
+    public String trainingMode = "hogwild";
+
+    @Option(name = "-blocks", usage = "number of context and item blocks in dsgd training mode (number of threads if 0)", metaVar = "<int>")
+    public int blocks;
+
+    @Option(name = "-featurecache", usage = "number of training steps which reuse the cached sum of the feature vectors of an item before it is recomputed (0 disables the cache)", metaVar = "<int>")
+    public int featureCache;
+
+    @Option(name = "-frequencyorder", handler = ExplicitBooleanOptionHandler.class, usage = "assign dense ids in descending order of occurrence such that the rows of popular ids are close in memory", metaVar = "<bool>")
+    public boolean frequencyOrder = false;
+
+    @Option(name = "-mappingcache", handler = ExplicitBooleanOptionHandler.class, usage = "store the dense mapping next to the mapped train set and reuse both on later runs with unchanged input, the input is compared by a sampled fingerprint", metaVar = "<bool>")
+    public boolean mappingCache = false;
+
+    @Option(name = "-readers", usage = "number of threads which read the train set ahead of hogwild training (0 reads on the training threads)", metaVar = "<int>")
+    public int readers;
+
+    @Option(name = "-readahead", usage = "number of batches of 1024 data points the readers may read ahead of training", metaVar = "<int>")
+    public int readAhead = 64;
+
+    @Option(name = "-trainorder", usage = "order of the data points in hogwild training: file:order of the train set, item:all data points of an item in a row, random order of items", metaVar = "<String>")
+    public String trainOrder = "file";
+
+    @Option(name = "-groupsize", usage = "maximum number of data points of an item trained in a row in train order item", metaVar = "<int>")
+    public int groupSize = 1000;
+
+    @Option(name = "-benchmark", usage = "benchmark to run: trainorder", metaVar = "<String>")
+    public String benchmark;
+
     @Option(name = "-negatives", usage = "number of negative samples", metaVar = "<int>")
     public int negatives;
 
@@ -77,9 +146,15 @@ public class Options {
     @Option(name = "-similaritems", usage = "predict most similar items to these ones", metaVar = "<int>")
     public int[] similarItems = new int[]{};
 
-    @Option(name = "-tablesize", usage = "Array size used for negative sampling table")
+    @Option(name = "-sampler", usage = "negative sampler, alias:alias method with exact probabilities, table:sampling table of size tablesize", metaVar = "<String>")
+    public String sampler = "alias";
+
+    @Option(name = "-tablesize", usage = "Array size used for negative sampling table (sampler table only)")
     public int tableSize = 100_000_000;
 
+    @Option(name = "-kernel", usage = "vector kernel: auto:fastest one on this machine, scalar, unrolled, simd (requires --add-modules jdk.incubator.vector), jblas", metaVar = "<String>")
+    public String kernel = "auto";
+
     @Override
     public String toString() {
         return ReflectionToStringBuilder.toString(this);
@@ -0,0 +1,44 @@
+package com.demshape.factorization.tools;
+
+import java.util.Random;
+
+/**
+ * Derives independent random streams from a single master seed. A stream is identified by a path of longs, e.g.
+ * (purpose, iteration, partition), such that each worker can create its own generator without sharing state and the
+ * result does not depend on which thread runs which part.
+ */
+public class RandomStreams {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /**
+     * @param seed master seed
+     * @param path identifies the stream
+     * @return seed of the stream
+     */
+    public static long derive(long seed, long... path) {
+        long result = mix(seed);
+        for (long element : path)
+            result = mix(result + GOLDEN_GAMMA * (element + 1));
+        return result;
+    }
+
+    /**
+     * @param seed master seed
+     * @param path identifies the stream
+     * @return a new generator for the stream
+     */
+    public static Random create(long seed, long... path) {
+        return new Random(derive(seed, path));
+    }
+
+    /**
+     * Finalizer of SplitMix64
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+}
@@ -0,0 +1,124 @@
+package com.demshape.factorization.tools;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+/**
+ * A fixed set of named worker threads used for training. In contrast to the common ForkJoinPool the number of threads
+ * is explicit and not shared with the rest of the JVM, hence several trainings can run side by side.
+ * Each worker has its own queue: task i always runs on worker i % threads. Optionally each worker is pinned to a
+ * single cpu (linux only, best effort).
+ */
+public class TrainingExecutor implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(TrainingExecutor.class);
+
+    private final ExecutorService[] workers;
+
+    /**
+     * @param threads  number of worker threads, all available processors if threads &lt;= 0
+     * @param name     prefix of the worker thread names
+     * @param affinity whether to pin worker i to cpu i (modulo the number of cpus)
+     */
+    public TrainingExecutor(int threads, String name, boolean affinity) {
+        final int numThreads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        final int numCpus = Runtime.getRuntime().availableProcessors();
+        workers = new ExecutorService[numThreads];
+        for (int i = 0; i < numThreads; ++i) {
+            final int worker = i;
+            workers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(() -> {
+                    if (affinity)
+                        pin(worker % numCpus);
+                    runnable.run();
+                }, String.format("%s-%d", name, worker));
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * @return number of worker threads
+     */
+    public int threads() {
+        return workers.length;
+    }
+
+    /**
+     * Runs task(i) for i in [0, tasks) and waits for all of them. Task i runs on worker i % threads.
+     * @param tasks number of tasks
+     * @param task  the task to be run
+     * @param <T>   result type
+     * @return the results ordered by task index
+     * @throws InterruptedException if interrupted while waiting
+     * @throws ExecutionException   if a task failed
+     */
+    public <T> List<T> run(int tasks, IntFunction<T> task) throws InterruptedException, ExecutionException {
+        List<Future<T>> futures = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; ++i) {
+            final int index = i;
+            futures.add(workers[i % workers.length].submit(() -> task.apply(index)));
+        }
+        List<T> results = new ArrayList<>(tasks);
+        try {
+            for (Future<T> future : futures)
+                results.add(future.get());
+        } finally {
+            for (Future<T> future : futures)
+                future.cancel(true);
+        }
+        return results;
+    }
+
+    /**
+     * Runs one task per worker thread.
+     * @see #run(int, IntFunction)
+     */
+    public <T> List<T> run(IntFunction<T> task) throws InterruptedException, ExecutionException {
+        return run(workers.length, task);
+    }
+
+    @Override
+    public void close() {
+        for (ExecutorService worker : workers)
+            worker.shutdownNow();
+    }
+
+    /**
+     * Pins the calling thread to a cpu using taskset. Failures are logged and otherwise ignored.
+     * @param cpu cpu index
+     */
+    private static void pin(int cpu) {
+        try {
+            // resolves to <pid>/task/<tid>
+            Path self = Files.readSymbolicLink(Paths.get("/proc/thread-self"));
+            String tid = self.getFileName().toString();
+            Process process = new ProcessBuilder("taskset", "-p", "-c", Integer.toString(cpu), tid)
+                    .redirectErrorStream(true).start();
+            try (InputStream output = process.getInputStream()) {
+                while (output.read() >= 0) ;
+            }
+            if (process.waitFor() != 0)
+                logger.warn(String.format("could not pin %s to cpu %d", Thread.currentThread().getName(), cpu));
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.warn("cpu affinity is not supported on this system: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
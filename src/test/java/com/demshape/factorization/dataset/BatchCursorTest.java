@@ -0,0 +1,100 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.DataBatch;
+import com.demshape.factorization.datastructure.DataPoint;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchCursorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final int SIZE = 50;
+
+    private static LowMemoryDataset dataset() {
+        LowMemoryDataset dataset = new LowMemoryDataset(SIZE);
+        Random random = new Random(1);
+        for (int i = 0; i < SIZE; ++i)
+            dataset.addDatapoint(new DataPoint(2 * random.nextInt(10) + 1, 2 * random.nextInt(10), i));
+        return dataset;
+    }
+
+    @Test
+    public void lowMemoryDataset() {
+        assertSameAsPartitions(dataset());
+    }
+
+    @Test
+    public void itemGroupedDataset() {
+        ItemGroupedDataset grouped = new ItemGroupedDataset(dataset(), 20, 3);
+        grouped.shuffle(new Random(2));
+        assertSameAsPartitions(grouped);
+    }
+
+    @Test
+    public void mappedDataset() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("dataset.bin");
+        try (ColumnarWriter writer = new ColumnarWriter(path, SIZE)) {
+            for (DataPoint dataPoint : dataset())
+                writer.add(dataPoint);
+        }
+        assertSameAsPartitions(new MappedDataset(path));
+    }
+
+    @Test
+    public void defaultCursor() {
+        List<DataPoint> dataPoints = new ArrayList<>();
+        dataset().forEach(dataPoints::add);
+        assertSameAsPartitions(new Dataset(dataPoints));
+    }
+
+    @Test
+    public void ofBatch() {
+        DataBatch source = new DataBatch(5);
+        for (int i = 0; i < 5; ++i)
+            source.add(i, i + 1, i);
+        BatchCursor cursor = BatchCursor.of(source);
+        DataBatch batch = new DataBatch(2);
+        List<DataPoint> got = new ArrayList<>();
+        while (cursor.next(batch))
+            for (int n = 0; n < batch.size; ++n)
+                got.add(new DataPoint(batch.contextIds[n], batch.itemIds[n], batch.ratings[n]));
+        assertEquals(5, got.size());
+        assertEquals(new DataPoint(4, 5, 4), got.get(4));
+        assertFalse(cursor.next(batch));
+        assertEquals(0, batch.size);
+    }
+
+    /**
+     * The cursor of each part returns the data points of the partition iterator in batches of up to 4.
+     */
+    private static void assertSameAsPartitions(DatasetInterface dataset) {
+        for (int partitions = 1; partitions <= 3; ++partitions) {
+            for (int index = 0; index < partitions; ++index) {
+                List<DataPoint> expected = new ArrayList<>();
+                dataset.partition(index, partitions).forEachRemaining(expected::add);
+                List<DataPoint> got = new ArrayList<>();
+                BatchCursor cursor = dataset.cursor(index, partitions);
+                DataBatch batch = new DataBatch(4);
+                while (cursor.next(batch)) {
+                    assertTrue(batch.size > 0 && batch.size <= 4);
+                    for (int n = 0; n < batch.size; ++n)
+                        got.add(new DataPoint(batch.contextIds[n], batch.itemIds[n], batch.ratings[n]));
+                }
+                assertEquals(expected, got);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.DataBatch;
+import com.demshape.factorization.datastructure.DataPoint;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchPipelineTest {
+
+    private static LowMemoryDataset dataset(int size) {
+        LowMemoryDataset dataset = new LowMemoryDataset(size);
+        for (int i = 0; i < size; ++i)
+            dataset.addDatapoint(new DataPoint(i, i % 13, i / 2.0f));
+        return dataset;
+    }
+
+    @Test
+    public void everyDataPointOnce() throws Exception {
+        LowMemoryDataset dataset = dataset(10000);
+        List<DataPoint> got = Collections.synchronizedList(new ArrayList<>());
+        try (BatchPipeline pipeline = new BatchPipeline(dataset, 3, 2)) {
+            List<Thread> consumers = new ArrayList<>();
+            for (int c = 0; c < 2; ++c) {
+                BatchCursor cursor = pipeline.cursor();
+                consumers.add(new Thread(() -> {
+                    DataBatch batch = new DataBatch();
+                    while (cursor.next(batch))
+                        for (int n = 0; n < batch.size; ++n)
+                            got.add(new DataPoint(batch.contextIds[n], batch.itemIds[n], batch.ratings[n]));
+                }));
+            }
+            consumers.forEach(Thread::start);
+            for (Thread consumer : consumers)
+                consumer.join();
+            assertFalse(pipeline.cursor().next(new DataBatch()));
+            assertEquals(12, pipeline.batches());
+            assertTrue(pipeline.meanDepth() <= 2.0);
+        }
+        got.sort(Comparator.comparingInt(dataPoint -> dataPoint.contextId));
+        List<DataPoint> expected = new ArrayList<>();
+        dataset.forEach(expected::add);
+        assertEquals(expected, got);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void readerFailure() throws Exception {
+        DatasetInterface failing = new Dataset(1) {
+            @Override
+            public Iterator<DataPoint> partition(int index, int partitions) {
+                throw new IllegalArgumentException("unreadable");
+            }
+        };
+        try (BatchPipeline pipeline = new BatchPipeline(failing, 1, 4)) {
+            BatchCursor cursor = pipeline.cursor();
+            DataBatch batch = new DataBatch();
+            while (cursor.next(batch))
+                batch.clear();
+        }
+    }
+}
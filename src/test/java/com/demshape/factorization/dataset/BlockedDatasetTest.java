@@ -0,0 +1,56 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.DataPoint;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class BlockedDatasetTest {
+
+    @Test
+    public void block() {
+        // item and context of the same original id share a block
+        assertEquals(BlockedDataset.block(4, 3), BlockedDataset.block(5, 3));
+        assertEquals(0, BlockedDataset.block(0, 3));
+        assertEquals(1, BlockedDataset.block(3, 3));
+        assertEquals(0, BlockedDataset.block(7, 3));
+    }
+
+    @Test
+    public void parts() {
+        Dataset dataset = new Dataset(36);
+        for (int context = 1; context < 12; context += 2)
+            for (int item = 0; item < 12; item += 2)
+                dataset.addDatapoint(new DataPoint(context, item, context * 100 + item));
+        BlockedDataset blockedDataset = new BlockedDataset(dataset, 3);
+
+        long total = 0;
+        for (int contextBlock = 0; contextBlock < 3; ++contextBlock) {
+            for (int itemBlock = 0; itemBlock < 3; ++itemBlock) {
+                List<DataPoint> part = new ArrayList<>();
+                blockedDataset.part(contextBlock, itemBlock).forEach(part::add);
+                assertEquals(4, part.size());
+                for (DataPoint dataPoint : part) {
+                    assertEquals(contextBlock, BlockedDataset.block(dataPoint.contextId, 3));
+                    assertEquals(itemBlock, BlockedDataset.block(dataPoint.itemId, 3));
+                }
+                total += part.size();
+            }
+        }
+        assertEquals(dataset.size(), total);
+    }
+
+    @Test
+    public void strata() {
+        BlockedDataset blockedDataset = new BlockedDataset(new Dataset(0), 4);
+        for (int stratum = 0; stratum < 4; ++stratum)
+            for (int a = 0; a < 4; ++a)
+                for (int b = a + 1; b < 4; ++b)
+                    assertNotEquals(blockedDataset.itemBlock(stratum, a), blockedDataset.itemBlock(stratum, b));
+    }
+
+}
@@ -1,15 +1,31 @@
 package com.demshape.factorization.dataset;
 
+import com.demshape.factorization.datastructure.DataPoint;
+import com.demshape.factorization.datastructure.IntIntMap;
+import com.demshape.factorization.datastructure.IntSet;
+import com.demshape.factorization.datastructure.SparseVector;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 public class DenseMapperTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private DenseMapper denseMapper;
 
     @Before
@@ -24,7 +40,7 @@ public class DenseMapperTest {
         lines[0] = line;
         lines[1] = line;
         lines[2] = line;
-        Set<Integer> expected = new HashSet<Integer>(Arrays.asList(1, 2, 3));
+        IntSet expected = set(1, 2, 3);
         denseMapper.detect(lines);
         assertEquals(denseMapper.contexts, expected);
         assertEquals(denseMapper.items, expected);
@@ -32,35 +48,59 @@ public class DenseMapperTest {
 
     @Test
     public void createMap() {
-        Set<Integer> set = new HashSet<Integer>(Arrays.asList(1, 2, 3));
+        IntSet set = set(1, 2, 3);
         denseMapper.createMap(set, set, set);
 
-        Map<Integer, Integer> contextMap = new HashMap<>();
+        IntIntMap contextMap = new IntIntMap();
         contextMap.put(1, 1);
         contextMap.put(2, 3);
         contextMap.put(3, 5);
         assertEquals(contextMap, denseMapper.contextMap);
 
-        Map<Integer, Integer> itemMap = new HashMap<>();
+        IntIntMap itemMap = new IntIntMap();
         itemMap.put(1, 0);
         itemMap.put(2, 2);
         itemMap.put(3, 4);
         assertEquals(itemMap, denseMapper.itemMap);
 
-        Map<Integer, Integer> featureMap = new HashMap<>();
+        IntIntMap featureMap = new IntIntMap();
         featureMap.put(1, 6);
         featureMap.put(2, 7);
         featureMap.put(3, 8);
         assertEquals(featureMap, denseMapper.featureMap);
     }
 
+    @Test
+    public void frequencyOrder() {
+        Dataset dataset = new Dataset(6);
+        dataset.addDatapoint(new DataPoint(5, 7, 1.0f));
+        dataset.addDatapoint(new DataPoint(3, 7, 1.0f));
+        dataset.addDatapoint(new DataPoint(5, 7, 1.0f));
+        dataset.addDatapoint(new DataPoint(5, 3, 1.0f));
+        dataset.addDatapoint(new DataPoint(9, 1, 1.0f));
+        Map<Integer, SparseVector> features = new HashMap<>();
+        features.put(1, new SparseVector(new int[]{100, 200}, new float[]{1.0f, 1.0f}));
+        features.put(7, new SparseVector(new int[]{200}, new float[]{1.0f}));
+        denseMapper.frequencyOrder = true;
+        denseMapper.learn(dataset, features);
+
+        // items 7 occurs three times, 3 twice (once as context) and 1 once
+        assertEquals(0, denseMapper.itemMap.get(7));
+        assertEquals(2, denseMapper.itemMap.get(3));
+        assertEquals(4, denseMapper.itemMap.get(1));
+        assertEquals(3, denseMapper.contextMap.get(3));
+        // feature 200 belongs to the frequent item 7
+        assertEquals(6, denseMapper.featureMap.get(200));
+        assertEquals(7, denseMapper.featureMap.get(100));
+    }
+
     @Test
     public void map() {
         int[][] lines = new int[3][3];
         for (int i = 0; i < 3; i++)
             for (int j = 0; j < 3; j++)
                 lines[i][j] = j + 1;
-        Map<Integer, Integer> itemMap = new HashMap<>();
+        IntIntMap itemMap = new IntIntMap();
         itemMap.put(1, 0);
         itemMap.put(2, 1);
         itemMap.put(3, 2);
@@ -73,4 +113,118 @@ public class DenseMapperTest {
         mappedLines[2] = mappedLine;
         assertArrayEquals(mappedLines, lines);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void mapInPlace() {
+        LowMemoryDataset dataset = new LowMemoryDataset(2);
+        dataset.addDatapoint(new DataPoint(3, 1, 1.0f));
+        dataset.addDatapoint(new DataPoint(1, 3, 2.0f));
+        denseMapper.learn(dataset, new HashMap<>());
+        denseMapper.mapInPlace(dataset);
+        Iterator<DataPoint> iterator = dataset.iterator();
+        assertEquals(new DataPoint(3, 0, 1.0f), iterator.next());
+        assertEquals(new DataPoint(1, 2, 2.0f), iterator.next());
+    }
+
+    @Test
+    public void mapInPlaceDropsContextsWhichAreNoItems() throws Exception {
+        LowMemoryDataset dataset = new LowMemoryDataset(3);
+        dataset.addDatapoint(new DataPoint(3, 1, 1.0f));
+        dataset.addDatapoint(new DataPoint(5, 3, 2.0f));
+        dataset.addDatapoint(new DataPoint(1, 3, 3.0f));
+        denseMapper.learn(dataset, new HashMap<>());
+
+        Path path = folder.getRoot().toPath().resolve("mapped");
+        denseMapper.writeColumnar(dataset, path);
+        assertEquals(Arrays.asList(new DataPoint(3, 0, 1.0f), new DataPoint(1, 2, 3.0f)), list(new MappedDataset(path)));
+
+        denseMapper.mapInPlace(dataset);
+        assertEquals(Arrays.asList(new DataPoint(3, 0, 1.0f), new DataPoint(1, 2, 3.0f)), list(dataset));
+    }
+
+    @Test
+    public void extendMap() {
+        denseMapper.numFeatures = denseMapper.createMap(set(1, 2), set(1, 2), set(7));
+        assertEquals(5, denseMapper.numFeatures);
+        int numFeatures = denseMapper.extendMap(set(1, 2, 3), set(7, 8));
+        // known ids keep their dense id, row 5 stays unused such that item 3 is mapped to an even id
+        assertEquals(9, numFeatures);
+        assertEquals(2, denseMapper.itemMap.get(2));
+        assertEquals(6, denseMapper.itemMap.get(3));
+        assertEquals(7, denseMapper.contextMap.get(3));
+        assertEquals(4, denseMapper.featureMap.get(7));
+        assertEquals(8, denseMapper.featureMap.get(8));
+    }
+
+    @Test
+    public void writeReadMapping() throws Exception {
+        IntSet set = set(1, 2, 3);
+        denseMapper.numFeatures = denseMapper.createMap(set, set, set);
+        StringWriter writer = new StringWriter();
+        denseMapper.writeMapping(writer);
+
+        DenseMapper readMapper = new DenseMapper();
+        readMapper.readMapping(new StringReader(writer.toString()));
+        assertEquals(denseMapper.itemMap, readMapper.itemMap);
+        assertEquals(denseMapper.contextMap, readMapper.contextMap);
+        assertEquals(denseMapper.featureMap, readMapper.featureMap);
+        assertEquals(denseMapper.numFeatures, readMapper.numFeatures);
+    }
+
+    @Test
+    public void writeReadBinary() throws Exception {
+        IntSet set = set(0, 1, 2, 3);
+        denseMapper.numFeatures = denseMapper.createMap(set, set, set(5, 6));
+        Path path = folder.getRoot().toPath().resolve("mapping.bin");
+        denseMapper.writeBinary(path, 42L);
+
+        DenseMapper readMapper = new DenseMapper();
+        assertTrue(readMapper.readBinary(path, 42L));
+        assertEquals(denseMapper.itemMap, readMapper.itemMap);
+        assertEquals(denseMapper.contextMap, readMapper.contextMap);
+        assertEquals(denseMapper.featureMap, readMapper.featureMap);
+        assertEquals(denseMapper.numFeatures, readMapper.numFeatures);
+
+        // a different input or a missing file is not read
+        assertFalse(new DenseMapper().readBinary(path, 43L));
+        assertFalse(new DenseMapper().readBinary(path.resolveSibling("missing.bin"), 42L));
+    }
+
+    @Test
+    public void readBinaryIgnoresUnreadableFile() throws Exception {
+        IntSet set = set(0, 1, 2, 3);
+        denseMapper.numFeatures = denseMapper.createMap(set, set, set(5, 6));
+        Path path = folder.getRoot().toPath().resolve("mapping.bin");
+        denseMapper.writeBinary(path, 42L);
+        byte[] bytes = Files.readAllBytes(path);
+
+        // truncated
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+        DenseMapper readMapper = new DenseMapper();
+        assertFalse(readMapper.readBinary(path, 42L));
+        assertEquals(0, readMapper.numFeatures);
+        assertNull(readMapper.itemMap);
+
+        // wrong magic number
+        bytes[0] ^= 1;
+        Files.write(path, bytes);
+        assertFalse(readMapper.readBinary(path, 42L));
+
+        // not a mapping at all
+        Files.write(path, new byte[]{1, 2});
+        assertFalse(readMapper.readBinary(path, 42L));
+    }
+
+    private static IntSet set(int... ids) {
+        IntSet set = new IntSet();
+        for (int id : ids)
+            set.add(id);
+        return set;
+    }
+
+    private static List<DataPoint> list(DatasetInterface dataset) {
+        List<DataPoint> dataPoints = new ArrayList<>();
+        dataset.forEach(dataPoints::add);
+        return dataPoints;
+    }
+}
@@ -1,14 +1,29 @@
 package com.demshape.factorization.dataset;
 
+import com.demshape.factorization.datastructure.DataBatch;
 import com.demshape.factorization.datastructure.DataPoint;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
 
 public class DiskBasedDatasetTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     private DiskBasedDataset dataset;
 
     @Before
@@ -43,4 +58,69 @@ public class DiskBasedDatasetTest {
         assertFalse(iterator.hasNext());
     }
 
+    @Test
+    public void partition() {
+        // partitions are byte ranges: the file has 20 bytes and the second line starts at byte 7
+        Iterator<DataPoint> first = dataset.partition(0, 2);
+        assertEquals(first.next(), new DataPoint(1, 22, 4));
+        assertEquals(first.next(), new DataPoint(1, 23, 3));
+        assertFalse(first.hasNext());
+
+        Iterator<DataPoint> second = dataset.partition(1, 2);
+        assertEquals(second.next(), new DataPoint(1, 24, 8));
+        assertFalse(second.hasNext());
+    }
+
+    @Test
+    public void partitionsCoverFile() throws IOException {
+        File file = folder.newFile("dataset.tsv");
+        StringBuilder content = new StringBuilder();
+        List<DataPoint> expected = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            DataPoint dataPoint = new DataPoint(i * i, 7 * i, i / 8.0f);
+            expected.add(dataPoint);
+            content.append(dataPoint).append(i % 9 == 4 ? "\r\n" : "\n");
+        }
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.US_ASCII));
+        DiskBasedDataset disk = new DiskBasedDataset(file.getPath(), expected.size());
+
+        for (int partitions = 1; partitions <= 50; partitions += 7) {
+            List<DataPoint> iterated = new ArrayList<>();
+            List<DataPoint> batched = new ArrayList<>();
+            DataBatch batch = new DataBatch(16);
+            for (int index = 0; index < partitions; ++index) {
+                disk.partition(index, partitions).forEachRemaining(iterated::add);
+                BatchCursor cursor = disk.cursor(index, partitions);
+                while (cursor.next(batch))
+                    for (int n = 0; n < batch.size; ++n)
+                        batched.add(new DataPoint(batch.contextIds[n], batch.itemIds[n], batch.ratings[n]));
+            }
+            assertEquals("partitions: " + partitions, expected, iterated);
+            assertEquals("partitions: " + partitions, expected, batched);
+        }
+        assertEquals(expected, disk.parallelStream().collect(Collectors.toList()));
+    }
+
+    @Test
+    public void spliteratorSplitsByteRanges() throws IOException {
+        File file = folder.newFile("large.tsv");
+        StringBuilder content = new StringBuilder();
+        long lines = 0;
+        for (; content.length() < 4 * DiskBasedDataset.MIN_SPLIT_SIZE; ++lines)
+            content.append(new DataPoint((int) lines, 1, 1.0f)).append('\n');
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.US_ASCII));
+        DiskBasedDataset disk = new DiskBasedDataset(file.getPath(), lines);
+
+        Spliterator<DataPoint> suffix = disk.spliterator();
+        Spliterator<DataPoint> prefix = suffix.trySplit();
+        assertNotNull(prefix);
+        assertEquals(lines, prefix.estimateSize() + suffix.estimateSize(), 1.0);
+        long[] next = {0};
+        Consumer<DataPoint> inOrder = dataPoint -> assertEquals(next[0]++, dataPoint.contextId);
+        prefix.forEachRemaining(inOrder);
+        suffix.forEachRemaining(inOrder);
+        assertEquals(lines, next[0]);
+        assertEquals(lines, disk.parallelStream().count());
+    }
+
 }
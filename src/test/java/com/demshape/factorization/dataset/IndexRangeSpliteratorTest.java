@@ -0,0 +1,61 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.DataPoint;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IndexRangeSpliteratorTest {
+
+    @Test
+    public void split() {
+        Spliterator<DataPoint> suffix = new IndexRangeSpliterator(IndexRangeSpliteratorTest::dataPoint, 10, 21);
+        Spliterator<DataPoint> prefix = suffix.trySplit();
+        assertEquals(5, prefix.estimateSize());
+        assertEquals(6, suffix.estimateSize());
+        assertEquals(10, ids(prefix).get(0).intValue());
+        assertEquals(15, ids(suffix).get(0).intValue());
+    }
+
+    @Test
+    public void splitSingleElement() {
+        Spliterator<DataPoint> spliterator = new IndexRangeSpliterator(IndexRangeSpliteratorTest::dataPoint, 3, 4);
+        assertNull(spliterator.trySplit());
+        assertTrue(spliterator.tryAdvance(dataPoint -> assertEquals(3, dataPoint.contextId)));
+        assertFalse(spliterator.tryAdvance(dataPoint -> {
+        }));
+        assertEquals(0, spliterator.estimateSize());
+    }
+
+    @Test
+    public void lowMemoryDataset() {
+        LowMemoryDataset dataset = new LowMemoryDataset(10_000);
+        for (int i = 0; i < 10_000; ++i)
+            dataset.addDatapoint(dataPoint(i));
+        List<Integer> ids = new ArrayList<>();
+        dataset.parallelStream().forEachOrdered(dataPoint -> ids.add(dataPoint.contextId));
+        assertEquals(10_000, ids.size());
+        for (int i = 0; i < ids.size(); ++i)
+            assertEquals(i, ids.get(i).intValue());
+        assertEquals(10_000, dataset.parallelStream().mapToInt(dataPoint -> dataPoint.itemId).distinct().count());
+    }
+
+    private static List<Integer> ids(Spliterator<DataPoint> spliterator) {
+        List<Integer> ids = new ArrayList<>();
+        spliterator.forEachRemaining(dataPoint -> ids.add(dataPoint.contextId));
+        assertEquals(0, spliterator.estimateSize());
+        return ids;
+    }
+
+    private static DataPoint dataPoint(long index) {
+        return new DataPoint((int) index, (int) (2 * index), 1.0f);
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.DataPoint;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ItemGroupedDatasetTest {
+
+    private static final Comparator<DataPoint> ORDER = Comparator.<DataPoint>comparingInt(d -> d.itemId)
+            .thenComparingInt(d -> d.contextId).thenComparingDouble(d -> d.rating);
+
+    private static Dataset dataset() {
+        Dataset dataset = new Dataset(100);
+        Random random = new Random(1);
+        for (int i = 0; i < 100; ++i)
+            dataset.addDatapoint(new DataPoint(2 * random.nextInt(10) + 1, 2 * (i % 7 == 0 ? 0 : random.nextInt(10)), i));
+        return dataset;
+    }
+
+    private static List<DataPoint> list(Iterator<DataPoint> iterator) {
+        List<DataPoint> dataPoints = new ArrayList<>();
+        iterator.forEachRemaining(dataPoints::add);
+        return dataPoints;
+    }
+
+    @Test
+    public void groups() {
+        Dataset dataset = dataset();
+        ItemGroupedDataset grouped = new ItemGroupedDataset(dataset, 20, 4);
+        assertEquals(dataset.size(), grouped.size());
+
+        // before shuffling sorted by item, file order within an item
+        List<DataPoint> expected = list(dataset.iterator());
+        List<DataPoint> actual = list(grouped.iterator());
+        for (int i = 1; i < actual.size(); ++i) {
+            assertTrue(actual.get(i).itemId >= actual.get(i - 1).itemId);
+            if (actual.get(i).itemId == actual.get(i - 1).itemId)
+                assertTrue(actual.get(i).rating > actual.get(i - 1).rating);
+        }
+
+        // items are split into groups of at most 4 data points
+        int[] counts = new int[20];
+        for (DataPoint dataPoint : expected)
+            counts[dataPoint.itemId]++;
+        int groups = 0;
+        for (int count : counts)
+            groups += (count + 3) / 4;
+        assertEquals(groups, grouped.groups());
+
+        expected.sort(ORDER);
+        actual.sort(ORDER);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    public void shuffle() {
+        ItemGroupedDataset grouped = new ItemGroupedDataset(dataset(), 20, 4);
+        List<DataPoint> before = list(grouped.iterator());
+        grouped.shuffle(new Random(3));
+        List<DataPoint> after = list(grouped.iterator());
+        assertNotEquals(before, after);
+        before.sort(ORDER);
+        after.sort(ORDER);
+        assertEquals(before, after);
+    }
+
+    @Test
+    public void partitions() {
+        ItemGroupedDataset grouped = new ItemGroupedDataset(dataset(), 20, 3);
+        grouped.shuffle(new Random(5));
+        List<DataPoint> all = list(grouped.iterator());
+        List<DataPoint> parts = new ArrayList<>();
+        for (int partition = 0; partition < 7; ++partition)
+            parts.addAll(list(grouped.partition(partition, 7)));
+        assertEquals(all, parts);
+    }
+
+}
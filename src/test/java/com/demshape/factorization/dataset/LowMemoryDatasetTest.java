@@ -0,0 +1,147 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.DataBatch;
+import com.demshape.factorization.datastructure.DataPoint;
+import org.junit.Test;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class LowMemoryDatasetTest {
+
+    @Test
+    public void grow() {
+        LowMemoryDataset dataset = new LowMemoryDataset(1);
+        for (int i = 0; i < 100; ++i)
+            dataset.addDatapoint(new DataPoint(i, i + 1, 1.0f));
+        assertEquals(100, dataset.size());
+        int i = 0;
+        for (DataPoint dataPoint : dataset) {
+            assertEquals(new DataPoint(i, i + 1, 1.0f), dataPoint);
+            ++i;
+        }
+    }
+
+    @Test
+    public void concat() {
+        LowMemoryDataset first = new LowMemoryDataset(2);
+        first.addDatapoint(new DataPoint(1, 2, 1.0f));
+        first.addDatapoint(new DataPoint(3, 4, 2.0f));
+        LowMemoryDataset second = new LowMemoryDataset(4);
+        second.addDatapoint(new DataPoint(5, 6, 3.0f));
+        LowMemoryDataset dataset = LowMemoryDataset.concat(Arrays.asList(first, new LowMemoryDataset(0), second));
+        assertEquals(Arrays.asList(new DataPoint(1, 2, 1.0f), new DataPoint(3, 4, 2.0f), new DataPoint(5, 6, 3.0f)), list(dataset));
+    }
+
+    @Test
+    public void mapIds() {
+        LowMemoryDataset dataset = new LowMemoryDataset(2);
+        dataset.addDatapoint(new DataPoint(1, 2, 1.0f));
+        dataset.addDatapoint(new DataPoint(3, 4, 2.0f));
+        dataset.mapIds(id -> 10 * id, id -> -id);
+        assertEquals(Arrays.asList(new DataPoint(10, -2, 1.0f), new DataPoint(30, -4, 2.0f)), list(dataset));
+    }
+
+    @Test
+    public void removeId() {
+        // segments of 4 data points
+        LowMemoryDataset dataset = new LowMemoryDataset(0, 2);
+        List<DataPoint> expected = new ArrayList<>();
+        for (int i = 0; i < 11; ++i) {
+            final DataPoint dataPoint = new DataPoint(i % 3 == 1 ? -1 : i, i == 6 ? -1 : i + 1, i);
+            dataset.addDatapoint(dataPoint);
+            if (dataPoint.contextId != -1 && dataPoint.itemId != -1)
+                expected.add(dataPoint);
+        }
+        assertEquals(11 - expected.size(), dataset.removeId(-1));
+        assertEquals(expected, list(dataset));
+        assertEquals(0, dataset.removeId(-1));
+        dataset.addDatapoint(new DataPoint(20, 21, 1.0f));
+        expected.add(new DataPoint(20, 21, 1.0f));
+        assertEquals(expected, list(dataset));
+    }
+
+    @Test
+    public void segments() {
+        // segments of 4 data points
+        LowMemoryDataset dataset = new LowMemoryDataset(0, 2);
+        List<DataPoint> expected = new ArrayList<>();
+        for (int i = 0; i < 11; ++i) {
+            expected.add(new DataPoint(i, i + 1, i));
+            dataset.addDatapoint(new DataPoint(i, i + 1, i));
+        }
+        assertEquals(11, dataset.size());
+        assertEquals(expected, list(dataset));
+        assertEquals(expected, dataset.parallelStream()
+                .sorted(Comparator.comparingInt(dataPoint -> dataPoint.contextId)).collect(Collectors.toList()));
+
+        List<DataPoint> partitions = new ArrayList<>();
+        for (int partition = 0; partition < 2; ++partition)
+            dataset.partition(partition, 2).forEachRemaining(partitions::add);
+        assertEquals(expected, partitions);
+
+        // batches of 3 span two segments
+        List<DataPoint> batches = new ArrayList<>();
+        DataBatch batch = new DataBatch(3);
+        for (int partition = 0; partition < 2; ++partition) {
+            BatchCursor cursor = dataset.cursor(partition, 2);
+            while (cursor.next(batch))
+                for (int i = 0; i < batch.size; ++i)
+                    batches.add(new DataPoint(batch.contextIds[i], batch.itemIds[i], batch.ratings[i]));
+        }
+        assertEquals(expected, batches);
+
+        dataset.mapIds(id -> -id, id -> id);
+        assertEquals(new DataPoint(-9, 10, 9.0f), list(dataset).get(9));
+    }
+
+    @Test
+    public void concatSegments() {
+        // segments of 4 data points, full segments at a segment border are moved, the others copied
+        List<LowMemoryDataset> parts = Arrays.asList(new LowMemoryDataset(0, 2), new LowMemoryDataset(0, 2), new LowMemoryDataset(0, 2));
+        int[] sizes = {8, 5, 6};
+        List<DataPoint> expected = new ArrayList<>();
+        for (int part = 0, i = 0; part < parts.size(); ++part) {
+            for (int j = 0; j < sizes[part]; ++j, ++i) {
+                expected.add(new DataPoint(i, i + 1, i));
+                parts.get(part).addDatapoint(new DataPoint(i, i + 1, i));
+            }
+        }
+        // each part is released before the next one is copied
+        List<LowMemoryDataset> checked = new AbstractList<LowMemoryDataset>() {
+            @Override
+            public LowMemoryDataset get(int index) {
+                for (int part = 0; part < index; ++part)
+                    assertEquals(0, parts.get(part).size());
+                return parts.get(index);
+            }
+
+            @Override
+            public int size() {
+                return parts.size();
+            }
+        };
+        LowMemoryDataset dataset = LowMemoryDataset.concat(checked);
+        assertEquals(19, dataset.size());
+        assertEquals(expected, list(dataset));
+        for (LowMemoryDataset part : parts)
+            assertEquals(0, part.size());
+
+        dataset.addDatapoint(new DataPoint(19, 20, 19.0f));
+        expected.add(new DataPoint(19, 20, 19.0f));
+        assertEquals(expected, list(dataset));
+    }
+
+    private static List<DataPoint> list(DatasetInterface dataset) {
+        List<DataPoint> dataPoints = new ArrayList<>();
+        dataset.forEach(dataPoints::add);
+        return dataPoints;
+    }
+
+}
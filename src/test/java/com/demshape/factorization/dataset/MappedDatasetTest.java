@@ -0,0 +1,83 @@
+package com.demshape.factorization.dataset;
+
+import com.demshape.factorization.datastructure.DataPoint;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class MappedDatasetTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writeRead() throws Exception {
+        Path path = write(1000);
+        MappedDataset dataset = new MappedDataset(path);
+        assertEquals(1000, dataset.size());
+        int i = 0;
+        for (DataPoint dataPoint : dataset) {
+            assertEquals(dataPoint(i), dataPoint);
+            ++i;
+        }
+        assertEquals(1000, i);
+    }
+
+    @Test
+    public void partition() throws Exception {
+        MappedDataset dataset = new MappedDataset(write(10));
+        Iterator<DataPoint> last = dataset.partition(2, 3);
+        for (int i = 6; i < 10; ++i)
+            assertEquals(dataPoint(i), last.next());
+        assertFalse(last.hasNext());
+    }
+
+    @Test
+    public void parallelStream() throws Exception {
+        MappedDataset dataset = new MappedDataset(write(100_000));
+        List<DataPoint> got = dataset.parallelStream().collect(Collectors.toList());
+        assertEquals(100_000, got.size());
+        for (int i = 0; i < got.size(); ++i)
+            assertEquals(dataPoint(i), got.get(i));
+    }
+
+    @Test(expected = IOException.class)
+    public void missingDataPoints() throws Exception {
+        try (ColumnarWriter writer = new ColumnarWriter(folder.getRoot().toPath().resolve("short.bin"), 2)) {
+            writer.add(dataPoint(0));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void truncated() throws Exception {
+        Path path = write(10);
+        byte[] content = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(content, content.length - 4));
+        new MappedDataset(path);
+    }
+
+    private Path write(int size) throws IOException {
+        Path path = folder.getRoot().toPath().resolve("dataset.bin");
+        try (ColumnarWriter writer = new ColumnarWriter(path, size)) {
+            for (int i = 0; i < size; ++i)
+                writer.add(dataPoint(i));
+        }
+        return path;
+    }
+
+    private static DataPoint dataPoint(int i) {
+        return new DataPoint(i, -i, i / 8.0f);
+    }
+
+}
@@ -1,10 +1,13 @@
 package com.demshape.factorization.dataset;
 
+import com.demshape.factorization.datastructure.DataBatch;
 import com.demshape.factorization.datastructure.DataPoint;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -50,5 +53,28 @@ public class RowBasedDatasetTest {
         assertFalse(iterator.hasNext());
     }
 
+    @Test
+    public void partition() {
+        Iterator<DataPoint> iterator = dataset.partition(2, 3);
+        assertEquals(new DataPoint(3, 0, 1.0f), iterator.next());
+        assertEquals(new DataPoint(1, 2, 1.0f), iterator.next());
+        assertFalse(iterator.hasNext());
+        assertFalse(dataset.partition(0, 4).hasNext());
+    }
+
+    @Test
+    public void cursor() {
+        for (int partition = 0; partition < 2; ++partition) {
+            List<DataPoint> expected = new ArrayList<>();
+            dataset.partition(partition, 2).forEachRemaining(expected::add);
+            List<DataPoint> batches = new ArrayList<>();
+            BatchCursor cursor = dataset.cursor(partition, 2);
+            DataBatch batch = new DataBatch(3);
+            while (cursor.next(batch))
+                for (int i = 0; i < batch.size; ++i)
+                    batches.add(new DataPoint(batch.contextIds[i], batch.itemIds[i], batch.ratings[i]));
+            assertEquals(expected, batches);
+        }
+    }
 
 }
@@ -0,0 +1,119 @@
+package com.demshape.factorization.datastructure;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AsciiParserTest {
+
+    private static ByteBuffer bytes(String string) {
+        return ByteBuffer.wrap(string.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static int parseInt(String string) {
+        return AsciiParser.parseInt(bytes(string), 0, string.length());
+    }
+
+    private static float parseFloat(String string) {
+        return AsciiParser.parseFloat(bytes(string), 0, string.length());
+    }
+
+    @Test
+    public void parseInt() {
+        assertEquals(0, parseInt("0"));
+        assertEquals(42, parseInt("+42"));
+        assertEquals(-17, parseInt("-17"));
+        assertEquals(Integer.MAX_VALUE, parseInt("2147483647"));
+        assertEquals(Integer.MIN_VALUE, parseInt("-2147483648"));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseIntOverflow() {
+        parseInt("2147483648");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseIntInvalid() {
+        parseInt("1.0");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseIntEmpty() {
+        parseInt("-");
+    }
+
+    @Test
+    public void parseFloat() {
+        String[] inputs = {"0", "-0", "3", "1.5", "-0.25", ".5", "1.", "0.1", "2.3", "1e3", "1.5E-3", "+7", "16777217",
+                "0.3333333333333333333333", "1e-30", "3.4028235e38", "1e39", "NaN", "-Infinity", "1.5f"};
+        for (String input : inputs)
+            assertEquals(input, Float.floatToIntBits(Float.parseFloat(input)), Float.floatToIntBits(parseFloat(input)));
+    }
+
+    @Test
+    public void parseFloatEqualsJava() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; ++i) {
+            String input;
+            if (i % 3 == 0)
+                input = Float.toString(random.nextFloat() * (float) Math.pow(10, random.nextInt(12) - 6));
+            else
+                input = String.format("%d.%0" + (1 + random.nextInt(6)) + "d", random.nextInt(100000), random.nextInt(1000));
+            assertEquals(input, Float.floatToIntBits(Float.parseFloat(input)), Float.floatToIntBits(parseFloat(input)));
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseFloatInvalid() {
+        parseFloat("1,5");
+    }
+
+    @Test
+    public void parseLines() {
+        // only the range of the line is read
+        ByteBuffer buffer = bytes("#3\t7\t0.5\t9#");
+        assertEquals(new DataPoint(3, 7, 0.5f), AsciiParser.parseDataPoint(buffer, 1, buffer.limit() - 1, new DataPoint()));
+        assertEquals(new DataPoint(3, 7, 0.5f), AsciiParser.parseDataPoint(buffer, 1, buffer.limit() - 3, new DataPoint()));
+
+        buffer = bytes("1\t2\t-3");
+        assertArrayEquals(new int[]{1, 2, -3}, AsciiParser.parseRow(buffer, 0, buffer.limit()));
+
+        buffer = bytes("5\t3:1.5\t6:2");
+        int[] itemId = new int[1];
+        SparseVector features = AsciiParser.parseFeatures(buffer, 0, buffer.limit(), itemId);
+        assertEquals(5, itemId[0]);
+        assertEquals(new SparseVector(new int[]{3, 6}, new float[]{1.5f, 2.0f}), features);
+        assertEquals(0, AsciiParser.parseFeatures(bytes("8"), 0, 1, itemId).size());
+        assertEquals(8, itemId[0]);
+    }
+
+    @Test
+    public void trailingTabs() {
+        // empty trailing fields are dropped like String.split does
+        ByteBuffer buffer = bytes("1\t2\t-3\t");
+        assertArrayEquals(new int[]{1, 2, -3}, AsciiParser.parseRow(buffer, 0, buffer.limit()));
+        buffer = bytes("1\t2\t\t");
+        assertArrayEquals(new int[]{1, 2}, AsciiParser.parseRow(buffer, 0, buffer.limit()));
+        buffer = bytes("\t\t");
+        assertArrayEquals(new int[0], AsciiParser.parseRow(buffer, 0, buffer.limit()));
+
+        buffer = bytes("5\t3:1.5\t6:2\t");
+        int[] itemId = new int[1];
+        assertEquals(new SparseVector(new int[]{3, 6}, new float[]{1.5f, 2.0f}), AsciiParser.parseFeatures(buffer, 0, buffer.limit(), itemId));
+        assertEquals(5, itemId[0]);
+        buffer = bytes("8\t");
+        assertEquals(0, AsciiParser.parseFeatures(buffer, 0, buffer.limit(), itemId).size());
+        assertEquals(8, itemId[0]);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parseDataPointMissingColumn() {
+        ByteBuffer buffer = bytes("3\t7");
+        AsciiParser.parseDataPoint(buffer, 0, buffer.limit(), new DataPoint());
+    }
+}
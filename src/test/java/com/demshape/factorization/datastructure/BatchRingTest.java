@@ -0,0 +1,82 @@
+package com.demshape.factorization.datastructure;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BatchRingTest {
+
+    @Test
+    public void fifo() {
+        BatchRing ring = new BatchRing(3);
+        assertEquals(4, ring.capacity());
+        assertNull(ring.poll());
+        List<DataBatch> batches = new ArrayList<>();
+        // wraps around twice
+        for (int round = 0; round < 3; ++round) {
+            batches.clear();
+            for (int i = 0; i < 4; ++i) {
+                DataBatch batch = new DataBatch(1);
+                batches.add(batch);
+                assertTrue(ring.offer(batch));
+            }
+            assertFalse(ring.offer(new DataBatch(1)));
+            assertEquals(4, ring.size());
+            for (DataBatch batch : batches)
+                assertSame(batch, ring.poll());
+            assertNull(ring.poll());
+            assertEquals(0, ring.size());
+        }
+    }
+
+    @Test
+    public void concurrentProducersAndConsumers() throws InterruptedException {
+        final int perProducer = 20000;
+        final BatchRing ring = new BatchRing(8);
+        final AtomicInteger sum = new AtomicInteger();
+        final AtomicInteger consumed = new AtomicInteger();
+        final ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < 3; ++p) {
+            threads.add(new Thread(() -> {
+                for (int i = 1; i <= perProducer; ++i) {
+                    DataBatch batch = new DataBatch(1);
+                    batch.add(0, i, 1.0f);
+                    while (!ring.offer(batch))
+                        Thread.yield();
+                }
+            }));
+        }
+        for (int c = 0; c < 2; ++c) {
+            threads.add(new Thread(() -> {
+                while (consumed.get() < 3 * perProducer) {
+                    DataBatch batch = ring.poll();
+                    if (batch == null) {
+                        Thread.yield();
+                        continue;
+                    }
+                    if (batch.size != 1)
+                        failures.add(new AssertionError("incomplete batch"));
+                    sum.addAndGet(batch.itemIds[0]);
+                    consumed.incrementAndGet();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads)
+            thread.join();
+        assertTrue(failures.isEmpty());
+        assertEquals(3 * perProducer, consumed.get());
+        assertEquals(3 * (perProducer * (perProducer + 1) / 2), sum.get());
+        assertNull(ring.poll());
+    }
+}
@@ -5,6 +5,7 @@ import org.junit.Test;
 import java.util.Locale;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
 public class DataPointTest {
 
@@ -21,4 +22,22 @@ public class DataPointTest {
         DataPoint expected = new DataPoint(1, 2, 3);
         assertEquals(expected, got);
     }
+
+    @Test
+    public void toSparseVector() {
+        SparseVector features = new SparseVector(new int[]{10, 11}, new float[]{0.5f, 0.25f});
+        SparseVector expected = new SparseVector(new int[]{1, 2, 10, 11}, new float[]{1.0f, 1.0f, 0.5f, 0.25f});
+        assertEquals(expected, new DataPoint(1, 2, 3).toSparseVector(features));
+        assertEquals(new SparseVector(new int[]{1, 2}, new float[]{1.0f, 1.0f}), new DataPoint(1, 2, 3).toSparseVector());
+    }
+
+    @Test
+    public void toSparseVectorReusesTarget() {
+        SparseVector features = new SparseVector(new int[]{10, 11}, new float[]{0.5f, 0.25f});
+        SparseVector target = new SparseVector(2);
+        assertSame(target, new DataPoint(1, 2, 3).toSparseVector(features, target));
+        assertEquals(new SparseVector(new int[]{1, 2, 10, 11}, new float[]{1.0f, 1.0f, 0.5f, 0.25f}), target);
+        new DataPoint(4, 6, 1).toSparseVector(null, target);
+        assertEquals(new SparseVector(new int[]{4, 6}, new float[]{1.0f, 1.0f}), target);
+    }
 }
@@ -2,12 +2,19 @@ package com.demshape.factorization.datastructure;
 
 import org.jblas.FloatMatrix;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 
@@ -16,6 +23,9 @@ import static org.junit.Assert.assertEquals;
 
 public class DatasetIOTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     @Before
     public void before() throws Exception {
         Locale.setDefault(Locale.ENGLISH);
@@ -51,7 +61,7 @@ public class DatasetIOTest {
         latentVectors.put(2, new FloatMatrix(new float[]{0.2f, 0.02f}));
         StringWriter writer = new StringWriter();
         try {
-            DatasetIO.write(latentVectors, writer);
+            DatasetIO.write(latentVectors, writer, true);
         } catch (IOException e) {
 
         }
@@ -81,6 +91,17 @@ public class DatasetIOTest {
         assertEquals(expected, got);
     }
 
+    @Test
+    public void readFeaturesConcurrently() throws IOException {
+        File file = folder.newFile("features.tsv");
+        Files.write(file.toPath(), "1\t3:1.5\t6:2\n\n2\t3:1\t7:2.3\r\n3".getBytes(StandardCharsets.US_ASCII));
+        Map<Integer, SparseVector> expected = new HashMap<>();
+        expected.put(1, new SparseVector(new int[]{3, 6}, new float[]{1.5f, 2.0f}));
+        expected.put(2, new SparseVector(new int[]{3, 7}, new float[]{1.0f, 2.3f}));
+        expected.put(3, new SparseVector(0));
+        assertEquals(expected, DatasetIO.readFeatures(file.getPath()));
+    }
+
     @Test
     public void readLineBased() throws IOException {
         String fixture = getClass().getClassLoader().getResource("dataset_line_based.tsv").getPath();
@@ -92,4 +113,30 @@ public class DatasetIOTest {
         expected[2] = extectedLine;
         assertArrayEquals(expected, got);
     }
+
+    @Test
+    public void readColumnBasedConcurrently() throws IOException {
+        File file = folder.newFile("dataset.tsv");
+        StringBuilder content = new StringBuilder();
+        List<DataPoint> expected = new ArrayList<>();
+        for (int i = 0; i < 100; ++i) {
+            DataPoint dataPoint = new DataPoint(i, 1000 - 7 * i, i / 4.0f);
+            expected.add(dataPoint);
+            content.append(dataPoint);
+            // windows line breaks and empty lines are accepted, the last line break is missing
+            if (i % 10 == 3)
+                content.append('\r');
+            if (i % 17 == 5)
+                content.append('\n');
+            if (i < 99)
+                content.append('\n');
+        }
+        Files.write(file.toPath(), content.toString().getBytes(StandardCharsets.US_ASCII));
+
+        for (int chunks = 1; chunks <= 9; ++chunks) {
+            List<DataPoint> got = new ArrayList<>();
+            DatasetIO.readColumnBased(file.getPath(), chunks).forEach(got::add);
+            assertEquals("chunks: " + chunks, expected, got);
+        }
+    }
 }
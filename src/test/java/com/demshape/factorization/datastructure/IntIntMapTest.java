@@ -0,0 +1,94 @@
+package com.demshape.factorization.datastructure;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IntIntMapTest {
+
+    @Test
+    public void putGet() {
+        IntIntMap map = new IntIntMap();
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 10000; ++i) {
+            int key = random.nextInt(5000) - 2500;
+            map.put(key, i);
+            expected.put(key, i);
+        }
+        assertEquals(expected.size(), map.size());
+        expected.forEach((key, value) -> assertEquals((int) value, map.get(key)));
+        assertEquals(IntIntMap.MISSING, map.get(100000));
+        assertEquals(7, map.getOrDefault(100000, 7));
+        assertFalse(map.containsKey(100000));
+
+        Map<Integer, Integer> iterated = new HashMap<>();
+        map.forEach(iterated::put);
+        assertEquals(expected, iterated);
+    }
+
+    @Test
+    public void zeroKey() {
+        IntIntMap map = new IntIntMap();
+        assertFalse(map.containsKey(0));
+        map.put(0, 5);
+        assertTrue(map.containsKey(0));
+        assertEquals(5, map.get(0));
+        assertEquals(1, map.size());
+        map.addTo(0, 2);
+        assertEquals(7, map.get(0));
+    }
+
+    @Test
+    public void addAll() {
+        IntIntMap a = new IntIntMap();
+        IntIntMap b = new IntIntMap(100);
+        a.addTo(1, 2);
+        a.addTo(3, 1);
+        b.addTo(1, 5);
+        b.addTo(4, Integer.MAX_VALUE);
+        b.addTo(4, 1);
+        a.addAll(b);
+        assertEquals(7, a.get(1));
+        assertEquals(1, a.get(3));
+        // saturates
+        assertEquals(Integer.MAX_VALUE, a.get(4));
+    }
+
+    @Test
+    public void equality() {
+        IntIntMap a = new IntIntMap();
+        IntIntMap b = new IntIntMap(1000);
+        for (int i = 0; i < 100; ++i) {
+            a.put(i, -i);
+            b.put(99 - i, i - 99);
+        }
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        b.put(5, 5);
+        assertNotEquals(a, b);
+    }
+
+    @Test
+    public void full() {
+        IntIntMap map = new IntIntMap(0, 16);
+        for (int key = 1; key <= 12; ++key)
+            map.put(key, key);
+        try {
+            map.put(13, 13);
+            fail("a full map must not grow");
+        } catch (IllegalStateException e) {
+            assertEquals(12, map.size());
+        }
+        assertFalse(map.containsKey(13));
+    }
+
+}
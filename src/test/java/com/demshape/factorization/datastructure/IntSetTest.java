@@ -0,0 +1,58 @@
+package com.demshape.factorization.datastructure;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IntSetTest {
+
+    @Test
+    public void add() {
+        IntSet set = new IntSet();
+        assertTrue(set.add(3));
+        assertFalse(set.add(3));
+        assertTrue(set.add(0));
+        assertFalse(set.add(0));
+        assertTrue(set.add(-7));
+        assertEquals(3, set.size());
+        assertTrue(set.contains(0));
+        assertFalse(set.contains(1));
+        assertArrayEquals(new int[]{-7, 0, 3}, set.toSortedArray());
+    }
+
+    @Test
+    public void concurrentBuild() {
+        Random random = new Random(2);
+        int[] ids = new int[100000];
+        for (int i = 0; i < ids.length; ++i)
+            ids[i] = random.nextInt(30000);
+        IntSet set = IntStream.of(ids).parallel().collect(IntSet::new, IntSet::add, IntSet::addAll);
+        assertArrayEquals(IntStream.of(ids).distinct().sorted().toArray(), set.toSortedArray());
+        IntSet sequential = new IntSet();
+        for (int id : ids)
+            sequential.add(id);
+        assertEquals(sequential, set);
+    }
+
+    @Test
+    public void full() {
+        IntSet set = new IntSet(0, 16);
+        for (int key = 1; key <= 12; ++key)
+            set.add(key);
+        try {
+            set.add(13);
+            fail("a full set must not grow");
+        } catch (IllegalStateException e) {
+            assertEquals(12, set.size());
+        }
+        assertFalse(set.contains(13));
+    }
+
+}
@@ -0,0 +1,64 @@
+package com.demshape.factorization.datastructure;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineReaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static List<String> readLines(LineReader lines) throws IOException {
+        List<String> result = new ArrayList<>();
+        while (lines.next()) {
+            byte[] line = new byte[lines.end() - lines.start()];
+            for (int i = 0; i < line.length; ++i)
+                line[i] = lines.buffer().get(lines.start() + i);
+            result.add(new String(line, StandardCharsets.ISO_8859_1));
+        }
+        return result;
+    }
+
+    @Test
+    public void readChunks() throws IOException {
+        // a line longer than the initial buffer, windows line breaks, empty lines and no final line break
+        char[] longLine = new char[100000];
+        Arrays.fill(longLine, 'x');
+        List<String> expected = new ArrayList<>();
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 50; ++i) {
+            String line = i == 20 ? new String(longLine) : i % 7 == 3 ? "" : "line " + i;
+            expected.add(line);
+            content.append(line);
+            if (i % 5 == 1)
+                content.append('\r');
+            if (i < 49)
+                content.append('\n');
+        }
+        Path path = folder.newFile("lines.txt").toPath();
+        Files.write(path, content.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        for (int chunks : new int[]{1, 2, 3, 7, 64, 1000}) {
+            List<String> got = new ArrayList<>();
+            LineReader.readChunks(path, chunks, LineReaderTest::readLines).forEach(got::addAll);
+            assertEquals("chunks: " + chunks, expected, got);
+        }
+    }
+
+    @Test
+    public void emptyFile() throws IOException {
+        Path path = folder.newFile("empty.txt").toPath();
+        assertEquals(Arrays.asList(new ArrayList<String>(), new ArrayList<String>()), LineReader.readChunks(path, 2, LineReaderTest::readLines));
+    }
+}
@@ -0,0 +1,46 @@
+package com.demshape.factorization.datastructure;
+
+import org.jblas.FloatMatrix;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class ParameterStoreTest {
+
+    private ParameterStore store;
+
+    @Before
+    public void before() {
+        // stride is 5 floats, hence 2 rows fit into a chunk of 12 floats
+        store = new ParameterStore(5, 3, 12);
+    }
+
+    @Test
+    public void chunks() {
+        assertEquals(3, store.numChunks());
+        assertEquals(10, store.chunkAt(0).length);
+        assertEquals(5, store.chunkAt(2).length);
+        assertSame(store.chunk(0), store.chunk(1));
+        assertNotSame(store.chunk(1), store.chunk(2));
+        assertEquals(0, store.offset(2));
+        assertEquals(5, store.offset(3));
+    }
+
+    @Test
+    public void rows() {
+        store.setVector(3, new float[]{1.0f, 2.0f, 3.0f});
+        store.setBias(3, 0.5f);
+        store.addGradientLength(3, 2.0f);
+        assertEquals(3.0f, store.addGradientLength(3, 1.0f), 0.0f);
+        assertArrayEquals(new float[]{1.0f, 2.0f, 3.0f}, store.vector(3).toArray(), 0.0f);
+        assertEquals(0.5f, store.bias(3), 0.0f);
+        assertEquals(3.0f, store.gradientLength(3), 0.0f);
+        assertArrayEquals(new float[]{0, 0, 0, 0, 0, 1.0f, 2.0f, 3.0f, 0.5f, 3.0f}, store.chunkAt(1), 0.0f);
+        assertEquals(new FloatMatrix(new float[]{0, 0, 0, 0.5f, 0}), store.biases());
+    }
+
+}
@@ -4,7 +4,10 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -37,4 +40,34 @@ public class SparseVectorTest {
         assertEquals(sparseEntryIterator.next(), new SparseVector.SparseEntry(5, 1.0f));
         assertFalse(sparseEntryIterator.hasNext());
     }
+
+    @Test
+    public void primitiveAccess() {
+        assertEquals(3, vector.size());
+        assertEquals(3, vector.keyAt(1));
+        assertEquals(-3.0f, vector.valueAt(1), 0.0f);
+        List<String> entries = new ArrayList<>();
+        vector.forEach((key, value) -> entries.add(key + ":" + value));
+        assertEquals(Arrays.asList("1:1.0", "3:-3.0", "5:1.0"), entries);
+    }
+
+    @Test
+    public void resize() {
+        SparseVector buffer = new SparseVector(2);
+        buffer.set(0, 7, 0.5f);
+        buffer.resize(4);
+        assertEquals(4, buffer.size());
+        assertEquals(7, buffer.keyAt(0));
+        buffer.set(3, 9, 2.0f);
+
+        // shrinking keeps the arrays, entries beyond the size are ignored
+        int[] keys = buffer.keys;
+        buffer.resize(1);
+        Assert.assertSame(keys, buffer.keys);
+        assertEquals(new SparseVector(new int[]{7}, new float[]{0.5f}), buffer);
+        assertFalse(new SparseVector(new int[]{7, 9}, new float[]{0.5f, 2.0f}).equals(buffer));
+        Iterator<SparseVector.SparseEntry> iterator = buffer.iterator();
+        iterator.next();
+        assertFalse(iterator.hasNext());
+    }
 }
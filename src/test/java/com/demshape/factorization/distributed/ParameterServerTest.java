@@ -0,0 +1,128 @@
+package com.demshape.factorization.distributed;
+
+import com.demshape.factorization.datastructure.ParameterStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class ParameterServerTest {
+
+    private ParameterServer[] servers;
+    private List<InetSocketAddress> addresses;
+
+    @Before
+    public void before() throws Exception {
+        servers = new ParameterServer[]{new ParameterServer(0, 0, 2).start(), new ParameterServer(0, 1, 2).start()};
+        addresses = Arrays.asList(new InetSocketAddress("localhost", servers[0].port()), new InetSocketAddress("localhost", servers[1].port()));
+    }
+
+    @After
+    public void after() throws Exception {
+        for (ParameterServer server : servers)
+            server.close();
+    }
+
+    @Test
+    public void pushPull() throws Exception {
+        final int[] ids = {0, 3, 4, 7};
+        try (ParameterClient client = new ParameterClient(addresses)) {
+            client.init(9, 4, 1L, 1, 1);
+            ParameterStore pulled = new ParameterStore(ids.length, 4);
+            client.pull(ids, ids.length, pulled);
+
+            ParameterStore deltas = new ParameterStore(ids.length, 4);
+            for (int row = 0; row < ids.length; ++row)
+                deltas.chunk(row)[deltas.offset(row)] = row + 1.0f;
+            client.push(ids, ids.length, deltas);
+
+            ParameterStore updated = new ParameterStore(ids.length, 4);
+            client.pull(ids, ids.length, updated);
+            for (int row = 0; row < ids.length; ++row) {
+                assertEquals(pulled.chunk(row)[pulled.offset(row)] + row + 1.0f, updated.chunk(row)[updated.offset(row)], 1e-6f);
+                assertEquals(pulled.chunk(row)[pulled.offset(row) + 1], updated.chunk(row)[updated.offset(row) + 1], 0.0f);
+            }
+        }
+    }
+
+    @Test
+    public void initIsIdempotent() throws Exception {
+        final int[] ids = {1, 2, 5};
+        try (ParameterClient first = new ParameterClient(addresses);
+             ParameterClient second = new ParameterClient(addresses)) {
+            first.init(6, 3, 7L, 2, 1);
+            ParameterStore before = new ParameterStore(ids.length, 3);
+            first.pull(ids, ids.length, before);
+            second.init(6, 3, 7L, 2, 1);
+            ParameterStore after = new ParameterStore(ids.length, 3);
+            second.pull(ids, ids.length, after);
+            assertArrayEquals(before.chunkAt(0), after.chunkAt(0), 0.0f);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void initMismatch() throws Exception {
+        try (ParameterClient client = new ParameterClient(addresses)) {
+            client.init(6, 3, 7L, 2, 1);
+            client.init(6, 4, 7L, 2, 1);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void initThreadsMismatch() throws Exception {
+        try (ParameterClient client = new ParameterClient(addresses)) {
+            client.init(6, 3, 7L, 2, 4);
+            client.init(6, 3, 7L, 2, 2);
+        }
+    }
+
+    @Test
+    public void nextRunInitializesAgain() throws Exception {
+        final int[] ids = {1, 2, 5};
+        try (ParameterClient client = new ParameterClient(addresses)) {
+            client.init(6, 3, 7L, 1, 1);
+            ParameterStore before = new ParameterStore(ids.length, 3);
+            client.pull(ids, ids.length, before);
+            ParameterStore deltas = new ParameterStore(ids.length, 3);
+            deltas.chunkAt(0)[0] = 1.0f;
+            client.push(ids, ids.length, deltas);
+
+            client.init(6, 3, 7L, 1, 1);
+            ParameterStore after = new ParameterStore(ids.length, 3);
+            client.pull(ids, ids.length, after);
+            assertArrayEquals(before.chunkAt(0), after.chunkAt(0), 0.0f);
+        }
+    }
+
+    @Test
+    public void compressedBlocks() throws Exception {
+        final int[] ids = {2, 3, 5, 1000, 1000000};
+        final float[] values = {0.5f, -1.0f, 3.25f};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            Protocol.writeIds(out, ids, 4, deflater);
+            Protocol.writeFloats(out, values, values.length, deflater);
+        }
+        Inflater inflater = new Inflater();
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertArrayEquals(new int[]{2, 3, 5, 1000}, Protocol.readIds(in, inflater));
+        assertArrayEquals(values, Protocol.readFloats(in, inflater), 0.0f);
+        deflater.end();
+        inflater.end();
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.demshape.factorization.kernel;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class VectorKernelTest {
+
+    private static final int LENGTH = 37;
+    private static final int OFFSET = 3;
+
+    private final VectorKernelInterface reference = new ScalarKernel();
+    private float[] x;
+    private float[] y;
+    private float[] sum;
+
+    @Before
+    public void before() {
+        Random random = new Random(42);
+        x = new float[OFFSET + LENGTH];
+        y = new float[OFFSET + LENGTH];
+        sum = new float[LENGTH];
+        for (int i = 0; i < x.length; ++i) {
+            x[i] = (float) random.nextGaussian();
+            y[i] = (float) random.nextGaussian();
+        }
+        for (int i = 0; i < sum.length; ++i)
+            sum[i] = (float) random.nextGaussian();
+    }
+
+    @Test
+    public void kernelsAgreeWithReference() {
+        for (VectorKernelInterface kernel : VectorKernelFactory.available()) {
+            String name = kernel.getClass().getSimpleName();
+            assertEquals(name, reference.dot(x, OFFSET, y, 0, LENGTH), kernel.dot(x, OFFSET, y, 0, LENGTH), 1e-4f);
+
+            float[] expected = y.clone();
+            float[] got = y.clone();
+            reference.axpy(0.5f, x, OFFSET, expected, 0, LENGTH);
+            kernel.axpy(0.5f, x, OFFSET, got, 0, LENGTH);
+            assertArrayEquals(name, expected, got, 1e-5f);
+
+            reference.scaledSubtract(0.25f, x, 0, expected, OFFSET, LENGTH);
+            kernel.scaledSubtract(0.25f, x, 0, got, OFFSET, LENGTH);
+            assertArrayEquals(name, expected, got, 1e-5f);
+
+            float[] expectedGradient = new float[LENGTH];
+            float[] gotGradient = new float[LENGTH];
+            float expectedLength = reference.gradient(0.3f, 0.7f, 0.01f, sum, x, OFFSET, expectedGradient, LENGTH);
+            float gotLength = kernel.gradient(0.3f, 0.7f, 0.01f, sum, x, OFFSET, gotGradient, LENGTH);
+            assertArrayEquals(name, expectedGradient, gotGradient, 1e-5f);
+            assertEquals(name, expectedLength, gotLength, 1e-4f);
+        }
+    }
+
+    @Test
+    public void factory() {
+        assertTrue(VectorKernelFactory.get("scalar") instanceof ScalarKernel);
+        assertTrue(VectorKernelFactory.get(" Unrolled ") instanceof UnrolledKernel);
+        assertNotNull(VectorKernelFactory.get("auto", 16));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidKernel() {
+        VectorKernelFactory.get("gpu");
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.demshape.factorization.model;
+
+import com.demshape.factorization.dataset.Dataset;
+import com.demshape.factorization.dataset.DatasetInterface;
+import com.demshape.factorization.datastructure.DataPoint;
+import com.demshape.factorization.datastructure.SparseVector;
+import com.demshape.factorization.lossfunction.LogisticRegression;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+
+public class CheckpointTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static DatasetInterface trainset() {
+        DatasetInterface trainset = new Dataset(100);
+        for (int i = 0; i < 100; ++i)
+            trainset.addDatapoint(new DataPoint(2 * (i % 7) + 1, 2 * (i % 5), 1.0f));
+        return trainset;
+    }
+
+    private static Factorization model(int iterations, String checkpointPath) {
+        Factorization model = new Factorization(6, 0.1f, 0.01f, 0.01f, iterations, 2, new LogisticRegression(), false, 100, 100, 0.75, new int[]{1000});
+        model.seed = 7L;
+        model.deterministic = true;
+        model.threads = 1;
+        model.samplerType = "table";
+        model.checkpointInterval = 1;
+        model.checkpointPath = checkpointPath;
+        return model;
+    }
+
+    @Test
+    public void writeRead() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("checkpoint.bin");
+        Factorization model = model(1, path.toString());
+        model.train(trainset(), new SparseVector[14], 14);
+
+        Checkpoint checkpoint = Checkpoint.read(path);
+        assertFalse(Files.exists(path.resolveSibling("checkpoint.bin.tmp")));
+        assertEquals(1, checkpoint.iteration);
+        assertEquals(7L, checkpoint.seed);
+        assertEquals("table", checkpoint.samplerType);
+        assertEquals(0.75, checkpoint.alpha, 0.0);
+        assertEquals(100, checkpoint.tableSize);
+        assertArrayEquals(model.itemCount, checkpoint.itemCount);
+        assertArrayEquals(model.contextCount, checkpoint.contextCount);
+        assertEquals(model.parameters.numChunks(), checkpoint.parameters.numChunks());
+        assertArrayEquals(model.parameters.chunkAt(0), checkpoint.parameters.chunkAt(0), 0.0f);
+    }
+
+    @Test
+    public void resume() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("checkpoint.bin");
+        Factorization interrupted = model(2, path.toString());
+        interrupted.train(trainset(), new SparseVector[14], 14);
+
+        Factorization resumed = model(3, path.toString());
+        resumed.seed = 0L;
+        resumed.resume = Checkpoint.read(path);
+        resumed.train(trainset(), new SparseVector[14], 14);
+
+        Factorization uninterrupted = model(3, folder.getRoot().toPath().resolve("other.bin").toString());
+        uninterrupted.train(trainset(), new SparseVector[14], 14);
+        assertArrayEquals(uninterrupted.parameters.chunkAt(0), resumed.parameters.chunkAt(0), 0.0f);
+    }
+
+    @Test
+    public void warmStart() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("checkpoint.bin");
+        Factorization previous = model(1, path.toString());
+        previous.train(trainset(), new SparseVector[14], 14);
+        Checkpoint previousModel = Checkpoint.read(path);
+
+        // ids 14 and 15 are new
+        DatasetInterface recent = new Dataset(2);
+        recent.addDatapoint(new DataPoint(15, 2, 1.0f));
+        recent.addDatapoint(new DataPoint(1, 14, 1.0f));
+        Factorization refreshed = model(0, path.toString());
+        refreshed.warmStart(previousModel, 16, recent);
+
+        for (int row = 0; row < 14; ++row) {
+            assertArrayEquals(previous.parameters.vector(row).toArray(), refreshed.parameters.vector(row).toArray(), 0.0f);
+            assertEquals(previous.parameters.gradientLength(row), refreshed.parameters.gradientLength(row), 0.0f);
+        }
+        assertNotEquals(0.0f, refreshed.parameters.vector(14).norm2(), 0.0f);
+        assertEquals(previous.itemCount[2] + 1, refreshed.itemCount[2]);
+        assertEquals(1, refreshed.itemCount[14]);
+        assertEquals(previous.contextCount[1] + 1, refreshed.contextCount[1]);
+        assertEquals(1, refreshed.contextCount[15]);
+    }
+
+}
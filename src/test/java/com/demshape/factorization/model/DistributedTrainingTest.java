@@ -0,0 +1,132 @@
+package com.demshape.factorization.model;
+
+import com.demshape.factorization.dataset.Dataset;
+import com.demshape.factorization.dataset.DatasetInterface;
+import com.demshape.factorization.datastructure.DataPoint;
+import com.demshape.factorization.datastructure.SparseVector;
+import com.demshape.factorization.distributed.ParameterServer;
+import com.demshape.factorization.lossfunction.LogisticRegression;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DistributedTrainingTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Factorization model() {
+        Factorization model = new Factorization(4, 0.1f, 0.01f, 0.01f, 2, 2, new LogisticRegression(), false, 100, 100, 0.75, new int[]{1000});
+        model.seed = 3L;
+        model.threads = 1;
+        return model;
+    }
+
+    private static DatasetInterface trainset() {
+        DatasetInterface trainset = new Dataset(200);
+        for (int i = 0; i < 200; ++i)
+            trainset.addDatapoint(new DataPoint(2 * (i % 7) + 1, 2 * (i % 5), 1.0f));
+        return trainset;
+    }
+
+    private static SparseVector[] features() {
+        SparseVector[] features = new SparseVector[16];
+        features[0] = new SparseVector(new int[]{0, 14}, new float[]{1.0f, 1.0f});
+        return features;
+    }
+
+    private static void assertTrained(List<InetSocketAddress> servers) throws Exception {
+        Factorization model = model();
+        new DistributedTraining(model, servers, 0, 2, 16).pullAll(16);
+        for (float value : model.parameters.chunkAt(0))
+            assertFalse(Float.isNaN(value) || Float.isInfinite(value));
+        // the AdaGrad state of trained rows holds the updates of both workers
+        for (int row : new int[]{0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 11, 13, 14})
+            assertTrue(model.parameters.gradientLength(row) > 0.0f);
+        assertTrue(model.parameters.gradientLength(15) == 0.0f);
+    }
+
+    @Test
+    public void twoWorkersTwoServers() throws Exception {
+        DatasetInterface trainset = trainset();
+        SparseVector[] features = features();
+
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        try (ParameterServer first = new ParameterServer(0, 0, 2).start();
+             ParameterServer second = new ParameterServer(0, 1, 2).start()) {
+            List<InetSocketAddress> servers = Arrays.asList(new InetSocketAddress("localhost", first.port()), new InetSocketAddress("localhost", second.port()));
+            Factorization[] models = {model(), model()};
+            Future<?>[] futures = new Future<?>[2];
+            for (int worker = 0; worker < 2; ++worker) {
+                final DistributedTraining training = new DistributedTraining(models[worker], servers, worker, 2, 16);
+                futures[worker] = workers.submit(() -> {
+                    training.train(trainset, features, 16);
+                    return null;
+                });
+            }
+            for (Future<?> future : futures)
+                future.get();
+
+            assertTrained(servers);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void twoWorkerProcesses() throws Exception {
+        try (ParameterServer first = new ParameterServer(0, 0, 2).start();
+             ParameterServer second = new ParameterServer(0, 1, 2).start()) {
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            Process[] workers = new Process[2];
+            File[] logs = new File[2];
+            for (int worker = 0; worker < 2; ++worker) {
+                logs[worker] = folder.newFile("worker-" + worker + ".log");
+                workers[worker] = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                        DistributedTrainingTest.class.getName(), String.valueOf(worker),
+                        String.valueOf(first.port()), String.valueOf(second.port()))
+                        .redirectErrorStream(true).redirectOutput(logs[worker]).start();
+            }
+            for (int worker = 0; worker < 2; ++worker) {
+                if (!workers[worker].waitFor(2, TimeUnit.MINUTES))
+                    workers[worker].destroyForcibly();
+                String log = new String(Files.readAllBytes(logs[worker].toPath()), StandardCharsets.UTF_8);
+                assertEquals(log, 0, workers[worker].exitValue());
+            }
+            assertTrained(Arrays.asList(new InetSocketAddress("localhost", first.port()), new InetSocketAddress("localhost", second.port())));
+        }
+    }
+
+    /**
+     * Runs a single worker of {@link #twoWorkerProcesses()}.
+     * @param args index of the worker and ports of the two parameter servers
+     */
+    public static void main(String[] args) {
+        try {
+            List<InetSocketAddress> servers = Arrays.asList(new InetSocketAddress("localhost", Integer.parseInt(args[1])),
+                    new InetSocketAddress("localhost", Integer.parseInt(args[2])));
+            new DistributedTraining(model(), servers, Integer.parseInt(args[0]), 2, 16).train(trainset(), features(), 16);
+        } catch (Throwable e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+}
@@ -3,12 +3,23 @@ package com.demshape.factorization.model;
 import com.demshape.factorization.dataset.Dataset;
 import com.demshape.factorization.dataset.DatasetInterface;
 import com.demshape.factorization.datastructure.DataPoint;
+import com.demshape.factorization.datastructure.SparseVector;
+import com.demshape.factorization.lossfunction.LogisticRegression;
+import com.demshape.factorization.sampler.TableSampler;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
 import static org.hamcrest.CoreMatchers.anyOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 
 public class FactorizationTest {
@@ -20,43 +31,9 @@ public class FactorizationTest {
         factorization = new Factorization();
     }
 
-    @Test
-    public void testSamplingTable1() {
-        int size = 10;
-        int[] distribution = new int[]{0, 0, 30, 0, 40, 0, 0, 20, 10};
-        double beta = 1.0;
-        factorization.initSamplingTable(distribution, beta, size);
-        int[] got = factorization.samplingTable;
-        int[] expected = new int[]{2, 2, 2, 4, 4, 4, 4, 7, 7, 8};
-        assertArrayEquals(expected, got);
-    }
-
-    @Test
-    public void testSamplingTable2() {
-        int size = 6;
-        int[] distribution = new int[]{0, 10, 20, 30, 40, 0, 0};
-        double beta = 1.0;
-        factorization.initSamplingTable(distribution, beta, size);
-        int[] got = factorization.samplingTable;
-        int[] expected = new int[]{1, 2, 3, 3, 4, 4};
-        assertArrayEquals(expected, got);
-    }
-
-    @Test
-    public void testSamplingTable3() {
-        int size = 10;
-        int[] distribution = new int[]{10, 20, 30, 40};
-        double beta = 1.0;
-        factorization.initSamplingTable(distribution, beta, size);
-        int[] got = factorization.samplingTable;
-        int[] expected = new int[]{0, 1, 1, 1, 2, 2, 2, 3, 3, 3};
-        assertArrayEquals(expected, got);
-    }
-
     @Test
     public void sample() {
-        factorization.samplingTable = new int[]{1, 1, 2, 2, 3};
-        factorization.tableSize = 5;
+        factorization.sampler = new TableSampler(new int[]{1, 1, 2, 2, 3});
         assertThat(factorization.sample(), anyOf(is(1), is(2), is(3)));
     }
 
@@ -71,4 +48,106 @@ public class FactorizationTest {
         assertArrayEquals(new int[]{1, 1, 2, 0, 0}, factorization.contextCount);
         assertArrayEquals(new int[]{1, 2, 0, 0, 1}, factorization.itemCount);
     }
+
+    @Test
+    public void predictMatchesPairwise() {
+        factorization = new Factorization(16, 0.1f, 0.01f, 0.01f, 1, 1, new LogisticRegression(), false, 10, 100, 0.75, new int[]{10});
+        factorization.initParameters(200, 16);
+        int[] keys = new int[150];
+        float[] values = new float[keys.length];
+        for (int i = 0; i < keys.length; ++i) {
+            keys[i] = i + 50;
+            values[i] = 1.0f / (1 + i % 7);
+        }
+        SparseVector sparseVector = new SparseVector(keys, values);
+        assertEquals(factorization.predictPairwise(sparseVector), factorization.predict(sparseVector), 1e-4f);
+        SparseVector single = new SparseVector(new int[]{3}, new float[]{0.5f});
+        assertEquals(factorization.predictPairwise(single), factorization.predict(single), 1e-6f);
+    }
+
+    @Test
+    public void trainStepDoesNotAllocate() {
+        factorization = new Factorization(16, 0.1f, 0.01f, 0.01f, 1, 1, new LogisticRegression(), false, 10, 100, 0.75, new int[]{10});
+        factorization.initParameters(6, 16);
+        Bpr bpr = new Bpr(16, 0.1f, 0.01f, 0.01f, 1, 1, new LogisticRegression(), false, 10, 100, 0.75, new int[]{10});
+        bpr.parameters = factorization.parameters;
+        SparseVector sparseVector = new SparseVector(new int[]{1, 2, 4, 5}, new float[]{1.0f, 1.0f, 0.5f, 0.25f});
+
+        com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // warm up such that the steps are compiled and the scratch buffers exist
+        for (int i = 0; i < 20000; ++i) {
+            factorization.trainStep(sparseVector, 1.0f, 1.0f);
+            bpr.trainStep(sparseVector, 0.5f, -1.0f);
+        }
+
+        long overhead = -threadMXBean.getThreadAllocatedBytes(threadId) + threadMXBean.getThreadAllocatedBytes(threadId);
+        long before = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 10000; ++i) {
+            factorization.trainStep(sparseVector, 1.0f, 1.0f);
+            factorization.predict(sparseVector);
+            bpr.trainStep(sparseVector, 0.5f, -1.0f);
+        }
+        long allocated = threadMXBean.getThreadAllocatedBytes(threadId) - before - overhead;
+        assertEquals(0, allocated);
+    }
+
+    @Test
+    public void negativesSkipOnlyThePositiveContext() {
+        List<Integer> contexts = new ArrayList<>();
+        factorization = new Factorization(4, 0.1f, 0.01f, 0.01f, 1, 3, new LogisticRegression(), false, 10, 100, 0.75, new int[]{10}) {
+            @Override
+            protected void gradientStep(SparseVector sparseVector, float[] vectorSum, float error) {
+                contexts.add(sparseVector.keys[0]);
+                super.gradientStep(sparseVector, vectorSum, error);
+            }
+        };
+        factorization.initParameters(4, 4);
+        factorization.itemCount = new int[4];
+        DatasetInterface trainset = new Dataset(1);
+        trainset.addDatapoint(new DataPoint(1, 0, 1.0f));
+        // a repeated negative is trained again, a negative equal to the positive context is skipped
+        Iterator<Integer> negatives = Arrays.asList(3, 3, 1).iterator();
+        factorization.trainPartition(trainset.cursor(0, 1), new SparseVector[4], random -> negatives.next(), new Random(1));
+        assertEquals(Arrays.asList(1, 3, 3), contexts);
+    }
+
+    private static Factorization trainSeeded(String trainingMode, int threads) throws Exception {
+        return trainSeeded(trainingMode, threads, true, 0);
+    }
+
+    private static Factorization trainSeeded(String trainingMode, int threads, boolean deterministic, int readers) throws Exception {
+        DatasetInterface trainset = new Dataset(200);
+        for (int i = 0; i < 200; ++i)
+            trainset.addDatapoint(new DataPoint(2 * (i % 7) + 1, 2 * (i % 5), 1.0f));
+        Factorization model = new Factorization(8, 0.1f, 0.01f, 0.01f, 3, 2, new LogisticRegression(), false, 100, 100, 0.75, new int[]{1000});
+        model.seed = 42L;
+        model.deterministic = deterministic;
+        model.readers = readers;
+        model.trainingMode = trainingMode;
+        model.threads = threads;
+        // items 0 and 2 share an additional feature
+        SparseVector[] features = new SparseVector[15];
+        features[0] = new SparseVector(new int[]{14}, new float[]{1.0f});
+        features[2] = new SparseVector(new int[]{14}, new float[]{0.5f});
+        model.train(trainset, features, 15);
+        return model;
+    }
+
+    @Test
+    public void deterministicTraining() throws Exception {
+        for (String trainingMode : new String[]{"hogwild", "dsgd"}) {
+            Factorization first = trainSeeded(trainingMode, 3);
+            Factorization second = trainSeeded(trainingMode, 3);
+            assertArrayEquals(first.parameters.chunkAt(0), second.parameters.chunkAt(0), 0.0f);
+        }
+    }
+
+    @Test
+    public void readAheadKeepsOrderOfSingleReader() throws Exception {
+        // a single reader and a single training thread see the batches in the order of the train set
+        Factorization direct = trainSeeded("hogwild", 1, false, 0);
+        Factorization pipelined = trainSeeded("hogwild", 1, false, 1);
+        assertArrayEquals(direct.parameters.chunkAt(0), pipelined.parameters.chunkAt(0), 0.0f);
+    }
 }
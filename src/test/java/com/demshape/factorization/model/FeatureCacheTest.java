@@ -0,0 +1,44 @@
+package com.demshape.factorization.model;
+
+import com.demshape.factorization.dataset.Dataset;
+import com.demshape.factorization.dataset.DatasetInterface;
+import com.demshape.factorization.datastructure.DataPoint;
+import com.demshape.factorization.datastructure.SparseVector;
+import com.demshape.factorization.lossfunction.LogisticRegression;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class FeatureCacheTest {
+
+    @Test
+    public void cachedPrediction() throws Exception {
+        DatasetInterface trainset = new Dataset(2);
+        trainset.addDatapoint(new DataPoint(1, 0, 1.0f));
+        trainset.addDatapoint(new DataPoint(3, 2, 1.0f));
+        SparseVector[] features = new SparseVector[8];
+        features[0] = new SparseVector(new int[]{4, 5, 6, 7}, new float[]{1.0f, 0.5f, 0.25f, 1.0f});
+        // no iterations, only initializes the model and the cache
+        Factorization model = new Factorization(8, 0.1f, 0.01f, 0.01f, 0, 1, new LogisticRegression(), false, 100, 100, 0.75, new int[]{1000});
+        model.featureCache = 2;
+        model.threads = 1;
+        model.train(trainset, features, 8);
+
+        SparseVector sparseVector = new DataPoint(1, 0, 1.0f).toSparseVector(features[0]);
+        float[] vectorSum = new float[8];
+        assertEquals(model.predict(sparseVector), model.predictDataPoint(sparseVector, vectorSum), 1e-5f);
+
+        // the second use still sees the cached sum
+        model.parameters.chunk(5)[model.parameters.offset(5) + 8] += 1.0f;
+        float exact = model.predict(sparseVector);
+        assertEquals(exact - 0.5f, model.predictDataPoint(sparseVector, vectorSum), 1e-5f);
+
+        // the third use recomputes the sum
+        assertEquals(exact, model.predictDataPoint(sparseVector, vectorSum), 1e-5f);
+
+        // items without features are not cached
+        SparseVector plain = new DataPoint(3, 2, 1.0f).toSparseVector(features[2]);
+        assertEquals(model.predict(plain), model.predictDataPoint(plain, vectorSum), 0.0f);
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.demshape.factorization.sampler;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class AliasSamplerTest {
+
+    /**
+     * Recovers the probability of each id from the alias table.
+     */
+    private static double[] probabilities(AliasSampler sampler, int numIds) {
+        double[] result = new double[numIds];
+        int n = sampler.ids.length;
+        for (int bucket = 0; bucket < n; ++bucket) {
+            result[sampler.ids[bucket]] += sampler.probabilities[bucket] / (double) n;
+            result[sampler.aliases[bucket]] += (1.0 - sampler.probabilities[bucket]) / n;
+        }
+        return result;
+    }
+
+    @Test
+    public void exactProbabilities() {
+        int[] distribution = new int[]{0, 0, 30, 0, 40, 0, 0, 20, 10};
+        AliasSampler sampler = new AliasSampler(distribution, 1.0);
+        double[] expected = new double[]{0, 0, 0.3, 0, 0.4, 0, 0, 0.2, 0.1};
+        assertArrayEquals(expected, probabilities(sampler, distribution.length), 1e-7);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void emptyDistribution() {
+        AliasSampler sampler = new AliasSampler(new int[]{0, 0, 0}, 1.0);
+        sampler.sample(new Random(1));
+    }
+
+    @Test
+    public void smoothedProbabilities() {
+        int[] distribution = new int[]{1, 8, 0, 27};
+        AliasSampler sampler = new AliasSampler(distribution, 1.0 / 3.0);
+        double[] expected = new double[]{1 / 6.0, 2 / 6.0, 0, 3 / 6.0};
+        assertArrayEquals(expected, probabilities(sampler, distribution.length), 1e-7);
+    }
+
+    @Test
+    public void sample() {
+        int[] distribution = new int[]{0, 10, 0, 30};
+        AliasSampler sampler = new AliasSampler(distribution, 1.0);
+        Random random = new Random(1);
+        int[] counts = new int[4];
+        for (int i = 0; i < 100000; ++i)
+            counts[sampler.sample(random)]++;
+        assertEquals(0, counts[0]);
+        assertEquals(0, counts[2]);
+        assertEquals(0.25, counts[1] / 100000.0, 0.01);
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.demshape.factorization.sampler;
+
+import com.demshape.factorization.dataset.BlockedDataset;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BlockSamplerTest {
+
+    @Test
+    public void localCounts() {
+        int[] counts = new int[]{0, 1, 0, 3, 0, 5, 0, 7, 0};
+        // block 1 of 2 holds the ids 2, 3, 6 and 7
+        assertArrayEquals(new int[]{0, 3, 0, 7}, BlockSampler.localCounts(counts, 2, 1));
+        // block 0 of 2 holds the ids 0, 1, 4, 5 and 8
+        assertArrayEquals(new int[]{0, 1, 0, 5, 0, 0}, BlockSampler.localCounts(counts, 2, 0));
+        assertEquals(0, BlockSampler.localCounts(counts, 8, 6).length);
+    }
+
+    @Test
+    public void sample() {
+        int[] counts = new int[20];
+        for (int id = 1; id < counts.length; id += 2)
+            counts[id] = id;
+        Random random = new Random(1);
+        for (int block = 0; block < 3; ++block) {
+            BlockSampler sampler = new BlockSampler("alias", counts, 1.0, 100, 3, block);
+            for (int i = 0; i < 1000; ++i) {
+                int id = sampler.sample(random);
+                assertEquals(block, BlockedDataset.block(id, 3));
+                assertTrue(counts[id] > 0);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.demshape.factorization.sampler;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.anyOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+public class TableSamplerTest {
+
+    @Test
+    public void testSamplingTable1() {
+        int size = 10;
+        int[] distribution = new int[]{0, 0, 30, 0, 40, 0, 0, 20, 10};
+        double beta = 1.0;
+        int[] got = new TableSampler(distribution, beta, size).samplingTable;
+        int[] expected = new int[]{2, 2, 2, 4, 4, 4, 4, 7, 7, 8};
+        assertArrayEquals(expected, got);
+    }
+
+    @Test
+    public void testSamplingTable2() {
+        int size = 6;
+        int[] distribution = new int[]{0, 10, 20, 30, 40, 0, 0};
+        double beta = 1.0;
+        int[] got = new TableSampler(distribution, beta, size).samplingTable;
+        int[] expected = new int[]{1, 2, 3, 3, 4, 4};
+        assertArrayEquals(expected, got);
+    }
+
+    @Test
+    public void testSamplingTable3() {
+        int size = 10;
+        int[] distribution = new int[]{10, 20, 30, 40};
+        double beta = 1.0;
+        int[] got = new TableSampler(distribution, beta, size).samplingTable;
+        int[] expected = new int[]{0, 1, 1, 1, 2, 2, 2, 3, 3, 3};
+        assertArrayEquals(expected, got);
+    }
+
+    @Test
+    public void sample() {
+        TableSampler sampler = new TableSampler(new int[]{1, 1, 2, 2, 3});
+        assertThat(sampler.sample(new Random()), anyOf(is(1), is(2), is(3)));
+    }
+}
@@ -0,0 +1,50 @@
+package com.demshape.factorization.tools;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+public class FingerprintTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void detectsChanges() throws Exception {
+        Path path = folder.getRoot().toPath().resolve("data.tsv");
+        byte[] content = new byte[100_000];
+        for (int i = 0; i < content.length; ++i)
+            content[i] = (byte) i;
+        Files.write(path, content);
+        FileTime time = Files.getLastModifiedTime(path);
+        long fingerprint = Fingerprint.of(path);
+        assertEquals(fingerprint, Fingerprint.of(path));
+
+        // same size and time stamp, changed last byte
+        content[content.length - 1]++;
+        Files.write(path, content);
+        Files.setLastModifiedTime(path, time);
+        assertNotEquals(fingerprint, Fingerprint.of(path));
+
+        // same content, new time stamp
+        content[content.length - 1]--;
+        Files.write(path, content);
+        Files.setLastModifiedTime(path, FileTime.fromMillis(time.toMillis() + 1000));
+        assertNotEquals(fingerprint, Fingerprint.of(path));
+    }
+
+    @Test
+    public void combine() {
+        assertEquals(Fingerprint.combine(1L, 2L), Fingerprint.combine(1L, 2L));
+        assertNotEquals(Fingerprint.combine(1L, 2L), Fingerprint.combine(2L, 1L));
+        assertNotEquals(Fingerprint.combine(0L), Fingerprint.combine(0L, 0L));
+    }
+
+}
@@ -0,0 +1,30 @@
+package com.demshape.factorization.tools;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class TrainingExecutorTest {
+
+    @Test
+    public void run() throws Exception {
+        try (TrainingExecutor executor = new TrainingExecutor(2, "test-worker", false)) {
+            assertEquals(2, executor.threads());
+            List<Integer> results = executor.run(5, task -> task * task);
+            assertEquals(Arrays.asList(0, 1, 4, 9, 16), results);
+        }
+    }
+
+    @Test
+    public void fixedAssignment() throws Exception {
+        try (TrainingExecutor executor = new TrainingExecutor(3, "test-worker", false)) {
+            List<String> names = executor.run(6, task -> Thread.currentThread().getName());
+            assertEquals(Arrays.asList("test-worker-0", "test-worker-1", "test-worker-2",
+                    "test-worker-0", "test-worker-1", "test-worker-2"), names);
+        }
+    }
+
+}